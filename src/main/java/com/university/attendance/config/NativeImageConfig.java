@@ -0,0 +1,98 @@
+package com.university.attendance.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reachability metadata for the GraalVM native image (mvn -Pnative native:compile).
+ *
+ * Spring AOT already covers beans, JPA managed types and controller signatures;
+ * this adds what it cannot infer:
+ * - Jackson binding for every DTO (also when nested in maps/lists)
+ * - Entities, for Hibernate proxies and Lombok-generated accessors
+ * - Apache POI / XMLBeans, which load their OOXML schema types by name from .xsb resources
+ * - ZXing / ImageIO, which need AWT in headless mode (see native profile build args)
+ * Ignored on the JVM.
+ */
+@Configuration
+@ImportRuntimeHints(NativeImageConfig.AttendanceRuntimeHints.class)
+public class NativeImageConfig {
+
+    static class AttendanceRuntimeHints implements RuntimeHintsRegistrar {
+
+        private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // DTOs serialized by Jackson
+            for (Class<?> dto : findClasses(classLoader, "com/university/attendance/dto/*.class")) {
+                bindingRegistrar.registerReflectionHints(hints.reflection(), dto);
+            }
+
+            // Entities (Hibernate instantiates and reads them reflectively)
+            for (Class<?> entity : findClasses(classLoader, "com/university/attendance/entity/*.class")) {
+                hints.reflection().registerType(entity, MemberCategory.values());
+            }
+
+            // Apache POI: XMLBeans schema type system and the compiled schema resources
+            hints.reflection().registerType(
+                TypeReference.of("org.apache.poi.schemas.ooxml.system.ooxml.TypeSystemHolder"),
+                MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+            hints.resources().registerPattern("org/apache/poi/schemas/ooxml/**");
+            hints.resources().registerPattern("org/apache/poi/ooxml/**");
+            // XMLBeans creates the *Impl classes through their (SchemaType, boolean) constructor
+            for (String implPattern : new String[] {
+                    "org/openxmlformats/schemas/**/impl/*Impl.class",
+                    "org/etsi/uri/**/impl/*Impl.class",
+                    "org/w3/**/impl/*Impl.class",
+                    "com/microsoft/schemas/**/impl/*Impl.class"}) {
+                for (String className : findClassNames(classLoader, implPattern)) {
+                    hints.reflection().registerType(TypeReference.of(className),
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+                }
+            }
+
+            // ZXing: MatrixToImageWriter writes PNG through ImageIO service providers
+            hints.resources().registerPattern("META-INF/services/javax.imageio.spi.*");
+        }
+
+        private static List<Class<?>> findClasses(ClassLoader classLoader, String pattern) {
+            List<Class<?>> classes = new ArrayList<>();
+            for (String className : findClassNames(classLoader, pattern)) {
+                try {
+                    classes.add(Class.forName(className, false, classLoader));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // Skip, not reachable on this classpath
+                }
+            }
+            return classes;
+        }
+
+        private static List<String> findClassNames(ClassLoader classLoader, String pattern) {
+            List<String> names = new ArrayList<>();
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+            MetadataReaderFactory readerFactory = new CachingMetadataReaderFactory(resolver);
+            try {
+                for (Resource resource : resolver.getResources("classpath*:" + pattern)) {
+                    names.add(readerFactory.getMetadataReader(resource).getClassMetadata().getClassName());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to scan " + pattern + " for native hints", e);
+            }
+            return names;
+        }
+    }
+}
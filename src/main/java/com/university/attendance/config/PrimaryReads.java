@@ -0,0 +1,42 @@
+package com.university.attendance.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Reads that must see the latest commits (cache loads, the scan's session status check).
+ *
+ * Inside a caller's read-only transaction, with the read/write split on, the read runs
+ * in a read-only transaction of its own pinned to the primary: the caller's transaction
+ * may already hold a replica connection, which onPrimary alone would not replace.
+ * Anywhere else it joins the caller (no transaction, or a read-write one already on the
+ * primary), so it never holds a second connection of the same pool while waiting for
+ * one; concurrent cache misses would otherwise starve the pool.
+ */
+@Component
+public class PrimaryReads {
+
+    private final TransactionTemplate ownTransaction;
+    private final boolean routed;
+
+    public PrimaryReads(PlatformTransactionManager transactionManager, DataSource dataSource) throws SQLException {
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setReadOnly(true);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.routed = dataSource.isWrapperFor(ReadWriteRoutingDataSource.class);
+    }
+
+    public <T> T read(Supplier<T> work) {
+        if (routed && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return ReadWriteRoutingDataSource.onPrimary(() -> ownTransaction.execute(status -> work.get()));
+        }
+        return ReadWriteRoutingDataSource.onPrimary(work);
+    }
+}
@@ -0,0 +1,58 @@
+package com.university.attendance.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read/write split (datasource.replica.enabled=true).
+ *
+ * Replaces the auto-configured DataSource with two Hikari pools behind a
+ * ReadWriteRoutingDataSource: the primary from spring.datasource.*, the replica
+ * from datasource.replica.*. Read-only transactions (@Transactional(readOnly = true))
+ * go to the replica, everything else to the primary. With the switch off the
+ * application uses the single auto-configured pool as before.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+    
+    @Bean
+    public DataSource dataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            @Value("${datasource.replica.url}") String replicaUrl,
+            @Value("${datasource.replica.username}") String replicaUsername,
+            @Value("${datasource.replica.password}") String replicaPassword,
+            @Value("${datasource.replica.retry-after:30s}") Duration retryAfter) {
+        Binder binder = Binder.get(environment);
+        
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        
+        HikariDataSource replica = DataSourceBuilder.create()
+            .type(HikariDataSource.class)
+            .driverClassName(properties.determineDriverClassName())
+            .url(replicaUrl)
+            .username(replicaUsername)
+            .password(replicaPassword)
+            .build();
+        binder.bind("datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, retryAfter));
+    }
+}
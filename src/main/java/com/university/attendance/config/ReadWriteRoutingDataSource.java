@@ -0,0 +1,83 @@
+package com.university.attendance.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends connections for read-only transactions to the replica pool, everything else
+ * to the primary.
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy: Spring marks the transaction
+ * read-only only after the transaction manager has asked for a connection, so the
+ * physical connection has to be fetched lazily, at the first statement.
+ *
+ * If the replica cannot hand out a connection, the read falls back to the primary
+ * and the replica is skipped for retry-after before it is tried again.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+    
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = ThreadLocal.withInitial(() -> false);
+    
+    private final DataSource primary;
+    private final long retryAfterNanos;
+    private volatile long replicaDownUntil;
+    
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration retryAfter) {
+        this.primary = primary;
+        this.retryAfterNanos = retryAfter.toNanos();
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+    
+    /**
+     * Run work whose reads must see the latest commits (e.g. reloading a cache
+     * right after a write) on the primary, even inside a read-only transaction.
+     * Only affects connections fetched inside the callback.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        if (PRIMARY_ONLY.get()) {
+            return work.get();
+        }
+        PRIMARY_ONLY.set(true);
+        try {
+            return work.get();
+        } finally {
+            PRIMARY_ONLY.remove();
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return readOnly && !PRIMARY_ONLY.get() && System.nanoTime() - replicaDownUntil >= 0 ? REPLICA : PRIMARY;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        try {
+            return super.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            replicaDownUntil = System.nanoTime() + retryAfterNanos;
+            log.warn("Replica unavailable, sending reads to the primary for {} s: {}",
+                retryAfterNanos / 1_000_000_000, e.getMessage());
+            return primary.getConnection();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.university.attendance.controller;
+
+import com.university.attendance.dto.ArrivalHistogramDTO;
+import com.university.attendance.service.SessionArrivalHistograms;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/analytics")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AnalyticsController {
+    
+    private final SessionArrivalHistograms arrivalHistograms;
+    
+    /**
+     * Scan arrivals per minute after the start of a session (counts so far while it runs;
+     * in a cluster, ask the session's owner, see GET /api/v1/sessions/{id}/owner)
+     * GET /api/v1/analytics/sessions/{sessionId}/arrivals
+     */
+    @GetMapping("/sessions/{sessionId}/arrivals")
+    public ResponseEntity<ArrivalHistogramDTO> getSessionArrivals(@PathVariable UUID sessionId) {
+        return ResponseEntity.ok(arrivalHistograms.getSessionArrivals(sessionId));
+    }
+    
+    /**
+     * Scan arrivals per minute summed over a module's completed sessions, optionally within a date range
+     * GET /api/v1/analytics/modules/{moduleId}/arrivals?from=2024-09-01&to=2024-12-20
+     */
+    @GetMapping("/modules/{moduleId}/arrivals")
+    public ResponseEntity<ArrivalHistogramDTO> getModuleArrivals(
+            @PathVariable UUID moduleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(arrivalHistograms.getModuleArrivals(moduleId, from, to));
+    }
+}
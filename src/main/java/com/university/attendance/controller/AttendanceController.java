@@ -1,23 +1,48 @@
 package com.university.attendance.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.attendance.dto.AtRiskStudentDTO;
 import com.university.attendance.dto.AttendanceRecordDTO;
+import com.university.attendance.dto.BatchScanRequest;
+import com.university.attendance.dto.BatchScanResult;
 import com.university.attendance.dto.ScanQRRequest;
+import com.university.attendance.dto.SessionRosterDTO;
+import com.university.attendance.dto.StudentHistoryDTO;
 import com.university.attendance.entity.AttendanceRecord;
 import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.service.AttendanceMatrix;
 import com.university.attendance.service.AttendanceRecordService;
 import com.university.attendance.service.AttendanceSessionService;
 import com.university.attendance.service.QRCodeService;
+import com.university.attendance.service.ReportBulkhead;
+import com.university.attendance.service.SessionAffinityRouter;
+import com.university.attendance.service.SessionExportCache;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.university.attendance.service.ExcelExportService;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -30,18 +55,30 @@ public class AttendanceController {
     private final QRCodeService qrCodeService;
     private final ExcelExportService excelExportService;
     private final AttendanceSessionService sessionService; // Add this too
+    private final ReportBulkhead reportBulkhead;
+    private final SessionExportCache exportCache;
+    private final ObjectMapper objectMapper;
+    private final SessionAffinityRouter affinityRouter;
     
     /**
      * Scan QR code and mark attendance
      * POST /api/v1/attendance/scan
      * This is the main endpoint students use!
+     * In a cluster, scans of a session are handled by the instance owning it (SessionAffinityRouter)
      */
     @PostMapping("/scan")
-    public ResponseEntity<AttendanceRecordDTO> scanQRCode(@Valid @RequestBody ScanQRRequest request) {
+    public ResponseEntity<?> scanQRCode(
+            @Valid @RequestBody ScanQRRequest request,
+            @RequestHeader(value = SessionAffinityRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
         // Validate QR code and extract session info
         Map<String, String> qrPayload = qrCodeService.validateQRCode(request.getQrToken());
         UUID sessionId = UUID.fromString(qrPayload.get("sessionId"));
         
+        Optional<ResponseEntity<byte[]>> routed = affinityRouter.route(sessionId, request, forwardedBy);
+        if (routed.isPresent()) {
+            return routed.get();
+        }
+        
         // Mark attendance
         AttendanceRecord record = attendanceService.markAttendance(
             sessionId,
@@ -51,7 +88,19 @@ public class AttendanceController {
             request.getLongitude()
         );
         
-        return new ResponseEntity<>(AttendanceRecordDTO.fromEntity(record), HttpStatus.CREATED);
+        // No id yet: journaled (scan.journal.enabled), durable but inserted asynchronously
+        HttpStatus status = record.getId() != null ? HttpStatus.CREATED : HttpStatus.ACCEPTED;
+        return new ResponseEntity<>(AttendanceRecordDTO.fromEntity(record), status);
+    }
+    
+    /**
+     * Upload scans captured offline (idempotent, safe to re-upload)
+     * POST /api/v1/attendance/scan/batch
+     * Returns one result per event, in request order
+     */
+    @PostMapping("/scan/batch")
+    public ResponseEntity<List<BatchScanResult>> scanBatch(@Valid @RequestBody BatchScanRequest request) {
+        return ResponseEntity.ok(attendanceService.markAttendanceBatch(request.getEvents()));
     }
     
     /**
@@ -67,32 +116,126 @@ public class AttendanceController {
         return ResponseEntity.ok(records);
     }
 
+    /**
+     * Get the session roster in columnar form (header once, one array per column)
+     * GET /api/v1/attendance/session/{sessionId}
+     * Accept: application/vnd.attendance.roster+json or application/cbor
+     */
+    @GetMapping(value = "/session/{sessionId}",
+                produces = {SessionRosterDTO.MEDIA_TYPE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<SessionRosterDTO> getSessionRoster(@PathVariable UUID sessionId) {
+        return ResponseEntity.ok(attendanceService.getSessionRoster(sessionId));
+    }
+
     /**
  * Export attendance for a session to Excel
  * GET /api/v1/attendance/session/{sessionId}/export
+ * Runs inside the report bulkhead, which bounds concurrent exports and their connections.
+ * Completed sessions are served from the on-disk export cache while their records are unchanged.
  */
 @GetMapping("/session/{sessionId}/export")
-public ResponseEntity<byte[]> exportSessionAttendance(@PathVariable UUID sessionId) throws Exception {
+public CompletableFuture<ResponseEntity<Resource>> exportSessionAttendance(@PathVariable UUID sessionId) {
     
     // Get session
     AttendanceSession session = sessionService.getSessionById(sessionId)
         .orElseThrow(() -> new RuntimeException("Session not found"));
     
-    // Get attendance records
-    List<AttendanceRecord> records = attendanceService.getAttendanceBySession(sessionId);
-    
-    // Generate Excel file
-    byte[] excelBytes = excelExportService.exportSessionAttendance(session, records);
-    
     // Set headers
     HttpHeaders headers = new HttpHeaders();
     headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
     headers.setContentDispositionFormData("attachment", 
         "Attendance_" + session.getModule().getModuleCode() + "_" + session.getSessionDate() + ".xlsx");
     
-    return new ResponseEntity<>(excelBytes, headers, HttpStatus.OK);
+    // Cached workbook: no POI, no workbook in memory, not even a bulkhead slot
+    Optional<SessionExportCache.Slot> slot = exportCache.lookup(session);
+    if (slot.isPresent() && slot.get().cached()) {
+        return CompletableFuture.completedFuture(serveFile(slot.get().file(), headers));
+    }
+    
+    return reportBulkhead.submit(() -> {
+        
+        // Get attendance records
+        List<AttendanceRecord> records = attendanceService.getAttendanceBySession(sessionId);
+        
+        // Generate Excel file
+        byte[] excelBytes;
+        try {
+            excelBytes = excelExportService.exportSessionAttendance(session, records);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to generate Excel export", e);
+        }
+        slot.ifPresent(s -> exportCache.store(s, excelBytes));
+        
+        return new ResponseEntity<>(new ByteArrayResource(excelBytes), headers, HttpStatus.OK);
+    });
+}
+
+/**
+ * Serve a cached file as a Resource, streamed from disk through a small buffer
+ */
+private static ResponseEntity<Resource> serveFile(Path file, HttpHeaders headers) {
+    try {
+        headers.setContentLength(Files.size(file));
+    } catch (IOException e) {
+        throw new RuntimeException("Cached export disappeared, please retry", e);
+    }
+    return new ResponseEntity<>(new FileSystemResource(file), headers, HttpStatus.OK);
 }
     
+    /**
+     * Get the students x sessions attendance matrix of a module as JSON
+     * GET /api/v1/attendance/module/{moduleId}/matrix?from=2024-09-01&to=2024-12-20
+     * Each row is a string with one status code per session (P, L, A, E, - for no record)
+     */
+    @GetMapping(value = "/module/{moduleId}/matrix", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getModuleMatrix(
+            @PathVariable UUID moduleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        AttendanceMatrix matrix = sessionService.getModuleMatrix(moduleId, from, to);
+        StreamingResponseBody body = out -> matrix.writeJson(objectMapper.getFactory().createGenerator(out));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    /**
+     * Same matrix as CSV (Accept: text/csv)
+     * GET /api/v1/attendance/module/{moduleId}/matrix
+     */
+    @GetMapping(value = "/module/{moduleId}/matrix", produces = "text/csv")
+    public ResponseEntity<StreamingResponseBody> getModuleMatrixCsv(
+            @PathVariable UUID moduleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        AttendanceMatrix matrix = sessionService.getModuleMatrix(moduleId, from, to);
+        StreamingResponseBody body = out -> matrix.writeCsv(
+            new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        return ResponseEntity.ok()
+            .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"matrix_" + moduleId + ".csv\"")
+            .body(body);
+    }
+    
+    /**
+     * Export raw attendance records of a date range as CSV, streamed row by row
+     * GET /api/v1/attendance/export/csv?moduleCodePrefix=CS&from=2024-09-01&to=2024-12-20
+     * Runs on the request thread (no async timeout), one of bulkhead.report.streams at a time
+     */
+    @GetMapping(value = "/export/csv", produces = "text/csv")
+    public void exportAttendanceCsv(
+            @RequestParam(required = false) String moduleCodePrefix,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+        reportBulkhead.stream(() -> {
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"attendance_" + from + "_" + to + ".csv\"");
+            BufferedWriter csv = new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+            attendanceService.writeAttendanceCsv(moduleCodePrefix, from, to, csv);
+        });
+    }
+    
     /**
      * Get attendance records for a student
      * GET /api/v1/attendance/student/{studentId}
@@ -106,6 +249,17 @@ public ResponseEntity<byte[]> exportSessionAttendance(@PathVariable UUID session
         return ResponseEntity.ok(records);
     }
     
+    /**
+     * Get the attendance history of a student in columnar form
+     * GET /api/v1/attendance/student/{studentId}
+     * Accept: application/vnd.attendance.roster+json or application/cbor
+     */
+    @GetMapping(value = "/student/{studentId}",
+                produces = {SessionRosterDTO.MEDIA_TYPE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<StudentHistoryDTO> getStudentHistory(@PathVariable UUID studentId) {
+        return ResponseEntity.ok(attendanceService.getStudentHistory(studentId));
+    }
+    
     /**
      * Get attendance for a student in a specific module
      * GET /api/v1/attendance/student/{studentId}/module/{moduleId}
@@ -131,6 +285,19 @@ public ResponseEntity<byte[]> exportSessionAttendance(@PathVariable UUID session
         return ResponseEntity.ok(Map.of("percentage", percentage));
     }
     
+    /**
+     * Get students below an attendance threshold (percent) across a faculty's modules,
+     * selected by module code prefix
+     * GET /api/v1/attendance/at-risk?threshold=80&moduleCodePrefix=CS&minSessions=3
+     */
+    @GetMapping("/at-risk")
+    public ResponseEntity<List<AtRiskStudentDTO>> getAtRiskStudents(
+            @RequestParam(defaultValue = "80") double threshold,
+            @RequestParam(required = false) String moduleCodePrefix,
+            @RequestParam(defaultValue = "3") int minSessions) {
+        return ResponseEntity.ok(attendanceService.getAtRiskStudents(threshold, moduleCodePrefix, minSessions));
+    }
+    
     /**
      * Check if student has marked attendance for a session
      * GET /api/v1/attendance/check?sessionId={sessionId}&studentId={studentId}
@@ -2,20 +2,23 @@ package com.university.attendance.controller;
 
 import com.university.attendance.dto.CreateSessionRequest;
 import com.university.attendance.dto.SessionDTO;
+import com.university.attendance.dto.TeacherDashboardDTO;
 import com.university.attendance.entity.AttendanceSession;
 import com.university.attendance.entity.Module;
 import com.university.attendance.entity.User;
 import com.university.attendance.service.AttendanceSessionService;
 import com.university.attendance.service.ModuleService;
+import com.university.attendance.service.QRCodeRenderer;
 import com.university.attendance.service.QRCodeService;
+import com.university.attendance.service.SessionAffinityRouter;
 import com.university.attendance.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,6 +36,7 @@ public class AttendanceSessionController {
     private final ModuleService moduleService;
     private final UserService userService;
     private final QRCodeService qrCodeService;
+    private final SessionAffinityRouter affinityRouter;
     
     /**
      * Create a new session
@@ -72,12 +76,20 @@ public ResponseEntity<SessionDTO> createSession(
     /**
      * Get session by ID
      * GET /api/v1/sessions/{id}
+     * Supports If-None-Match (ETag)
      */
     @GetMapping("/{id}")
-    public ResponseEntity<SessionDTO> getSessionById(@PathVariable UUID id) {
+    public ResponseEntity<SessionDTO> getSessionById(@PathVariable UUID id, WebRequest request) {
+        // Answer If-None-Match from the version row before loading the session
+        String etag = sessionService.getSessionETag(id)
+            .orElseThrow(() -> new RuntimeException("Session not found"));
+        if (request.checkNotModified(etag)) {
+            return null; // 304
+        }
+        
         AttendanceSession session = sessionService.getSessionById(id)
             .orElseThrow(() -> new RuntimeException("Session not found"));
-        return ResponseEntity.ok(SessionDTO.fromEntity(session));
+        return ResponseEntity.ok().eTag(etag).body(SessionDTO.fromEntity(session));
     }
     
     /**
@@ -106,6 +118,15 @@ public ResponseEntity<SessionDTO> createSession(
         return ResponseEntity.ok(sessions);
     }
     
+    /**
+     * Get teacher's dashboard for today: sessions with attendance counts per status
+     * GET /api/v1/sessions/teacher/{teacherId}/today/dashboard
+     */
+    @GetMapping("/teacher/{teacherId}/today/dashboard")
+    public ResponseEntity<TeacherDashboardDTO> getTodayDashboard(@PathVariable UUID teacherId) {
+        return ResponseEntity.ok(sessionService.getTodayDashboard(teacherId));
+    }
+    
     /**
      * Get sessions by module
      * GET /api/v1/sessions/module/{moduleId}
@@ -162,22 +183,42 @@ public ResponseEntity<SessionDTO> createSession(
         return ResponseEntity.ok(SessionDTO.fromEntity(session));
     }
     
+    /**
+     * Which instance handles the scans of a session (see SessionAffinityRouter)
+     * GET /api/v1/sessions/{id}/owner
+     */
+    @GetMapping("/{id}/owner")
+    public ResponseEntity<Map<String, Object>> getSessionOwner(@PathVariable UUID id) {
+        String owner = affinityRouter.ownerOf(id);
+        return ResponseEntity.ok(Map.of(
+            "sessionId", id,
+            "owner", owner,
+            "self", affinityRouter.getSelf(),
+            "local", owner.equals(affinityRouter.getSelf()),
+            "livePeers", affinityRouter.getLivePeers()));
+    }
+    
     /**
      * Get QR code for a session
-     * GET /api/v1/sessions/{id}/qr
-     * Returns PNG image
+     * GET /api/v1/sessions/{id}/qr?format=png|svg
+     * Returns a PNG image, or SVG when asked for by format or preferred in Accept
      */
     @GetMapping("/{id}/qr")
-    public ResponseEntity<byte[]> getQRCode(@PathVariable UUID id) {
+    public ResponseEntity<byte[]> getQRCode(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        QRCodeRenderer.Format imageFormat = QRCodeRenderer.Format.resolve(format, accept);
+        
         // Generate encrypted QR data
         String qrData = qrCodeService.generateQRCodeData(id);
         
         // Generate QR code image (512x512 pixels)
-        byte[] qrImage = qrCodeService.generateQRCodeImage(qrData, 512, 512);
+        byte[] qrImage = qrCodeService.generateQRCodeImage(qrData, 512, 512, imageFormat);
         
-        // Return as PNG image
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setContentType(imageFormat.getMediaType());
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
         
         return new ResponseEntity<>(qrImage, headers, HttpStatus.OK);
     }
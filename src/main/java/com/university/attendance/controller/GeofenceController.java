@@ -0,0 +1,90 @@
+package com.university.attendance.controller;
+
+import com.university.attendance.dto.CreateGeofenceRequest;
+import com.university.attendance.dto.GeofenceZoneDTO;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.GeofenceZone;
+import com.university.attendance.service.AttendanceSessionService;
+import com.university.attendance.service.GeofenceService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/v1/geofences")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class GeofenceController {
+    
+    private final GeofenceService geofenceService;
+    private final AttendanceSessionService sessionService;
+    
+    /**
+     * Create a geofence zone for a session or a classroom
+     * POST /api/v1/geofences
+     */
+    @PostMapping
+    public ResponseEntity<GeofenceZoneDTO> createZone(@Valid @RequestBody CreateGeofenceRequest request) {
+        GeofenceZone zone = new GeofenceZone();
+        if (request.getSessionId() != null) {
+            AttendanceSession session = sessionService.getSessionById(request.getSessionId())
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+            zone.setSession(session);
+        }
+        zone.setClassroom(request.getClassroom());
+        zone.setZoneType(request.getZoneType());
+        zone.setCenterLatitude(request.getCenterLatitude());
+        zone.setCenterLongitude(request.getCenterLongitude());
+        zone.setRadiusMeters(request.getRadiusMeters());
+        if (request.getVertices() != null) {
+            zone.setVertices(GeofenceService.formatVertices(request.getVertices()));
+        }
+        
+        GeofenceZone created = geofenceService.createZone(zone);
+        return new ResponseEntity<>(GeofenceZoneDTO.fromEntity(created), HttpStatus.CREATED);
+    }
+    
+    /**
+     * Get all zones that apply to a session
+     * GET /api/v1/geofences/session/{sessionId}
+     */
+    @GetMapping("/session/{sessionId}")
+    public ResponseEntity<List<GeofenceZoneDTO>> getZonesForSession(@PathVariable UUID sessionId) {
+        AttendanceSession session = sessionService.getSessionById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Session not found"));
+        List<GeofenceZoneDTO> zones = geofenceService.getZonesForSession(session)
+            .stream()
+            .map(GeofenceZoneDTO::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(zones);
+    }
+    
+    /**
+     * Get zones for a classroom
+     * GET /api/v1/geofences/classroom/{classroom}
+     */
+    @GetMapping("/classroom/{classroom}")
+    public ResponseEntity<List<GeofenceZoneDTO>> getZonesForClassroom(@PathVariable String classroom) {
+        List<GeofenceZoneDTO> zones = geofenceService.getZonesForClassroom(classroom)
+            .stream()
+            .map(GeofenceZoneDTO::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(zones);
+    }
+    
+    /**
+     * Delete a zone
+     * DELETE /api/v1/geofences/{id}
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteZone(@PathVariable UUID id) {
+        geofenceService.deleteZone(id);
+        return ResponseEntity.noContent().build();
+    }
+}
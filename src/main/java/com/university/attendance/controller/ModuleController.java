@@ -11,6 +11,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -48,36 +49,56 @@ public class ModuleController {
     /**
      * Get module by ID
      * GET /api/v1/modules/{id}
+     * Supports If-None-Match (ETag)
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ModuleDTO> getModuleById(@PathVariable UUID id) {
+    public ResponseEntity<ModuleDTO> getModuleById(@PathVariable UUID id, WebRequest request) {
+        String etag = moduleService.getModuleETag(id)
+            .orElseThrow(() -> new RuntimeException("Module not found with ID: " + id));
+        if (request.checkNotModified(etag)) {
+            return null; // 304
+        }
+        
         Module module = moduleService.getModuleById(id)
             .orElseThrow(() -> new RuntimeException("Module not found with ID: " + id));
-        return ResponseEntity.ok(ModuleDTO.fromEntity(module));
+        return ResponseEntity.ok().eTag(etag).body(ModuleDTO.fromEntity(module));
     }
     
     /**
      * Get module by code
      * GET /api/v1/modules/code/{code}
+     * Supports If-None-Match (ETag)
      */
     @GetMapping("/code/{code}")
-    public ResponseEntity<ModuleDTO> getModuleByCode(@PathVariable String code) {
+    public ResponseEntity<ModuleDTO> getModuleByCode(@PathVariable String code, WebRequest request) {
+        String etag = moduleService.getModuleByCodeETag(code)
+            .orElseThrow(() -> new RuntimeException("Module not found with code: " + code));
+        if (request.checkNotModified(etag)) {
+            return null; // 304
+        }
+        
         Module module = moduleService.getModuleByCode(code)
             .orElseThrow(() -> new RuntimeException("Module not found with code: " + code));
-        return ResponseEntity.ok(ModuleDTO.fromEntity(module));
+        return ResponseEntity.ok().eTag(etag).body(ModuleDTO.fromEntity(module));
     }
     
     /**
      * Get all active modules
      * GET /api/v1/modules
+     * Supports If-None-Match (ETag)
      */
     @GetMapping
-    public ResponseEntity<List<ModuleDTO>> getAllActiveModules() {
+    public ResponseEntity<List<ModuleDTO>> getAllActiveModules(WebRequest request) {
+        String etag = moduleService.getActiveModulesETag();
+        if (request.checkNotModified(etag)) {
+            return null; // 304
+        }
+        
         List<ModuleDTO> modules = moduleService.getAllActiveModules()
             .stream()
             .map(ModuleDTO::fromEntity)
             .collect(Collectors.toList());
-        return ResponseEntity.ok(modules);
+        return ResponseEntity.ok().eTag(etag).body(modules);
     }
     
     /**
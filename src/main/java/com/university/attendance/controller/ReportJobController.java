@@ -0,0 +1,120 @@
+package com.university.attendance.controller;
+
+import com.university.attendance.dto.ReportJobDTO;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.service.AttendanceSessionService;
+import com.university.attendance.service.ReportJobService;
+import com.university.attendance.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/reports/jobs")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ReportJobController {
+
+    private final ReportJobService reportJobService;
+    private final AttendanceSessionService sessionService;
+    private final UserService userService;
+
+    /**
+     * Queue the Excel export of a session
+     * POST /api/v1/reports/jobs/session/{sessionId}/xlsx?requestedBy={userId}
+     * Returns 202 with the job; poll its Location until status is READY
+     */
+    @PostMapping("/session/{sessionId}/xlsx")
+    public ResponseEntity<ReportJobDTO> submitSessionExport(
+            @PathVariable UUID sessionId,
+            @RequestParam UUID requestedBy,
+            HttpServletRequest request) {
+        checkUser(requestedBy);
+        AttendanceSession session = sessionService.getSessionById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Session not found"));
+        return accepted(reportJobService.submitSessionExport(session, requestedBy, request.getRemoteAddr()));
+    }
+
+    /**
+     * Queue a raw attendance CSV export of a date range
+     * POST /api/v1/reports/jobs/attendance-csv?requestedBy={userId}&moduleCodePrefix=CS&from=2024-09-01&to=2024-12-20
+     */
+    @PostMapping("/attendance-csv")
+    public ResponseEntity<ReportJobDTO> submitAttendanceCsv(
+            @RequestParam UUID requestedBy,
+            @RequestParam(required = false) String moduleCodePrefix,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletRequest request) {
+        checkUser(requestedBy);
+        return accepted(reportJobService.submitAttendanceCsv(moduleCodePrefix, from, to, requestedBy, request.getRemoteAddr()));
+    }
+
+    /**
+     * Get the state of a job
+     * GET /api/v1/reports/jobs/{jobId}
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ReportJobDTO> getJob(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(ReportJobDTO.fromJob(findJob(jobId)));
+    }
+
+    /**
+     * Download the output of a READY job
+     * GET /api/v1/reports/jobs/{jobId}/download
+     */
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<Resource> download(@PathVariable UUID jobId) {
+        ReportJobService.Job job = findJob(jobId);
+        if (job.getStatus() != ReportJobService.JobStatus.READY) {
+            throw new RuntimeException("Report is not ready (" + job.getStatus() + ")");
+        }
+        FileSystemResource file = new FileSystemResource(job.getOutput());
+        if (!file.exists()) {
+            throw new RuntimeException("Report job not found");
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaTypeFactory.getMediaType(job.getFileName()).orElse(MediaType.APPLICATION_OCTET_STREAM))
+            .contentLength(job.getSize())
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFileName() + "\"")
+            .body(file);
+    }
+
+    /**
+     * Delete a job and its output
+     * DELETE /api/v1/reports/jobs/{jobId}
+     */
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Void> deleteJob(@PathVariable UUID jobId) {
+        reportJobService.deleteJob(jobId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private void checkUser(UUID userId) {
+        userService.getUserById(userId)
+            .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    private ReportJobService.Job findJob(UUID jobId) {
+        return reportJobService.getJob(jobId)
+            .orElseThrow(() -> new RuntimeException("Report job not found"));
+    }
+
+    private static ResponseEntity<ReportJobDTO> accepted(ReportJobService.Job job) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .location(URI.create("/api/v1/reports/jobs/" + job.getId()))
+            .body(ReportJobDTO.fromJob(job));
+    }
+}
@@ -3,13 +3,17 @@ package com.university.attendance.controller;
 import com.university.attendance.dto.CreateUserRequest;
 import com.university.attendance.dto.UserDTO;
 import com.university.attendance.entity.User;
+import com.university.attendance.service.ETags;
 import com.university.attendance.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -43,12 +47,21 @@ public class UserController {
     /**
      * Get user by ID
      * GET /api/v1/users/{id}
+     * Supports If-None-Match (ETag) and If-Modified-Since
      */
     @GetMapping("/{id}")
-    public ResponseEntity<UserDTO> getUserById(@PathVariable UUID id) {
+    public ResponseEntity<UserDTO> getUserById(@PathVariable UUID id, WebRequest request) {
+        LocalDateTime lastModified = userService.getUserLastModified(id)
+            .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
+        String etag = ETags.ofParts("user", id, lastModified);
+        long lastModifiedMillis = lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (request.checkNotModified(etag, lastModifiedMillis)) {
+            return null; // 304
+        }
+        
         User user = userService.getUserById(id)
             .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
-        return ResponseEntity.ok(UserDTO.fromEntity(user));
+        return ResponseEntity.ok().eTag(etag).lastModified(lastModifiedMillis).body(UserDTO.fromEntity(user));
     }
     
     /**
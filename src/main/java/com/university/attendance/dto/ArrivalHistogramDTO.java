@@ -0,0 +1,93 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.SessionArrivalHistogram;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Scan arrivals per minute after the scheduled start, of one session or summed over a
+ * module's sessions. counts[i] is the number of scans in minute i (the first bucket also
+ * holds scans before the start, the last those after it), cumulative[i] the share of all
+ * scans made by the end of minute i. pNNMinutes is the smallest QR validity under which
+ * NN% of the scans would have been PRESENT.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArrivalHistogramDTO {
+    
+    private UUID sessionId;            // null for a module curve
+    private UUID moduleId;
+    private LocalDate sessionDate;     // null for a module curve
+    private Integer qrValidityMinutes; // null for a module curve
+    private int sessions;
+    private boolean live;              // session still running, counts so far
+    private int totalScans;
+    private int withinValidity;        // scans made before the session's QR validity ran out
+    private int[] counts;
+    private double[] cumulative;
+    private Integer p50Minutes;
+    private Integer p90Minutes;
+    private Integer p95Minutes;
+    
+    public static ArrivalHistogramDTO fromEntity(SessionArrivalHistogram histogram, boolean live) {
+        return of(histogram.getSessionId(), histogram.getModuleId(), histogram.getSessionDate(),
+            histogram.getQrValidityMinutes(), 1, live, histogram.getCounts(),
+            histogram.countWithin(histogram.getQrValidityMinutes()));
+    }
+    
+    /**
+     * Sum of the histograms of a module's sessions
+     */
+    public static ArrivalHistogramDTO ofModule(UUID moduleId, List<SessionArrivalHistogram> histograms) {
+        int[] counts = new int[0];
+        int withinValidity = 0;
+        for (SessionArrivalHistogram histogram : histograms) {
+            int[] more = histogram.getCounts();
+            if (more.length > counts.length) {
+                counts = Arrays.copyOf(counts, more.length);
+            }
+            for (int i = 0; i < more.length; i++) {
+                counts[i] += more[i];
+            }
+            withinValidity += histogram.countWithin(histogram.getQrValidityMinutes());
+        }
+        return of(null, moduleId, null, null, histograms.size(), false, counts, withinValidity);
+    }
+    
+    private static ArrivalHistogramDTO of(UUID sessionId, UUID moduleId, LocalDate sessionDate,
+            Integer qrValidityMinutes, int sessions, boolean live, int[] counts, int withinValidity) {
+        int total = Arrays.stream(counts).sum();
+        double[] cumulative = new double[counts.length];
+        long running = 0;
+        for (int i = 0; i < counts.length; i++) {
+            running += counts[i];
+            cumulative[i] = total == 0 ? 0 : Math.round(running * 10000.0 / total) / 10000.0;
+        }
+        return new ArrivalHistogramDTO(sessionId, moduleId, sessionDate, qrValidityMinutes, sessions, live,
+            total, withinValidity, counts, cumulative,
+            minutesFor(counts, total, 0.50), minutesFor(counts, total, 0.90), minutesFor(counts, total, 0.95));
+    }
+    
+    // Minutes from the start until the given share of the scans had arrived, null without scans
+    private static Integer minutesFor(int[] counts, int total, double share) {
+        if (total == 0) {
+            return null;
+        }
+        long needed = (long) Math.ceil(total * share);
+        long running = 0;
+        for (int i = 0; i < counts.length; i++) {
+            running += counts[i];
+            if (running >= needed) {
+                return i + 1;
+            }
+        }
+        return counts.length;
+    }
+}
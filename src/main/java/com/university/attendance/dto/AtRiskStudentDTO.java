@@ -0,0 +1,27 @@
+package com.university.attendance.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * A student below the attendance threshold in one module
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AtRiskStudentDTO {
+    
+    private UUID studentId;
+    private String studentName;
+    private String studentEmail;
+    private UUID moduleId;
+    private String moduleCode;
+    private String moduleName;
+    private int attendedSessions;
+    private int excusedSessions;
+    private int heldSessions;
+    private double attendancePercentage;
+}
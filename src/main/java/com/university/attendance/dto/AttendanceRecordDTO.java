@@ -20,6 +20,7 @@ public class AttendanceRecordDTO {
     private String deviceInfo;
     private Double latitude;
     private Double longitude;
+    private boolean deviceSharingSuspected;
     
     public static AttendanceRecordDTO fromEntity(com.university.attendance.entity.AttendanceRecord record) {
         AttendanceRecordDTO dto = new AttendanceRecordDTO();
@@ -31,6 +32,7 @@ public class AttendanceRecordDTO {
         dto.setDeviceInfo(record.getDeviceInfo());
         dto.setLatitude(record.getLatitude());
         dto.setLongitude(record.getLongitude());
+        dto.setDeviceSharingSuspected(record.isDeviceSharingSuspected());
         return dto;
     }
 }
\ No newline at end of file
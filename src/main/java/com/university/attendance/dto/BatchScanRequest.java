@@ -0,0 +1,17 @@
+package com.university.attendance.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchScanRequest {
+    
+    @NotEmpty(message = "At least one event is required")
+    @Size(max = 500, message = "At most 500 events per batch")
+    @Valid
+    private List<OfflineScanEvent> events;
+}
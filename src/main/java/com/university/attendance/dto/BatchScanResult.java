@@ -0,0 +1,34 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.AttendanceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one offline scan event, in the order the events were sent
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchScanResult {
+    
+    public enum Outcome {
+        ACCEPTED,          // recorded by this upload
+        ALREADY_RECORDED,  // this event was recorded by an earlier upload
+        ALREADY_MARKED,    // the student already has attendance for the session (live scan or other event)
+        REJECTED           // invalid token, capture time outside the token's validity, etc.
+    }
+    
+    private UUID eventId;
+    private Outcome outcome;
+    private UUID recordId;
+    private AttendanceStatus status;
+    private String message;
+    
+    public static BatchScanResult rejected(UUID eventId, String message) {
+        return new BatchScanResult(eventId, Outcome.REJECTED, null, null, message);
+    }
+}
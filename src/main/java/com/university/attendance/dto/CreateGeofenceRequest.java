@@ -0,0 +1,28 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.GeofenceType;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class CreateGeofenceRequest {
+    
+    // Exactly one of sessionId / classroom
+    private UUID sessionId;
+    
+    private String classroom;
+    
+    @NotNull(message = "Zone type is required")
+    private GeofenceType zoneType;
+    
+    // CIRCLE
+    private Double centerLatitude;
+    private Double centerLongitude;
+    private Integer radiusMeters;
+    
+    // POLYGON: list of [latitude, longitude]
+    private List<List<Double>> vertices;
+}
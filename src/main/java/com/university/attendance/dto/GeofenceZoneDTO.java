@@ -0,0 +1,47 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.GeofenceType;
+import com.university.attendance.service.GeofenceService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceZoneDTO {
+    private UUID id;
+    private UUID sessionId;
+    private String classroom;
+    private GeofenceType zoneType;
+    private Double centerLatitude;
+    private Double centerLongitude;
+    private Integer radiusMeters;
+    private List<List<Double>> vertices;
+    private LocalDateTime createdAt;
+    
+    public static GeofenceZoneDTO fromEntity(com.university.attendance.entity.GeofenceZone zone) {
+        GeofenceZoneDTO dto = new GeofenceZoneDTO();
+        dto.setId(zone.getId());
+        dto.setSessionId(zone.getSession() != null ? zone.getSession().getId() : null);
+        dto.setClassroom(zone.getClassroom());
+        dto.setZoneType(zone.getZoneType());
+        dto.setCenterLatitude(zone.getCenterLatitude());
+        dto.setCenterLongitude(zone.getCenterLongitude());
+        dto.setRadiusMeters(zone.getRadiusMeters());
+        
+        List<List<Double>> vertices = new ArrayList<>();
+        for (double[] vertex : GeofenceService.parseVertices(zone.getVertices())) {
+            vertices.add(List.of(vertex[0], vertex[1]));
+        }
+        dto.setVertices(vertices);
+        
+        dto.setCreatedAt(zone.getCreatedAt());
+        return dto;
+    }
+}
@@ -0,0 +1,33 @@
+package com.university.attendance.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One scan captured by the student app while offline
+ */
+@Data
+public class OfflineScanEvent {
+    
+    // Generated once on the phone, the same id must be sent on every re-upload
+    @NotNull(message = "Event ID is required")
+    private UUID eventId;
+    
+    @NotBlank(message = "QR token is required")
+    private String qrToken;
+    
+    @NotNull(message = "Student ID is required")
+    private UUID studentId;
+    
+    // When the QR was scanned, by the phone's clock (ISO-8601 with offset, e.g. 2024-03-01T09:05:12Z)
+    @NotNull(message = "Capture time is required")
+    private Instant capturedAt;
+    
+    private String deviceInfo;
+    private Double latitude;
+    private Double longitude;
+}
@@ -0,0 +1,49 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.service.ReportJobService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * State of an asynchronous report job; downloadUrl is set once it is READY
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobDTO {
+    
+    private UUID id;
+    private String type;
+    private String status;
+    private UUID requestedBy;
+    private String fileName;
+    private Long size;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime expiresAt;
+    private String downloadUrl;
+    
+    public static ReportJobDTO fromJob(ReportJobService.Job job) {
+        boolean ready = job.getStatus() == ReportJobService.JobStatus.READY;
+        return new ReportJobDTO(
+            job.getId(),
+            job.getType().name(),
+            job.getStatus().name(),
+            job.getRequestedBy(),
+            job.getFileName(),
+            ready ? job.getSize() : null,
+            job.getError(),
+            job.getCreatedAt(),
+            job.getStartedAt(),
+            job.getFinishedAt(),
+            job.getExpiresAt(),
+            ready ? "/api/v1/reports/jobs/" + job.getId() + "/download" : null
+        );
+    }
+}
@@ -0,0 +1,70 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.AttendanceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Columnar session roster: the session header once, then one array per column
+ * (index i of every array is the i-th student). Served as application/vnd.attendance.roster+json
+ * or application/cbor instead of a list of AttendanceRecordDTO.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionRosterDTO {
+    
+    public static final String MEDIA_TYPE = "application/vnd.attendance.roster+json";
+    
+    private Header session;
+    private int count;
+    private List<UUID> studentIds = new ArrayList<>();
+    private List<String> names = new ArrayList<>();
+    private List<AttendanceStatus> statuses = new ArrayList<>();
+    private List<LocalDateTime> markedAt = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Header {
+        private UUID id;
+        private String moduleCode;
+        private String moduleName;
+        private String teacherName;
+        private LocalDate sessionDate;
+        private LocalTime startTime;
+        private String classroom;
+    }
+    
+    /**
+     * Build from rows of (studentId, firstName, lastName, status, markedAt)
+     */
+    public static SessionRosterDTO fromRows(AttendanceSession session, List<Object[]> rows) {
+        SessionRosterDTO dto = new SessionRosterDTO();
+        dto.setSession(new Header(
+            session.getId(),
+            session.getModule().getModuleCode(),
+            session.getModule().getModuleName(),
+            session.getTeacher().getFirstName() + " " + session.getTeacher().getLastName(),
+            session.getSessionDate(),
+            session.getStartTime(),
+            session.getClassroom()));
+        dto.setCount(rows.size());
+        for (Object[] row : rows) {
+            dto.getStudentIds().add((UUID) row[0]);
+            dto.getNames().add(row[1] + " " + row[2]);
+            dto.getStatuses().add((AttendanceStatus) row[3]);
+            dto.getMarkedAt().add((LocalDateTime) row[4]);
+        }
+        return dto;
+    }
+}
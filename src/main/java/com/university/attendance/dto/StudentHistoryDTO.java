@@ -0,0 +1,61 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.AttendanceStatus;
+import com.university.attendance.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Columnar attendance history of one student: the student header once, then one
+ * array per column (index i of every array is the i-th record).
+ * Same media types as SessionRosterDTO.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentHistoryDTO {
+    
+    private Header student;
+    private int count;
+    private List<UUID> sessionIds = new ArrayList<>();
+    private List<String> moduleCodes = new ArrayList<>();
+    private List<LocalDate> sessionDates = new ArrayList<>();
+    private List<AttendanceStatus> statuses = new ArrayList<>();
+    private List<LocalDateTime> markedAt = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Header {
+        private UUID id;
+        private String name;
+        private String email;
+    }
+    
+    /**
+     * Build from rows of (sessionId, moduleCode, sessionDate, status, markedAt)
+     */
+    public static StudentHistoryDTO fromRows(User student, List<Object[]> rows) {
+        StudentHistoryDTO dto = new StudentHistoryDTO();
+        dto.setStudent(new Header(
+            student.getId(),
+            student.getFirstName() + " " + student.getLastName(),
+            student.getEmail()));
+        dto.setCount(rows.size());
+        for (Object[] row : rows) {
+            dto.getSessionIds().add((UUID) row[0]);
+            dto.getModuleCodes().add((String) row[1]);
+            dto.getSessionDates().add((LocalDate) row[2]);
+            dto.getStatuses().add((AttendanceStatus) row[3]);
+            dto.getMarkedAt().add((LocalDateTime) row[4]);
+        }
+        return dto;
+    }
+}
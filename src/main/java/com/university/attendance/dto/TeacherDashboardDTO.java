@@ -0,0 +1,74 @@
+package com.university.attendance.dto;
+
+import com.university.attendance.entity.AttendanceStatus;
+import com.university.attendance.entity.SessionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A teacher's sessions for one day with attendance counts per status
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TeacherDashboardDTO {
+    
+    private UUID teacherId;
+    private LocalDate date;
+    private List<SessionSummary> sessions = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SessionSummary {
+        private UUID sessionId;
+        private String moduleCode;
+        private String moduleName;
+        private LocalTime startTime;
+        private LocalTime endTime;
+        private String classroom;
+        private SessionStatus status;
+        private long total;
+        private Map<AttendanceStatus, Long> counts = new EnumMap<>(AttendanceStatus.class);
+    }
+    
+    /**
+     * Build from rows of (sessionId, moduleCode, moduleName, startTime, endTime, classroom,
+     * sessionStatus, attendanceStatus, count), one per session and attendance status
+     */
+    public static TeacherDashboardDTO fromRows(UUID teacherId, LocalDate date, List<Object[]> rows) {
+        Map<UUID, SessionSummary> sessions = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            SessionSummary summary = sessions.computeIfAbsent((UUID) row[0], id -> {
+                SessionSummary created = new SessionSummary();
+                created.setSessionId(id);
+                created.setModuleCode((String) row[1]);
+                created.setModuleName((String) row[2]);
+                created.setStartTime((LocalTime) row[3]);
+                created.setEndTime((LocalTime) row[4]);
+                created.setClassroom((String) row[5]);
+                created.setStatus((SessionStatus) row[6]);
+                for (AttendanceStatus status : AttendanceStatus.values()) {
+                    created.getCounts().put(status, 0L);
+                }
+                return created;
+            });
+            if (row[7] != null) {
+                long count = (Long) row[8];
+                summary.getCounts().put((AttendanceStatus) row[7], count);
+                summary.setTotal(summary.getTotal() + count);
+            }
+        }
+        return new TeacherDashboardDTO(teacherId, date, new ArrayList<>(sessions.values()));
+    }
+}
@@ -4,7 +4,6 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -28,9 +27,9 @@ public class AttendanceRecord {
     @JoinColumn(name = "student_id", nullable = false)
     private User student;
     
-    @CreationTimestamp
+    // Exact time student scanned QR: the insert time unless set (journaled scans are inserted later)
     @Column(nullable = false, updatable = false)
-    private LocalDateTime markedAt;  // Exact time student scanned QR
+    private LocalDateTime markedAt;
     
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
@@ -41,4 +40,28 @@ public class AttendanceRecord {
     
     private Double latitude;   // Optional: GPS location
     private Double longitude;
+    
+    // Offline scans (POST /scan/batch): client event id makes re-uploads idempotent,
+    // capturedAt is when the phone scanned the QR (null for live scans inserted directly).
+    // Journaled live scans use the journal entry id and the time the scan was accepted.
+    @Column(unique = true)
+    private UUID clientEventId;
+    
+    private LocalDateTime capturedAt;
+    
+    // Optimistic lock version, bumped by status corrections (part of the export cache key)
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint not null default 0")
+    private long version;
+    
+    // Set when the scan's device was used by too many students in the session (DeviceSharingDetector)
+    @Column(nullable = false, columnDefinition = "boolean not null default false")
+    private boolean deviceSharingSuspected;
+    
+    @PrePersist
+    void defaultMarkedAt() {
+        if (markedAt == null) {
+            markedAt = LocalDateTime.now();
+        }
+    }
 }
\ No newline at end of file
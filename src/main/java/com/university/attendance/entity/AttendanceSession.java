@@ -49,6 +49,11 @@ public class AttendanceSession {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
+    // Optimistic lock version, also the basis of the HTTP ETag
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint not null default 0")
+    private long version;
+    
     // NEW FIELDS FOR LOCATION-BASED ATTENDANCE
     @Column(nullable = false)
     private Boolean locationRequired = false;
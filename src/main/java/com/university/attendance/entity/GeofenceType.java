@@ -0,0 +1,6 @@
+package com.university.attendance.entity;
+
+public enum GeofenceType {
+    CIRCLE,   // Center point + radius in meters
+    POLYGON   // Closed ring of lat/lng vertices
+}
@@ -0,0 +1,47 @@
+package com.university.attendance.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "geofence_zones")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceZone {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    // A zone belongs either to one session or to every session held in a classroom
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "session_id")
+    private AttendanceSession session;
+    
+    @Column
+    private String classroom;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private GeofenceType zoneType;
+    
+    // CIRCLE only
+    private Double centerLatitude;
+    private Double centerLongitude;
+    private Integer radiusMeters;
+    
+    // POLYGON only: "lat,lng;lat,lng;..." in order, ring is closed implicitly
+    @Column(length = 4000)
+    private String vertices;
+    
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -39,4 +39,9 @@ public class Module {
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
+    
+    // Optimistic lock version, also the basis of the HTTP ETag
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint not null default 0")
+    private long version;
 }
\ No newline at end of file
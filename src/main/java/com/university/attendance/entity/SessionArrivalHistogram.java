@@ -0,0 +1,74 @@
+package com.university.attendance.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Scans of a session per minute after its scheduled start (see SessionArrivalHistograms)
+ */
+@Entity
+@Table(name = "session_arrival_histograms")
+@Data
+@NoArgsConstructor
+public class SessionArrivalHistogram {
+    
+    @Id
+    private UUID sessionId;
+    
+    @Column(nullable = false)
+    private UUID moduleId;
+    
+    @Column(nullable = false)
+    private LocalDate sessionDate;
+    
+    @Column(nullable = false)
+    private Integer qrValidityMinutes;
+    
+    @Column(nullable = false)
+    private int totalScans;
+    
+    // counts[i] = scans in minute i, the first bucket also holds earlier scans, the last later ones
+    @Column(nullable = false)
+    private int[] counts = new int[0];
+    
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public SessionArrivalHistogram(UUID sessionId, UUID moduleId, LocalDate sessionDate, Integer qrValidityMinutes) {
+        this.sessionId = sessionId;
+        this.moduleId = moduleId;
+        this.sessionDate = sessionDate;
+        this.qrValidityMinutes = qrValidityMinutes;
+    }
+    
+    /**
+     * Add counts bucket by bucket (histograms kept with different bucket counts widen to the longer)
+     */
+    public void add(int[] more) {
+        int[] sum = Arrays.copyOf(counts, Math.max(counts.length, more.length));
+        for (int i = 0; i < more.length; i++) {
+            sum[i] += more[i];
+            totalScans += more[i];
+        }
+        counts = sum;
+    }
+    
+    /**
+     * Scans in the first minutes after the start, i.e. those PRESENT with that QR validity
+     */
+    public int countWithin(int minutes) {
+        int count = 0;
+        for (int i = 0; i < Math.min(minutes, counts.length); i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+}
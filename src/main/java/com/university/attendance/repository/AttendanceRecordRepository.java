@@ -3,14 +3,20 @@ package com.university.attendance.repository;
 import com.university.attendance.entity.AttendanceRecord;
 import com.university.attendance.entity.AttendanceSession;
 import com.university.attendance.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface AttendanceRecordRepository extends JpaRepository<AttendanceRecord, UUID> {
@@ -30,4 +36,48 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
     // Get all attendance records for a student in a specific module
     @Query("SELECT ar FROM AttendanceRecord ar WHERE ar.student = :student AND ar.session.module.id = :moduleId")
     List<AttendanceRecord> findByStudentAndModule(@Param("student") User student, @Param("moduleId") UUID moduleId);
-}
\ No newline at end of file
+    
+    // Roster columns for a session: student id, first name, last name, status, markedAt
+    @Query("SELECT st.id, st.firstName, st.lastName, ar.status, ar.markedAt FROM AttendanceRecord ar " +
+           "JOIN ar.student st WHERE ar.session.id = :sessionId ORDER BY st.lastName, st.firstName")
+    List<Object[]> findRosterRowsBySessionId(@Param("sessionId") UUID sessionId);
+    
+    // History columns for a student: session id, module code, session date, status, markedAt
+    @Query("SELECT s.id, m.moduleCode, s.sessionDate, ar.status, ar.markedAt FROM AttendanceRecord ar " +
+           "JOIN ar.session s JOIN s.module m WHERE ar.student.id = :studentId ORDER BY s.sessionDate, s.startTime")
+    List<Object[]> findHistoryRowsByStudentId(@Param("studentId") UUID studentId);
+    
+    // Offline batch: records already created for these client event ids (eventId, recordId, status)
+    @Query("SELECT ar.clientEventId, ar.id, ar.status FROM AttendanceRecord ar WHERE ar.clientEventId IN :eventIds")
+    List<Object[]> findByClientEventIds(@Param("eventIds") Collection<UUID> eventIds);
+    
+    // Offline batch: (sessionId, studentId) pairs that already have a record
+    @Query("SELECT ar.session.id, ar.student.id FROM AttendanceRecord ar " +
+           "WHERE ar.session.id IN :sessionIds AND ar.student.id IN :studentIds")
+    List<Object[]> findMarkedPairs(@Param("sessionIds") Collection<UUID> sessionIds,
+                                   @Param("studentIds") Collection<UUID> studentIds);
+    
+    // Version of a session's records: (count, sum of record versions), changes on any insert or correction
+    @Query("SELECT COUNT(ar), COALESCE(SUM(ar.version), 0) FROM AttendanceRecord ar WHERE ar.session.id = :sessionId")
+    List<Object[]> findVersionRowBySessionId(@Param("sessionId") UUID sessionId);
+    
+    // Raw CSV dump: one row per record of modules matching a code pattern, in a date range, read through a cursor
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m.moduleCode, s.sessionDate, s.startTime, s.classroom, st.email, st.firstName, st.lastName, " +
+           "ar.status, ar.markedAt, ar.capturedAt, ar.deviceSharingSuspected " +
+           "FROM AttendanceRecord ar JOIN ar.session s JOIN s.module m JOIN ar.student st " +
+           "WHERE UPPER(m.moduleCode) LIKE :codePattern ESCAPE '\\' AND s.sessionDate BETWEEN :from AND :to " +
+           "ORDER BY m.moduleCode, s.sessionDate, s.startTime, st.email")
+    Stream<Object[]> streamExportRows(@Param("codePattern") String codePattern,
+                                      @Param("from") LocalDate from,
+                                      @Param("to") LocalDate to);
+    
+    // At-risk bitmaps: every record of a mandatory session (session id, module id, student id, status)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT s.id, s.module.id, ar.student.id, ar.status FROM AttendanceRecord ar JOIN ar.session s " +
+           "WHERE s.mandatoryAttendance = true")
+    Stream<Object[]> streamMandatoryAttendance();
+}
@@ -5,11 +5,17 @@ import com.university.attendance.entity.Module;
 import com.university.attendance.entity.SessionStatus;
 import com.university.attendance.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface AttendanceSessionRepository extends JpaRepository<AttendanceSession, UUID> {
@@ -24,9 +30,42 @@ public interface AttendanceSessionRepository extends JpaRepository<AttendanceSes
     
     List<AttendanceSession> findByTeacherAndSessionDate(User teacher, LocalDate date);
     
+    // Dashboard: same sessions as findByTeacherAndSessionDate with their attendance counted per status,
+    // one row per (session, status); status and count are null/0 for sessions nobody has scanned yet
+    @Query("SELECT s.id, m.moduleCode, m.moduleName, s.startTime, s.endTime, s.classroom, s.status, " +
+           "ar.status, COUNT(ar.id) " +
+           "FROM AttendanceSession s JOIN s.module m LEFT JOIN AttendanceRecord ar ON ar.session = s " +
+           "WHERE s.teacher.id = :teacherId AND s.sessionDate = :date " +
+           "GROUP BY s.id, m.moduleCode, m.moduleName, s.startTime, s.endTime, s.classroom, s.status, ar.status " +
+           "ORDER BY s.startTime, s.id")
+    List<Object[]> countAttendanceByTeacherAndSessionDate(@Param("teacherId") UUID teacherId,
+                                                         @Param("date") LocalDate date);
+    
     List<AttendanceSession> findByModuleAndSessionDateBetween(
         Module module, 
         LocalDate startDate, 
         LocalDate endDate
     );
-}
\ No newline at end of file
+    
+    // Module matrix: every session in the range with its records, ordered by session
+    // (student columns are null for sessions without records)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s.id, s.sessionDate, s.startTime, st.id, st.firstName, st.lastName, ar.status " +
+           "FROM AttendanceSession s LEFT JOIN AttendanceRecord ar ON ar.session = s LEFT JOIN ar.student st " +
+           "WHERE s.module.id = :moduleId AND s.status <> :excluded AND s.sessionDate BETWEEN :from AND :to " +
+           "ORDER BY s.sessionDate, s.startTime, s.id")
+    Stream<Object[]> streamMatrixRows(@Param("moduleId") UUID moduleId,
+                                      @Param("excluded") SessionStatus excluded,
+                                      @Param("from") LocalDate from,
+                                      @Param("to") LocalDate to);
+    
+    // Versions of everything rendered in a SessionDTO, for ETags (no entity loading)
+    @Query("SELECT s.id, s.version, m.version, COALESCE(t.updatedAt, t.createdAt), COALESCE(mt.updatedAt, mt.createdAt) " +
+           "FROM AttendanceSession s JOIN s.module m JOIN s.teacher t JOIN m.teacher mt WHERE s.id = :id")
+    List<Object[]> findVersionRowById(@Param("id") UUID id);
+    
+    // At-risk bitmaps: every mandatory session (id, module id, status)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s.id, s.module.id, s.status FROM AttendanceSession s WHERE s.mandatoryAttendance = true")
+    Stream<Object[]> streamMandatorySessions();
+}
@@ -0,0 +1,17 @@
+package com.university.attendance.repository;
+
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.GeofenceZone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface GeofenceZoneRepository extends JpaRepository<GeofenceZone, UUID> {
+    
+    List<GeofenceZone> findBySession(AttendanceSession session);
+    
+    List<GeofenceZone> findByClassroom(String classroom);
+}
@@ -3,6 +3,8 @@ package com.university.attendance.repository;
 import com.university.attendance.entity.Module;
 import com.university.attendance.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -21,5 +23,11 @@ public interface ModuleRepository extends JpaRepository<Module, UUID> {
     // FIXED: Remove the Boolean parameter
     List<Module> findByTeacherAndActiveTrue(User teacher);
     
+    List<Module> findByTeacherIdAndActiveTrue(UUID teacherId);
+    
     boolean existsByModuleCode(String moduleCode);
+    
+    // Versions of everything rendered in a ModuleDTO, for ETags (no entity loading)
+    @Query("SELECT m.id, m.version, COALESCE(t.updatedAt, t.createdAt) FROM Module m JOIN m.teacher t WHERE m.id = :id")
+    List<Object[]> findVersionRowById(@Param("id") UUID id);
 }
\ No newline at end of file
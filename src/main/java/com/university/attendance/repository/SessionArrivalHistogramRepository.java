@@ -0,0 +1,44 @@
+package com.university.attendance.repository;
+
+import com.university.attendance.entity.SessionArrivalHistogram;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SessionArrivalHistogramRepository extends JpaRepository<SessionArrivalHistogram, UUID> {
+    
+    // Create the session's row or add the counts to it bucket by bucket (widening to the longer),
+    // in one statement: concurrent adds from several instances serialize on the row
+    @Modifying
+    @Query(value = "INSERT INTO session_arrival_histograms AS h (session_id, module_id, session_date, " +
+           "qr_validity_minutes, total_scans, counts, updated_at) " +
+           "VALUES (:sessionId, :moduleId, :sessionDate, :qrValidityMinutes, :totalScans, :counts, now()) " +
+           "ON CONFLICT (session_id) DO UPDATE SET " +
+           "counts = ARRAY(SELECT coalesce(a.n, 0) + coalesce(b.n, 0) " +
+           "FROM unnest(h.counts) WITH ORDINALITY a(n, i) " +
+           "FULL JOIN unnest(excluded.counts) WITH ORDINALITY b(n, i) ON a.i = b.i " +
+           "ORDER BY coalesce(a.i, b.i)), " +
+           "total_scans = h.total_scans + excluded.total_scans, updated_at = now()",
+           nativeQuery = true)
+    void addCounts(
+        @Param("sessionId") UUID sessionId,
+        @Param("moduleId") UUID moduleId,
+        @Param("sessionDate") LocalDate sessionDate,
+        @Param("qrValidityMinutes") int qrValidityMinutes,
+        @Param("totalScans") int totalScans,
+        @Param("counts") int[] counts);
+    
+    @Query("SELECT h FROM SessionArrivalHistogram h WHERE h.moduleId = :moduleId " +
+           "AND h.sessionDate BETWEEN :from AND :to ORDER BY h.sessionDate")
+    List<SessionArrivalHistogram> findByModuleAndDateRange(
+        @Param("moduleId") UUID moduleId,
+        @Param("from") LocalDate from,
+        @Param("to") LocalDate to);
+}
@@ -3,8 +3,11 @@ package com.university.attendance.repository;
 import com.university.attendance.entity.User;
 import com.university.attendance.entity.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,4 +27,8 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     List<User> findByActiveTrue();
     
     boolean existsByEmail(String email);
+    
+    // Last change time of a user, for ETag/Last-Modified (no entity loading)
+    @Query("SELECT COALESCE(u.updatedAt, u.createdAt) FROM User u WHERE u.id = :id")
+    Optional<LocalDateTime> findLastModifiedById(@Param("id") UUID id);
 }
\ No newline at end of file
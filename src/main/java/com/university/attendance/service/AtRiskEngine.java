@@ -0,0 +1,331 @@
+package com.university.attendance.service;
+
+import com.university.attendance.config.ReadWriteRoutingDataSource;
+import com.university.attendance.entity.AttendanceRecord;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.AttendanceStatus;
+import com.university.attendance.entity.SessionStatus;
+import com.university.attendance.repository.AttendanceRecordRepository;
+import com.university.attendance.repository.AttendanceSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory attendance bitmaps for at-risk detection.
+ *
+ * Each module numbers its mandatory sessions (bit i = i-th session seen) and keeps
+ * a "held" bitmap of the sessions that count, i.e. COMPLETED ones. Each student
+ * has an "attended" (PRESENT or LATE) and an "excused" bitmap per module. A
+ * student's rate in a module is then
+ *   |attended & held| / (|held| - |excused & held|)
+ * which is a couple of word-wise ANDs and popcounts; modules are evaluated in
+ * parallel. With a few hundred sessions per module a bitmap is a handful of longs,
+ * already smaller than any run-length or container encoding would make it.
+ *
+ * Built lazily on first use from two scalar queries against the primary, then kept
+ * current by the session and attendance services after each commit. Updates that
+ * commit while the build is running are queued and replayed on top of it; they are
+ * idempotent (they set the current status), so replaying one the snapshot already
+ * saw is harmless. A build fills new maps and publishes them in one step, so a query
+ * running meanwhile keeps evaluating the previous, complete bitmaps.
+ *
+ * Other instances do not see these in-process updates, so a session completing, or a
+ * record of a completed session changing, is also published on CacheInvalidationBus;
+ * the other instances then drop their bitmaps and rebuild them on the next query.
+ * Records of sessions still running need no event, completion covers them.
+ *
+ * Only students with at least one record in a module are known to it; there is no
+ * enrolment table, so a student who never scanned cannot be flagged.
+ */
+@Slf4j
+@Component
+public class AtRiskEngine {
+
+    private final AttendanceSessionRepository sessionRepository;
+    private final AttendanceRecordRepository recordRepository;
+    private final TransactionTemplate readTransaction;
+    private final CacheInvalidationBus invalidationBus;
+    private final Timer loadTimer;
+    private final Timer evaluateTimer;
+
+    // Replaced as a whole by each build, never cleared in place
+    private volatile State state = new State();
+
+    private final Object loadLock = new Object();
+    private final Object stateLock = new Object();
+    private final Queue<Consumer<State>> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready;
+    private boolean loading;
+    // Invalidated while a build was running: build again on the next query
+    private boolean stale;
+
+    public AtRiskEngine(
+            AttendanceSessionRepository sessionRepository,
+            AttendanceRecordRepository recordRepository,
+            PlatformTransactionManager transactionManager,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry registry) {
+        this.sessionRepository = sessionRepository;
+        this.recordRepository = recordRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        // Own transaction, so the build never joins a caller's replica-bound one
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_AT_RISK, key -> invalidate());
+        this.loadTimer = Timer.builder("attendance.at_risk.load").register(registry);
+        this.evaluateTimer = Timer.builder("attendance.at_risk.evaluate").register(registry);
+        registry.gauge("attendance.at_risk.students", this,
+            engine -> engine.state.modules().values().stream().mapToInt(ModuleBitmaps::studentCount).sum());
+    }
+
+    /**
+     * A student whose attendance rate in a module is below the threshold
+     */
+    public record AtRisk(UUID studentId, UUID moduleId, int attended, int excused, int held, double rate) {
+    }
+
+    /**
+     * The bitmaps of every module, and sessionId -> module for records whose session is not in hand
+     */
+    private record State(Map<UUID, ModuleBitmaps> modules, Map<UUID, ModuleBitmaps> moduleBySession) {
+
+        State() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        void applySession(UUID sessionId, UUID moduleId, boolean held) {
+            ModuleBitmaps module = modules.computeIfAbsent(moduleId, ModuleBitmaps::new);
+            moduleBySession.put(sessionId, module);
+            module.setHeld(sessionId, held);
+        }
+
+        void applyAttendance(UUID sessionId, UUID moduleId, UUID studentId, AttendanceStatus status) {
+            ModuleBitmaps module = moduleBySession.computeIfAbsent(sessionId,
+                id -> modules.computeIfAbsent(moduleId, ModuleBitmaps::new));
+            module.mark(sessionId, studentId, status);
+        }
+    }
+
+    /**
+     * Session status changed (a completed session starts to count). Non-mandatory sessions are ignored.
+     * Applied after the surrounding transaction commits.
+     */
+    public void sessionChanged(AttendanceSession session) {
+        if (!Boolean.TRUE.equals(session.getMandatoryAttendance())) {
+            return;
+        }
+        UUID sessionId = session.getId();
+        UUID moduleId = session.getModule().getId();
+        boolean held = session.getStatus() == SessionStatus.COMPLETED;
+        invalidationBus.publish(CacheInvalidationBus.TOPIC_AT_RISK, moduleId);
+        afterCommit(current -> current.applySession(sessionId, moduleId, held));
+    }
+
+    /**
+     * Attendance record created or corrected. Applied after the surrounding transaction commits.
+     */
+    public void attendanceChanged(AttendanceRecord record) {
+        AttendanceSession session = record.getSession();
+        if (!Boolean.TRUE.equals(session.getMandatoryAttendance())) {
+            return;
+        }
+        UUID sessionId = session.getId();
+        UUID moduleId = session.getModule().getId();
+        UUID studentId = record.getStudent().getId();
+        AttendanceStatus status = record.getStatus();
+        if (session.getStatus() == SessionStatus.COMPLETED) {
+            invalidationBus.publish(CacheInvalidationBus.TOPIC_AT_RISK, moduleId);
+        }
+        afterCommit(current -> current.applyAttendance(sessionId, moduleId, studentId, status));
+    }
+
+    /**
+     * Students below the threshold in any of the given modules, with at least
+     * minSessions countable sessions (held minus excused)
+     */
+    public List<AtRisk> findAtRisk(Collection<UUID> moduleIds, double threshold, int minSessions) {
+        ensureLoaded();
+        Map<UUID, ModuleBitmaps> modules = state.modules();
+        return evaluateTimer.record(() -> moduleIds.parallelStream()
+            .map(modules::get)
+            .filter(module -> module != null)
+            .flatMap(module -> module.evaluate(threshold, minSessions).stream())
+            .toList());
+    }
+
+    /**
+     * Drop the bitmaps (changed on another instance), rebuilt on the next query
+     */
+    public void invalidate() {
+        synchronized (stateLock) {
+            if (loading) {
+                stale = true;
+            } else {
+                ready = false;
+            }
+        }
+    }
+    
+    private void afterCommit(Consumer<State> update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(update);
+                }
+            });
+        } else {
+            apply(update);
+        }
+    }
+
+    private void apply(Consumer<State> update) {
+        if (!ready) {
+            synchronized (stateLock) {
+                if (!ready) {
+                    // Not built yet: the build will read this from the database anyway
+                    if (loading) {
+                        pending.add(update);
+                    }
+                    return;
+                }
+            }
+        }
+        update.accept(state);
+    }
+
+    private void ensureLoaded() {
+        if (ready) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (ready) {
+                return;
+            }
+            synchronized (stateLock) {
+                loading = true;
+            }
+            State next = new State();
+            try {
+                loadTimer.record(() -> ReadWriteRoutingDataSource.onPrimary(() -> readTransaction.execute(status -> {
+                    load(next);
+                    return null;
+                })));
+            } catch (RuntimeException e) {
+                synchronized (stateLock) {
+                    loading = false;
+                    stale = false;
+                    pending.clear();
+                }
+                throw e;
+            }
+            synchronized (stateLock) {
+                Consumer<State> update;
+                while ((update = pending.poll()) != null) {
+                    update.accept(next);
+                }
+                state = next;
+                loading = false;
+                ready = !stale;
+                stale = false;
+            }
+            log.info("At-risk bitmaps built: {} modules, {} sessions", next.modules().size(),
+                next.moduleBySession().size());
+        }
+    }
+
+    private void load(State next) {
+        try (Stream<Object[]> rows = sessionRepository.streamMandatorySessions()) {
+            rows.forEach(row -> next.applySession((UUID) row[0], (UUID) row[1], row[2] == SessionStatus.COMPLETED));
+        }
+        try (Stream<Object[]> rows = recordRepository.streamMandatoryAttendance()) {
+            rows.forEach(row -> next.applyAttendance((UUID) row[0], (UUID) row[1], (UUID) row[2],
+                (AttendanceStatus) row[3]));
+        }
+    }
+
+    /**
+     * Bitmaps of one module, guarded by its own monitor
+     */
+    private static final class ModuleBitmaps {
+
+        private final UUID moduleId;
+        private final Map<UUID, Integer> sessionIndex = new HashMap<>();
+        private final BitSet held = new BitSet();
+        private final Map<UUID, BitSet> attended = new HashMap<>();
+        private final Map<UUID, BitSet> excused = new HashMap<>();
+
+        ModuleBitmaps(UUID moduleId) {
+            this.moduleId = moduleId;
+        }
+
+        synchronized void setHeld(UUID sessionId, boolean isHeld) {
+            held.set(index(sessionId), isHeld);
+        }
+
+        synchronized void mark(UUID sessionId, UUID studentId, AttendanceStatus status) {
+            int bit = index(sessionId);
+            BitSet present = attended.computeIfAbsent(studentId, id -> new BitSet());
+            BitSet excuse = excused.computeIfAbsent(studentId, id -> new BitSet());
+            present.set(bit, status == AttendanceStatus.PRESENT || status == AttendanceStatus.LATE);
+            excuse.set(bit, status == AttendanceStatus.EXCUSED);
+        }
+
+        synchronized int studentCount() {
+            return attended.size();
+        }
+
+        synchronized List<AtRisk> evaluate(double threshold, int minSessions) {
+            List<AtRisk> result = new ArrayList<>();
+            int heldCount = held.cardinality();
+            if (heldCount == 0) {
+                return result;
+            }
+            BitSet scratch = new BitSet(held.length());
+            for (Map.Entry<UUID, BitSet> student : attended.entrySet()) {
+                scratch.clear();
+                scratch.or(excused.get(student.getKey()));
+                scratch.and(held);
+                int excusedCount = scratch.cardinality();
+                int countable = heldCount - excusedCount;
+                if (countable <= 0 || countable < minSessions) {
+                    continue;
+                }
+                scratch.clear();
+                scratch.or(student.getValue());
+                scratch.and(held);
+                int attendedCount = scratch.cardinality();
+                double rate = (double) attendedCount / countable;
+                if (rate < threshold) {
+                    result.add(new AtRisk(student.getKey(), moduleId, attendedCount, excusedCount, heldCount, rate));
+                }
+            }
+            return result;
+        }
+
+        private int index(UUID sessionId) {
+            return sessionIndex.computeIfAbsent(sessionId, id -> sessionIndex.size());
+        }
+    }
+}
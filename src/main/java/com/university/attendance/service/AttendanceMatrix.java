@@ -0,0 +1,181 @@
+package com.university.attendance.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.university.attendance.entity.AttendanceStatus;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Students x sessions attendance grid for a module.
+ *
+ * Each cell is one status code byte (P, L, A, E, or - when the student has no record
+ * for the session). Rows are students sorted by name, columns are sessions in date
+ * order. Written as JSON (one code string per student) or CSV, straight to the
+ * response stream.
+ */
+public class AttendanceMatrix {
+    
+    public static final char NO_RECORD = '-';
+    
+    public record SessionColumn(UUID id, LocalDate date, LocalTime startTime) {
+    }
+    
+    public record StudentRow(UUID id, String name) {
+    }
+    
+    private final UUID moduleId;
+    private final List<SessionColumn> sessions = new ArrayList<>();
+    private final Map<UUID, StudentRow> students = new LinkedHashMap<>();
+    // studentId -> codes, one byte per session column (grown as columns arrive)
+    private final Map<UUID, byte[]> cells = new LinkedHashMap<>();
+    private List<StudentRow> sortedStudents;
+    
+    public AttendanceMatrix(UUID moduleId) {
+        this.moduleId = moduleId;
+    }
+    
+    public static char code(AttendanceStatus status) {
+        return status.name().charAt(0);  // PRESENT, LATE, ABSENT, EXCUSED
+    }
+    
+    /**
+     * Add one row of the matrix query: (sessionId, date, startTime, studentId, firstName, lastName, status),
+     * rows must arrive ordered by session; student columns are null for sessions without records
+     */
+    void add(Object[] row) {
+        UUID sessionId = (UUID) row[0];
+        if (sessions.isEmpty() || !sessions.get(sessions.size() - 1).id().equals(sessionId)) {
+            sessions.add(new SessionColumn(sessionId, (LocalDate) row[1], (LocalTime) row[2]));
+        }
+        if (row[3] == null) {
+            return;
+        }
+        UUID studentId = (UUID) row[3];
+        students.computeIfAbsent(studentId, id -> new StudentRow(id, row[4] + " " + row[5]));
+        byte[] codes = cells.get(studentId);
+        int column = sessions.size() - 1;
+        if (codes == null || codes.length <= column) {
+            int size = Math.max(column + 1, codes == null ? 16 : codes.length * 2);
+            byte[] grown = new byte[size];
+            Arrays.fill(grown, (byte) NO_RECORD);
+            if (codes != null) {
+                System.arraycopy(codes, 0, grown, 0, codes.length);
+            }
+            codes = grown;
+            cells.put(studentId, codes);
+        }
+        codes[column] = (byte) code((AttendanceStatus) row[6]);
+    }
+    
+    public UUID getModuleId() {
+        return moduleId;
+    }
+    
+    public List<SessionColumn> getSessions() {
+        return sessions;
+    }
+    
+    public List<StudentRow> getStudents() {
+        if (sortedStudents == null) {
+            sortedStudents = new ArrayList<>(students.values());
+            sortedStudents.sort(Comparator.comparing(StudentRow::name).thenComparing(StudentRow::id));
+        }
+        return sortedStudents;
+    }
+    
+    /**
+     * The codes of one student as a string, one character per session column
+     */
+    public String codes(UUID studentId) {
+        byte[] codes = cells.get(studentId);
+        char[] row = new char[sessions.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = codes != null && i < codes.length ? (char) codes[i] : NO_RECORD;
+        }
+        return new String(row);
+    }
+    
+    /**
+     * {"moduleId", "codes": {P: PRESENT, ...}, "sessions": [...], "students": [...], "rows": ["PPL-", ...]}
+     */
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("moduleId", moduleId.toString());
+        
+        json.writeObjectFieldStart("codes");
+        for (AttendanceStatus status : AttendanceStatus.values()) {
+            json.writeStringField(String.valueOf(code(status)), status.name());
+        }
+        json.writeStringField(String.valueOf(NO_RECORD), "NO_RECORD");
+        json.writeEndObject();
+        
+        json.writeArrayFieldStart("sessions");
+        for (SessionColumn session : sessions) {
+            json.writeStartObject();
+            json.writeStringField("id", session.id().toString());
+            json.writeStringField("date", session.date().toString());
+            json.writeStringField("startTime", session.startTime().toString());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        
+        json.writeArrayFieldStart("students");
+        for (StudentRow student : getStudents()) {
+            json.writeStartObject();
+            json.writeStringField("id", student.id().toString());
+            json.writeStringField("name", student.name());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        
+        json.writeArrayFieldStart("rows");
+        for (StudentRow student : getStudents()) {
+            json.writeString(codes(student.id()));
+        }
+        json.writeEndArray();
+        
+        json.writeEndObject();
+        json.flush();
+    }
+    
+    /**
+     * Header: student_id,name,<date time of each session>; one line per student
+     */
+    public void writeCsv(Writer csv) throws IOException {
+        csv.write("student_id,name");
+        for (SessionColumn session : sessions) {
+            csv.write(',');
+            csv.write(session.date() + " " + session.startTime());
+        }
+        csv.write('\n');
+        for (StudentRow student : getStudents()) {
+            csv.write(student.id().toString());
+            csv.write(',');
+            csv.write(csvField(student.name()));
+            String codes = codes(student.id());
+            for (int i = 0; i < codes.length(); i++) {
+                csv.write(',');
+                csv.write(codes.charAt(i));
+            }
+            csv.write('\n');
+        }
+        csv.flush();
+    }
+    
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
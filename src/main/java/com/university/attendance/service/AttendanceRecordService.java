@@ -1,19 +1,45 @@
 package com.university.attendance.service;
 
+import com.university.attendance.dto.AtRiskStudentDTO;
+import com.university.attendance.dto.BatchScanResult;
+import com.university.attendance.dto.OfflineScanEvent;
+import com.university.attendance.dto.SessionRosterDTO;
+import com.university.attendance.dto.StudentHistoryDTO;
 import com.university.attendance.entity.AttendanceRecord;
 import com.university.attendance.entity.AttendanceSession;
 import com.university.attendance.entity.AttendanceStatus;
+import com.university.attendance.entity.Module;
 import com.university.attendance.entity.SessionStatus;
 import com.university.attendance.entity.User;
 import com.university.attendance.repository.AttendanceRecordRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -23,6 +49,16 @@ public class AttendanceRecordService {
     private final AttendanceRecordRepository attendanceRepository;
     private final AttendanceSessionService sessionService;
     private final UserService userService;
+    private final GeofenceService geofenceService;
+    private final ScanMetrics scanMetrics;
+    private final QRCodeService qrCodeService;
+    private final AtRiskEngine atRiskEngine;
+    private final ModuleService moduleService;
+    private final ObjectProvider<ScanJournalService> scanJournal;
+    private final DeviceSharingDetector deviceSharingDetector;
+    private final SessionExportCache exportCache;
+    private final SessionArrivalHistograms arrivalHistograms;
+    private final PlatformTransactionManager transactionManager;
     
     /**
      * Mark attendance for a student
@@ -30,6 +66,10 @@ public class AttendanceRecordService {
      * - Session must be ACTIVE
      * - Student cannot mark attendance twice for same session
      * - Attendance marked within time limit is PRESENT, otherwise LATE
+     * Read-write transaction, so the duplicate check always runs on the primary, never a lagging replica
+     * With scan.journal.enabled the record is journaled instead of inserted and returned without an id;
+     * ScanJournalService inserts it asynchronously
+     * Accepted scans are counted in the session's arrival histogram (SessionArrivalHistograms)
      */
     public AttendanceRecord markAttendance(
         UUID sessionId, 
@@ -39,38 +79,37 @@ public class AttendanceRecordService {
         Double longitude) {
     
     // Validate session exists and is active
-    AttendanceSession session = sessionService.getSessionById(sessionId)
-        .orElseThrow(() -> new RuntimeException("Session not found"));
+    AttendanceSession session = scanMetrics.time(ScanMetrics.STAGE_SESSION, () -> sessionService.getSessionById(sessionId))
+        .orElseThrow(() -> scanMetrics.rejected("session_not_found", "Session not found"));
     
     if (session.getStatus() != SessionStatus.ACTIVE) {
-        throw new RuntimeException("Session is not active. Cannot mark attendance.");
+        throw scanMetrics.rejected("session_inactive", "Session is not active. Cannot mark attendance.");
     }
     
     // Validate student exists
-    User student = userService.getUserById(studentId)
-        .orElseThrow(() -> new RuntimeException("Student not found"));
+    User student = scanMetrics.time(ScanMetrics.STAGE_STUDENT, () -> userService.getUserById(studentId))
+        .orElseThrow(() -> scanMetrics.rejected("student_not_found", "Student not found"));
     
-    // Check if student already marked attendance
-    if (attendanceRepository.existsBySessionAndStudent(session, student)) {
-        throw new RuntimeException("Attendance already marked for this session");
+    // Check if student already marked attendance (including scans journaled but not yet inserted)
+    ScanJournalService journal = scanJournal.getIfAvailable();
+    if (scanMetrics.time(ScanMetrics.STAGE_DUPLICATE, () -> attendanceRepository.existsBySessionAndStudent(session, student)
+            || (journal != null && journal.isPending(sessionId, studentId)))) {
+        throw scanMetrics.rejected("duplicate", "Attendance already marked for this session");
     }
     
-    // NEW: Validate location if required
+    // Validate location against the session's precompiled geofence
     if (session.getLocationRequired()) {
-        if (latitude == null || longitude == null) {
-            throw new RuntimeException("Location is required for this session");
-        }
-        
-        if (!isWithinCampus(
-            latitude, 
-            longitude, 
-            session.getCampusLatitude(), 
-            session.getCampusLongitude(), 
-            session.getCampusRadiusMeters())) {
-            throw new RuntimeException("You must be on campus to mark attendance. Distance: " 
-                + calculateDistance(latitude, longitude, session.getCampusLatitude(), session.getCampusLongitude()) 
-                + " meters");
+        scanMetrics.time(ScanMetrics.STAGE_GEOFENCE, () -> geofenceService.checkLocation(session, latitude, longitude));
+    }
+    
+    // One device scanning for several students: flagged on the record, or rejected
+    boolean deviceShared = scanMetrics.time(ScanMetrics.STAGE_DEVICE,
+        () -> deviceSharingDetector.observe(sessionId, studentId, deviceInfo));
+    if (deviceShared) {
+        if (deviceSharingDetector.getAction() == DeviceSharingDetector.Action.BLOCK) {
+            throw scanMetrics.rejected("device_shared", "This device has already been used by other students for this session");
         }
+        scanMetrics.flagged("device_shared");
     }
     
     // Create attendance record
@@ -80,58 +119,202 @@ public class AttendanceRecordService {
     record.setDeviceInfo(deviceInfo);
     record.setLatitude(latitude);
     record.setLongitude(longitude);
+    record.setDeviceSharingSuspected(deviceShared);
     
     // Determine if PRESENT or LATE based on time
-    LocalDateTime now = LocalDateTime.now();
-    LocalDateTime sessionStart = LocalDateTime.of(
-        session.getSessionDate(), 
-        session.getStartTime()
-    );
-    LocalDateTime lateThreshold = sessionStart.plusMinutes(session.getQrValidityMinutes());
+    LocalDateTime scannedAt = LocalDateTime.now();
+    record.setStatus(statusAt(session, scannedAt));
     
-    if (now.isBefore(lateThreshold)) {
-        record.setStatus(AttendanceStatus.PRESENT);
-    } else {
-        record.setStatus(AttendanceStatus.LATE);
+    if (journal != null) {
+        AttendanceRecord journaled = scanMetrics.time(ScanMetrics.STAGE_JOURNAL, () -> journal.append(
+            session, student, record.getStatus(), deviceInfo, latitude, longitude, deviceShared));
+        if (journaled == null) {
+            throw scanMetrics.rejected("duplicate", "Attendance already marked for this session");
+        }
+        arrivalHistograms.record(session, List.of(scannedAt));
+        return journaled;
     }
     
-    return attendanceRepository.save(record);
-}
-
-// NEW: Helper method to check if student is within campus
-private boolean isWithinCampus(Double studentLat, Double studentLng, 
-                               Double campusLat, Double campusLng, 
-                               Integer radiusMeters) {
-    double distance = calculateDistance(studentLat, studentLng, campusLat, campusLng);
-    return distance <= radiusMeters;
-}
-
-// NEW: Calculate distance between two GPS coordinates (Haversine formula)
-private double calculateDistance(Double lat1, Double lon1, Double lat2, Double lon2) {
-    final int R = 6371000; // Earth's radius in meters
-    
-    double latDistance = Math.toRadians(lat2 - lat1);
-    double lonDistance = Math.toRadians(lon2 - lon1);
-    double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-            * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-    double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-    
-    return R * c; // Distance in meters
+    AttendanceRecord saved = scanMetrics.time(ScanMetrics.STAGE_INSERT, () -> attendanceRepository.save(record));
+    atRiskEngine.attendanceChanged(saved);
+    arrivalHistograms.record(session, List.of(scannedAt));
+    return saved;
 }
     
+    /**
+     * Record a batch of scans captured offline
+     * Business Rules:
+     * - Each token is validated against the event's capture time, not the upload time
+     * - Session must not be cancelled; PRESENT/LATE is decided by the capture time
+     * - Idempotent: an event id already recorded, or a student already marked for the
+     *   session (including a live scan still in the scan journal), is reported instead
+     *   of inserted again
+     * - All accepted records are inserted in one transaction (JDBC batched); if a
+     *   concurrent upload of the same events commits first, the batch is run once more
+     *   in a new transaction and reports them as already recorded
+     * Returns one result per event, in request order.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BatchScanResult> markAttendanceBatch(List<OfflineScanEvent> events) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            return transaction.execute(status -> recordBatch(events));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent upload of the same events committed first: the lookup now finds them
+            return transaction.execute(status -> recordBatch(events));
+        }
+    }
+    
+    private List<BatchScanResult> recordBatch(List<OfflineScanEvent> events) {
+        BatchScanResult[] results = new BatchScanResult[events.size()];
+        
+        // Events recorded by an earlier upload
+        Set<UUID> eventIds = events.stream().map(OfflineScanEvent::getEventId).collect(Collectors.toSet());
+        Map<UUID, Object[]> recorded = new HashMap<>();
+        for (Object[] row : attendanceRepository.findByClientEventIds(eventIds)) {
+            recorded.put((UUID) row[0], row);
+        }
+        
+        // Validate tokens, look up sessions and students once per batch
+        Map<UUID, AttendanceSession> sessions = new HashMap<>();
+        Map<UUID, Optional<User>> students = new HashMap<>();
+        Map<Integer, AttendanceSession> validated = new HashMap<>();
+        Set<UUID> seenEventIds = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) {
+            OfflineScanEvent event = events.get(i);
+            Object[] existing = recorded.get(event.getEventId());
+            if (existing != null) {
+                results[i] = new BatchScanResult(event.getEventId(), BatchScanResult.Outcome.ALREADY_RECORDED,
+                    (UUID) existing[1], (AttendanceStatus) existing[2], null);
+                continue;
+            }
+            if (!seenEventIds.add(event.getEventId())) {
+                results[i] = BatchScanResult.rejected(event.getEventId(), "Event ID repeated in this batch");
+                continue;
+            }
+            try {
+                Map<String, String> payload = qrCodeService.validateQRCodeAt(event.getQrToken(), event.getCapturedAt());
+                UUID sessionId = UUID.fromString(payload.get("sessionId"));
+                AttendanceSession session = sessions.computeIfAbsent(sessionId, id -> sessionService.getSessionById(id)
+                    .orElseThrow(() -> scanMetrics.rejected("session_not_found", "Session not found")));
+                if (session.getStatus() == SessionStatus.CANCELLED) {
+                    throw scanMetrics.rejected("session_inactive", "Session was cancelled");
+                }
+                students.computeIfAbsent(event.getStudentId(), userService::getUserById)
+                    .orElseThrow(() -> scanMetrics.rejected("student_not_found", "Student not found"));
+                if (session.getLocationRequired()) {
+                    geofenceService.checkLocation(session, event.getLatitude(), event.getLongitude());
+                }
+                validated.put(i, session);
+            } catch (RuntimeException e) {
+                results[i] = BatchScanResult.rejected(event.getEventId(), e.getMessage());
+            }
+        }
+        
+        // Students already marked for the session (live scan, earlier upload or earlier in this batch)
+        Set<List<UUID>> marked = new HashSet<>();
+        if (!validated.isEmpty()) {
+            Set<UUID> sessionIds = validated.values().stream().map(AttendanceSession::getId).collect(Collectors.toSet());
+            Set<UUID> studentIds = validated.keySet().stream()
+                .map(i -> events.get(i).getStudentId()).collect(Collectors.toSet());
+            for (Object[] pair : attendanceRepository.findMarkedPairs(sessionIds, studentIds)) {
+                marked.add(List.of((UUID) pair[0], (UUID) pair[1]));
+            }
+        }
+        
+        ScanJournalService journal = scanJournal.getIfAvailable();
+        List<AttendanceRecord> toInsert = new ArrayList<>();
+        List<Integer> insertedIndexes = new ArrayList<>();
+        for (Map.Entry<Integer, AttendanceSession> entry : new TreeMap<>(validated).entrySet()) {
+            int i = entry.getKey();
+            OfflineScanEvent event = events.get(i);
+            AttendanceSession session = entry.getValue();
+            if ((journal != null && journal.isPending(session.getId(), event.getStudentId()))
+                    || !marked.add(List.of(session.getId(), event.getStudentId()))) {
+                results[i] = new BatchScanResult(event.getEventId(), BatchScanResult.Outcome.ALREADY_MARKED,
+                    null, null, "Attendance already marked for this session");
+                continue;
+            }
+            
+            LocalDateTime capturedAt = LocalDateTime.ofInstant(event.getCapturedAt(), ZoneId.systemDefault());
+            AttendanceRecord record = new AttendanceRecord();
+            record.setSession(session);
+            record.setStudent(students.get(event.getStudentId()).get());
+            record.setDeviceInfo(event.getDeviceInfo());
+            record.setLatitude(event.getLatitude());
+            record.setLongitude(event.getLongitude());
+            record.setClientEventId(event.getEventId());
+            record.setCapturedAt(capturedAt);
+            record.setStatus(statusAt(session, capturedAt));
+            toInsert.add(record);
+            insertedIndexes.add(i);
+        }
+        
+        List<AttendanceRecord> saved = scanMetrics.time(ScanMetrics.STAGE_INSERT, () -> {
+            List<AttendanceRecord> records = attendanceRepository.saveAll(toInsert);
+            attendanceRepository.flush();
+            return records;
+        });
+        Map<UUID, List<LocalDateTime>> arrivals = new HashMap<>();
+        for (int n = 0; n < saved.size(); n++) {
+            AttendanceRecord record = saved.get(n);
+            atRiskEngine.attendanceChanged(record);
+            arrivals.computeIfAbsent(record.getSession().getId(), id -> new ArrayList<>()).add(record.getCapturedAt());
+            results[insertedIndexes.get(n)] = new BatchScanResult(record.getClientEventId(),
+                BatchScanResult.Outcome.ACCEPTED, record.getId(), record.getStatus(), null);
+        }
+        // Arrival histograms count offline scans at their capture time
+        arrivals.forEach((sessionId, times) -> arrivalHistograms.record(sessions.get(sessionId), times));
+        
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * PRESENT if scanned within the QR validity after the session start, otherwise LATE
+     */
+    private static AttendanceStatus statusAt(AttendanceSession session, LocalDateTime scannedAt) {
+        LocalDateTime sessionStart = LocalDateTime.of(
+            session.getSessionDate(), 
+            session.getStartTime()
+        );
+        LocalDateTime lateThreshold = sessionStart.plusMinutes(session.getQrValidityMinutes());
+        return scannedAt.isBefore(lateThreshold) ? AttendanceStatus.PRESENT : AttendanceStatus.LATE;
+    }
+
     /**
      * Get all attendance records for a session
      */
+    @Transactional(readOnly = true)
     public List<AttendanceRecord> getAttendanceBySession(UUID sessionId) {
         AttendanceSession session = sessionService.getSessionById(sessionId)
             .orElseThrow(() -> new RuntimeException("Session not found"));
         return attendanceRepository.findBySession(session);
     }
     
+    /**
+     * Get the columnar roster of a session (scalar columns, no record entities loaded)
+     */
+    @Transactional(readOnly = true)
+    public SessionRosterDTO getSessionRoster(UUID sessionId) {
+        AttendanceSession session = sessionService.getSessionById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Session not found"));
+        return SessionRosterDTO.fromRows(session, attendanceRepository.findRosterRowsBySessionId(sessionId));
+    }
+    
+    /**
+     * Get the columnar attendance history of a student
+     */
+    @Transactional(readOnly = true)
+    public StudentHistoryDTO getStudentHistory(UUID studentId) {
+        User student = userService.getUserById(studentId)
+            .orElseThrow(() -> new RuntimeException("Student not found"));
+        return StudentHistoryDTO.fromRows(student, attendanceRepository.findHistoryRowsByStudentId(studentId));
+    }
+    
     /**
      * Get all attendance records for a student
      */
+    @Transactional(readOnly = true)
     public List<AttendanceRecord> getAttendanceByStudent(UUID studentId) {
         User student = userService.getUserById(studentId)
             .orElseThrow(() -> new RuntimeException("Student not found"));
@@ -141,6 +324,7 @@ private double calculateDistance(Double lat1, Double lon1, Double lat2, Double l
     /**
      * Get attendance record for a specific student in a specific session
      */
+    @Transactional(readOnly = true)
     public Optional<AttendanceRecord> getAttendanceBySessionAndStudent(
             UUID sessionId, 
             UUID studentId) {
@@ -154,6 +338,7 @@ private double calculateDistance(Double lat1, Double lon1, Double lat2, Double l
     /**
      * Get attendance records for a student in a specific module
      */
+    @Transactional(readOnly = true)
     public List<AttendanceRecord> getStudentAttendanceInModule(
             UUID studentId, 
             UUID moduleId) {
@@ -165,6 +350,7 @@ private double calculateDistance(Double lat1, Double lon1, Double lat2, Double l
     /**
      * Calculate attendance percentage for a student
      */
+    @Transactional(readOnly = true)
     public Double calculateAttendancePercentage(UUID studentId) {
         User student = userService.getUserById(studentId)
             .orElseThrow(() -> new RuntimeException("Student not found"));
@@ -179,6 +365,102 @@ private double calculateDistance(Double lat1, Double lon1, Double lat2, Double l
         return (presentCount.doubleValue() / totalSessions.doubleValue()) * 100.0;
     }
     
+    /**
+     * Students below a percentage threshold in active modules whose code starts with
+     * moduleCodePrefix (a faculty/department code, all active modules when blank).
+     * Counts PRESENT and LATE against completed mandatory sessions, excused sessions
+     * do not count; only students with at least minSessions countable sessions.
+     * Lowest percentage first.
+     */
+    @Transactional(readOnly = true)
+    public List<AtRiskStudentDTO> getAtRiskStudents(double thresholdPercent, String moduleCodePrefix, int minSessions) {
+        if (thresholdPercent <= 0 || thresholdPercent > 100) {
+            throw new RuntimeException("Threshold must be between 0 and 100");
+        }
+        Map<UUID, Module> modules = new HashMap<>();
+        for (Module module : moduleService.getAllActiveModules()) {
+            if (moduleCodePrefix == null || moduleCodePrefix.isBlank()
+                    || module.getModuleCode().regionMatches(true, 0, moduleCodePrefix, 0, moduleCodePrefix.length())) {
+                modules.put(module.getId(), module);
+            }
+        }
+        
+        List<AtRiskStudentDTO> result = new ArrayList<>();
+        for (AtRiskEngine.AtRisk atRisk : atRiskEngine.findAtRisk(modules.keySet(), thresholdPercent / 100.0, minSessions)) {
+            Module module = modules.get(atRisk.moduleId());
+            Optional<User> student = userService.getUserById(atRisk.studentId());
+            result.add(new AtRiskStudentDTO(
+                atRisk.studentId(),
+                student.map(u -> u.getFirstName() + " " + u.getLastName()).orElse(null),
+                student.map(User::getEmail).orElse(null),
+                module.getId(),
+                module.getModuleCode(),
+                module.getModuleName(),
+                atRisk.attended(),
+                atRisk.excused(),
+                atRisk.held(),
+                atRisk.rate() * 100.0));
+        }
+        result.sort(Comparator.comparingDouble(AtRiskStudentDTO::getAttendancePercentage)
+            .thenComparing(AtRiskStudentDTO::getModuleCode));
+        return result;
+    }
+    
+    /**
+     * Write every attendance record of modules whose code starts with moduleCodePrefix
+     * (all modules when blank) with a session between from and to as CSV.
+     * Rows are read through a database cursor and written as they arrive, so memory use
+     * does not depend on the size of the range; an IOException from the writer (client
+     * gone) stops the read and closes the cursor.
+     */
+    @Transactional(readOnly = true)
+    public void writeAttendanceCsv(String moduleCodePrefix, LocalDate from, LocalDate to, Writer csv) throws IOException {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new RuntimeException("A valid from/to date range is required");
+        }
+        String prefix = moduleCodePrefix == null ? "" : moduleCodePrefix.trim().toUpperCase()
+            .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        csv.write("module_code,session_date,start_time,classroom,student_email,student_name,status,marked_at,captured_at,device_sharing_suspected\n");
+        try (Stream<Object[]> rows = attendanceRepository.streamExportRows(prefix + "%", from, to)) {
+            Iterator<Object[]> it = rows.iterator();
+            while (it.hasNext()) {
+                Object[] row = it.next();
+                csv.write(csvField(row[0]));
+                csv.write(',');
+                csv.write(csvField(row[1]));
+                csv.write(',');
+                csv.write(csvField(row[2]));
+                csv.write(',');
+                csv.write(csvField(row[3]));
+                csv.write(',');
+                csv.write(csvField(row[4]));
+                csv.write(',');
+                csv.write(csvField(row[5] + " " + row[6]));
+                csv.write(',');
+                csv.write(csvField(row[7]));
+                csv.write(',');
+                csv.write(csvField(row[8]));
+                csv.write(',');
+                csv.write(csvField(row[9]));
+                csv.write(',');
+                csv.write(csvField(row[10]));
+                csv.write('\n');
+            }
+        }
+        csv.flush();
+    }
+    
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+    
     /**
      * Update attendance status (for manual corrections)
      */
@@ -189,6 +471,9 @@ private double calculateDistance(Double lat1, Double lon1, Double lat2, Double l
             .orElseThrow(() -> new RuntimeException("Attendance record not found"));
         
         record.setStatus(newStatus);
-        return attendanceRepository.save(record);
+        AttendanceRecord updated = attendanceRepository.save(record);
+        atRiskEngine.attendanceChanged(updated);
+        exportCache.invalidate(updated.getSession().getId());
+        return updated;
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.university.attendance.service;
 
+import com.university.attendance.dto.TeacherDashboardDTO;
 import com.university.attendance.entity.AttendanceSession;
 import com.university.attendance.entity.Module;
 import com.university.attendance.entity.SessionStatus;
@@ -13,6 +14,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +24,11 @@ public class AttendanceSessionService {
     private final AttendanceSessionRepository sessionRepository;
     private final ModuleService moduleService;
     private final UserService userService;
+    private final GeofenceService geofenceService;
+    private final AtRiskEngine atRiskEngine;
+    private final DeviceSharingDetector deviceSharingDetector;
+    private final CacheInvalidationBus invalidationBus;
+    private final SessionArrivalHistograms arrivalHistograms;
     
     /**
      * Create a new attendance session
@@ -50,13 +57,23 @@ public class AttendanceSessionService {
     /**
      * Get session by ID
      */
+    @Transactional(readOnly = true)
     public Optional<AttendanceSession> getSessionById(UUID id) {
         return sessionRepository.findById(id);
     }
     
+    /**
+     * Get the ETag of a session (covers its module and teachers) without loading it
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> getSessionETag(UUID id) {
+        return ETags.ofSingle("session", sessionRepository.findVersionRowById(id));
+    }
+    
     /**
      * Get all sessions for a module
      */
+    @Transactional(readOnly = true)
     public List<AttendanceSession> getSessionsByModule(UUID moduleId) {
         Module module = moduleService.getModuleById(moduleId)
             .orElseThrow(() -> new RuntimeException("Module not found"));
@@ -66,6 +83,7 @@ public class AttendanceSessionService {
     /**
      * Get all sessions for a teacher
      */
+    @Transactional(readOnly = true)
     public List<AttendanceSession> getSessionsByTeacher(UUID teacherId) {
         User teacher = userService.getUserById(teacherId)
             .orElseThrow(() -> new RuntimeException("Teacher not found"));
@@ -75,6 +93,7 @@ public class AttendanceSessionService {
     /**
      * Get sessions by date
      */
+    @Transactional(readOnly = true)
     public List<AttendanceSession> getSessionsByDate(LocalDate date) {
         return sessionRepository.findBySessionDate(date);
     }
@@ -82,15 +101,48 @@ public class AttendanceSessionService {
     /**
      * Get today's sessions for a teacher
      */
+    @Transactional(readOnly = true)
     public List<AttendanceSession> getTodaySessionsForTeacher(UUID teacherId) {
         User teacher = userService.getUserById(teacherId)
             .orElseThrow(() -> new RuntimeException("Teacher not found"));
         return sessionRepository.findByTeacherAndSessionDate(teacher, LocalDate.now());
     }
     
+    /**
+     * Get today's sessions for a teacher with attendance counts per status,
+     * in one aggregate query (no session or record entities loaded)
+     */
+    @Transactional(readOnly = true)
+    public TeacherDashboardDTO getTodayDashboard(UUID teacherId) {
+        if (userService.getUserById(teacherId).isEmpty()) {
+            throw new RuntimeException("Teacher not found");
+        }
+        LocalDate today = LocalDate.now();
+        return TeacherDashboardDTO.fromRows(teacherId, today,
+            sessionRepository.countAttendanceByTeacherAndSessionDate(teacherId, today));
+    }
+    
+    /**
+     * Build the students x sessions attendance matrix of a module (cancelled sessions left out)
+     * from one ordered scalar query, consumed as a stream
+     */
+    @Transactional(readOnly = true)
+    public AttendanceMatrix getModuleMatrix(UUID moduleId, LocalDate from, LocalDate to) {
+        moduleService.getModuleById(moduleId)
+            .orElseThrow(() -> new RuntimeException("Module not found"));
+        AttendanceMatrix matrix = new AttendanceMatrix(moduleId);
+        try (Stream<Object[]> rows = sessionRepository.streamMatrixRows(moduleId, SessionStatus.CANCELLED,
+                from != null ? from : LocalDate.of(1970, 1, 1),
+                to != null ? to : LocalDate.of(9999, 12, 31))) {
+            rows.forEach(matrix::add);
+        }
+        return matrix;
+    }
+    
     /**
      * Get sessions by date range for a module
      */
+    @Transactional(readOnly = true)
     public List<AttendanceSession> getSessionsByModuleAndDateRange(
             UUID moduleId, 
             LocalDate startDate, 
@@ -113,6 +165,7 @@ public class AttendanceSessionService {
         }
         
         session.setStatus(SessionStatus.ACTIVE);
+        invalidationBus.publish(CacheInvalidationBus.TOPIC_SESSION, sessionId);
         return sessionRepository.save(session);
     }
     
@@ -129,7 +182,13 @@ public class AttendanceSessionService {
         }
         
         session.setStatus(SessionStatus.COMPLETED);
-        return sessionRepository.save(session);
+        geofenceService.evictSession(sessionId);
+        deviceSharingDetector.evictSession(sessionId);
+        invalidationBus.publish(CacheInvalidationBus.TOPIC_SESSION, sessionId);
+        AttendanceSession completed = sessionRepository.save(session);
+        atRiskEngine.sessionChanged(completed);
+        arrivalHistograms.sessionCompleted(completed);
+        return completed;
     }
     
     /**
@@ -144,6 +203,10 @@ public class AttendanceSessionService {
         }
         
         session.setStatus(SessionStatus.CANCELLED);
+        geofenceService.evictSession(sessionId);
+        deviceSharingDetector.evictSession(sessionId);
+        arrivalHistograms.sessionCancelled(sessionId);
+        invalidationBus.publish(CacheInvalidationBus.TOPIC_SESSION, sessionId);
         return sessionRepository.save(session);
     }
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.university.attendance.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cross-instance cache invalidation over Postgres LISTEN/NOTIFY (cache.invalidation.enabled).
+ *
+ * Services publish "topic + key" events (a session id, a user id, ALL) and caches
+ * subscribe to the topics they hold. publish() runs pg_notify on the caller's
+ * transaction, and Postgres only delivers a notification when that transaction
+ * commits, so other instances never evict before the change is visible and a rolled
+ * back change evicts nothing. Identical events in one transaction are delivered once.
+ * An instance ignores its own events: its caches were already evicted in-process.
+ *
+ * Each instance listens on one dedicated connection to the primary, outside the Hikari
+ * pool. If it breaks, the listener reconnects with backoff and then hands every
+ * subscriber ALL, since events sent while it was away are lost. The same happens once
+ * at startup. Notifications are not replicated, so the listener never uses a replica.
+ *
+ * Metrics: cache.invalidation.published{topic}, .received{topic}, .reconnects,
+ * .connected (1 while listening).
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    public static final String CHANNEL = "cache_invalidation";
+    public static final String ALL = "*";
+
+    public static final String TOPIC_MODULES = "modules";
+    public static final String TOPIC_USER = "user";
+    public static final String TOPIC_SESSION = "session";
+    public static final String TOPIC_GEOFENCES = "geofences";
+    public static final String TOPIC_AT_RISK = "at-risk";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Duration maxRetryDelay;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+    private final Counter reconnects;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread listener;
+
+    public CacheInvalidationBus(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry registry,
+            @Value("${cache.invalidation.enabled:true}") boolean enabled,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${cache.invalidation.max-retry-delay:30s}") Duration maxRetryDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.registry = registry;
+        this.enabled = enabled;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxRetryDelay = maxRetryDelay;
+        this.reconnects = Counter.builder("cache.invalidation.reconnects")
+            .description("Times the invalidation listener reconnected and flushed every cache")
+            .register(registry);
+        registry.gauge("cache.invalidation.connected", this, bus -> bus.connected ? 1 : 0);
+    }
+
+    /**
+     * Evict handler for a topic: called with the key of each event from another
+     * instance, or with ALL after a reconnect
+     */
+    public void subscribe(String topic, Consumer<String> handler) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /**
+     * Tell the other instances to evict a key (or ALL) of a topic.
+     * Joins the current transaction and is delivered when it commits.
+     */
+    public void publish(String topic, Object key) {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.queryForRowSet("SELECT pg_notify(?, ?)", CHANNEL, nodeId + ':' + topic + ':' + key);
+        registry.counter("cache.invalidation.published", "topic", topic).increment();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    private void listen() {
+        long retryDelay = 1000;
+        boolean first = true;
+        while (running) {
+            try (Connection listening = DriverManager.getConnection(url, connectionProperties())) {
+                connection = listening;
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                connected = true;
+                retryDelay = 1000;
+                if (!first) {
+                    reconnects.increment();
+                }
+                first = false;
+                // Whatever was published while we were not listening is lost
+                dispatchAll();
+                receive(listening.unwrap(PGConnection.class), listening);
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener disconnected, retrying in {} ms: {}", retryDelay, e.getMessage());
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            retryDelay = Math.min(retryDelay * 2, maxRetryDelay.toMillis());
+        }
+    }
+
+    private Properties connectionProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password == null ? "" : password);
+        // Shows up as application_name in pg_stat_activity
+        properties.setProperty("ApplicationName", "cache-invalidation");
+        return properties;
+    }
+
+    private void receive(PGConnection notifications, Connection listening) throws SQLException {
+        while (running) {
+            PGNotification[] received = notifications.getNotifications(10_000);
+            if (received == null || received.length == 0) {
+                // A silently dropped connection never delivers anything, probe it
+                if (!listening.isValid(5)) {
+                    throw new SQLException("Listener connection is no longer valid");
+                }
+                continue;
+            }
+            for (PGNotification notification : received) {
+                dispatch(notification.getParameter());
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        String[] parts = payload.split(":", 3);
+        if (parts.length != 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        registry.counter("cache.invalidation.received", "topic", parts[1]).increment();
+        for (Consumer<String> handler : subscribers.getOrDefault(parts[1], List.of())) {
+            try {
+                handler.accept(parts[2]);
+            } catch (RuntimeException e) {
+                log.warn("Cache invalidation handler for {} failed: {}", parts[1], e.getMessage());
+            }
+        }
+    }
+
+    private void dispatchAll() {
+        subscribers.values().forEach(handlers -> handlers.forEach(handler -> handler.accept(ALL)));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            try {
+                Connection listening = connection;
+                if (listening != null) {
+                    listening.close();
+                }
+            } catch (SQLException e) {
+                // Shutting down anyway
+            }
+            listener.interrupt();
+            listener.join(5000);
+        }
+    }
+}
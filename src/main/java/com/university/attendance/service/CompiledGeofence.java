@@ -0,0 +1,247 @@
+package com.university.attendance.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable, precomputed geofence for one session.
+ *
+ * All per-zone trig (cosine of latitude, degree spans, projected vertices) is done
+ * once when the geofence is compiled. A point check is then mostly comparisons:
+ * - outside a zone's bounding box: reject, no trig
+ * - inside a circle's inscribed box: accept, no trig
+ * - otherwise a local flat-earth (equirectangular) distance, and a full Haversine
+ *   only when the point lies within a thin band around the circle edge
+ * Intended for campus-scale zones (up to a few kilometres).
+ */
+public final class CompiledGeofence {
+
+    static final double EARTH_RADIUS_METERS = 6371000;
+    static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    // Inscribed square of a circle is at 1/sqrt(2) ~ 0.7071 of the radius, keep a margin
+    private static final double INNER_BOX_FACTOR = 0.70;
+    // Squared-distance band around the edge where the flat-earth estimate is not trusted
+    private static final double EDGE_BAND_LOW = 0.98;
+    private static final double EDGE_BAND_HIGH = 1.02;
+
+    private final Circle[] circles;
+    private final Polygon[] polygons;
+
+    private CompiledGeofence(Circle[] circles, Polygon[] polygons) {
+        this.circles = circles;
+        this.polygons = polygons;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isEmpty() {
+        return circles.length == 0 && polygons.length == 0;
+    }
+
+    /**
+     * True if the point is inside any zone
+     */
+    public boolean contains(double latitude, double longitude) {
+        for (Circle circle : circles) {
+            if (circle.contains(latitude, longitude)) {
+                return true;
+            }
+        }
+        for (Polygon polygon : polygons) {
+            if (polygon.contains(latitude, longitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distance in meters to the closest zone (circle center or polygon edge).
+     * Only needed for error messages, so it is not on the fast path.
+     */
+    public double distanceMeters(double latitude, double longitude) {
+        double best = Double.MAX_VALUE;
+        for (Circle circle : circles) {
+            best = Math.min(best, haversine(latitude, longitude, circle.latitude, circle.longitude));
+        }
+        for (Polygon polygon : polygons) {
+            best = Math.min(best, polygon.distanceToEdge(latitude, longitude));
+        }
+        return best;
+    }
+
+    /**
+     * Great-circle distance between two GPS coordinates (Haversine formula)
+     */
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_METERS * c;
+    }
+
+    public static final class Builder {
+
+        private final List<Circle> circles = new ArrayList<>();
+        private final List<Polygon> polygons = new ArrayList<>();
+
+        public Builder circle(double latitude, double longitude, double radiusMeters) {
+            circles.add(new Circle(latitude, longitude, radiusMeters));
+            return this;
+        }
+
+        /**
+         * @param vertices array of {lat, lng} pairs, at least 3
+         */
+        public Builder polygon(double[][] vertices) {
+            polygons.add(new Polygon(vertices));
+            return this;
+        }
+
+        public CompiledGeofence build() {
+            return new CompiledGeofence(circles.toArray(new Circle[0]), polygons.toArray(new Polygon[0]));
+        }
+    }
+
+    private static final class Circle {
+
+        final double latitude;
+        final double longitude;
+        final double radiusMeters;
+        final double radiusSquared;
+        final double metersPerDegreeLng;
+        // Bounding box half-spans in degrees (conservative: uses the poleward edge)
+        final double latSpan;
+        final double lngSpan;
+        // Inscribed box half-spans in degrees
+        final double innerLatSpan;
+        final double innerLngSpan;
+
+        Circle(double latitude, double longitude, double radiusMeters) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusMeters = radiusMeters;
+            this.radiusSquared = radiusMeters * radiusMeters;
+
+            double cosLat = Math.cos(Math.toRadians(latitude));
+            this.metersPerDegreeLng = METERS_PER_DEGREE * cosLat;
+
+            this.latSpan = radiusMeters / METERS_PER_DEGREE;
+            double polewardLat = Math.min(89.9, Math.abs(latitude) + latSpan);
+            this.lngSpan = radiusMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(polewardLat)));
+
+            this.innerLatSpan = latSpan * INNER_BOX_FACTOR;
+            this.innerLngSpan = radiusMeters * INNER_BOX_FACTOR / Math.max(metersPerDegreeLng, 1e-9);
+        }
+
+        boolean contains(double lat, double lng) {
+            double dLat = Math.abs(lat - latitude);
+            if (dLat > latSpan) {
+                return false;
+            }
+            double dLng = Math.abs(lng - longitude);
+            if (dLng > lngSpan) {
+                return false;
+            }
+            if (dLat <= innerLatSpan && dLng <= innerLngSpan) {
+                return true;
+            }
+
+            double y = dLat * METERS_PER_DEGREE;
+            double x = dLng * metersPerDegreeLng;
+            double distanceSquared = x * x + y * y;
+            if (distanceSquared < radiusSquared * EDGE_BAND_LOW) {
+                return true;
+            }
+            if (distanceSquared > radiusSquared * EDGE_BAND_HIGH) {
+                return false;
+            }
+            return haversine(lat, lng, latitude, longitude) <= radiusMeters;
+        }
+    }
+
+    private static final class Polygon {
+
+        // Local plane origin and scale, vertices stored as projected meters
+        final double originLat;
+        final double originLng;
+        final double metersPerDegreeLng;
+        final double[] xs;
+        final double[] ys;
+        final double minLat, maxLat, minLng, maxLng;
+
+        Polygon(double[][] vertices) {
+            if (vertices.length < 3) {
+                throw new IllegalArgumentException("Polygon needs at least 3 vertices");
+            }
+            double latMin = Double.MAX_VALUE, latMax = -Double.MAX_VALUE;
+            double lngMin = Double.MAX_VALUE, lngMax = -Double.MAX_VALUE;
+            for (double[] vertex : vertices) {
+                latMin = Math.min(latMin, vertex[0]);
+                latMax = Math.max(latMax, vertex[0]);
+                lngMin = Math.min(lngMin, vertex[1]);
+                lngMax = Math.max(lngMax, vertex[1]);
+            }
+            this.minLat = latMin;
+            this.maxLat = latMax;
+            this.minLng = lngMin;
+            this.maxLng = lngMax;
+
+            this.originLat = (latMin + latMax) / 2;
+            this.originLng = (lngMin + lngMax) / 2;
+            this.metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLat));
+
+            this.xs = new double[vertices.length];
+            this.ys = new double[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                xs[i] = (vertices[i][1] - originLng) * metersPerDegreeLng;
+                ys[i] = (vertices[i][0] - originLat) * METERS_PER_DEGREE;
+            }
+        }
+
+        boolean contains(double lat, double lng) {
+            if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng) {
+                return false;
+            }
+            double x = (lng - originLng) * metersPerDegreeLng;
+            double y = (lat - originLat) * METERS_PER_DEGREE;
+
+            // Ray casting (even-odd rule)
+            boolean inside = false;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((ys[i] > y) != (ys[j] > y)
+                        && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        double distanceToEdge(double lat, double lng) {
+            if (contains(lat, lng)) {
+                return 0;
+            }
+            double x = (lng - originLng) * metersPerDegreeLng;
+            double y = (lat - originLat) * METERS_PER_DEGREE;
+
+            double best = Double.MAX_VALUE;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                double ex = xs[i] - xs[j];
+                double ey = ys[i] - ys[j];
+                double lengthSquared = ex * ex + ey * ey;
+                double t = lengthSquared == 0 ? 0
+                    : Math.max(0, Math.min(1, ((x - xs[j]) * ex + (y - ys[j]) * ey) / lengthSquared));
+                double px = xs[j] + t * ex - x;
+                double py = ys[j] + t * ey - y;
+                best = Math.min(best, Math.sqrt(px * px + py * py));
+            }
+            return best;
+        }
+    }
+}
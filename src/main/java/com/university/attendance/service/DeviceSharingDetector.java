@@ -0,0 +1,162 @@
+package com.university.attendance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Inline detection of one device scanning for several students in a session.
+ *
+ * Per active session, a count-min style table: ROWS x width slots indexed by a hash of
+ * the device fingerprint, each slot holding up to max-students-per-device + 1 entries of
+ * (student hash, time bucket of the last scan). The distinct-student count of a slot is
+ * its entries still inside the window, exact up to that cap, and a device's count is the
+ * minimum over its rows. Below the cap nothing is ever lost, so a device used by more
+ * than the maximum is always flagged; once a slot is full, a new student replaces the
+ * stalest entry and the count stays at the cap. Fingerprint collisions can only add
+ * students, so errors are false flags, and with the default width a session of a few
+ * hundred devices rarely fills one slot in both rows.
+ *
+ * Memory is fixed per session (ROWS * width * (max-students-per-device + 1) longs,
+ * 128 kB by default) and sessions idle for longer than the window are dropped. Unless
+ * max-sessions is set, at most 1/32 of the maximum heap is spent on session tables. A
+ * check is a few hashes and array reads under the session's monitor.
+ *
+ * deviceInfo is whatever the client reports (often just the user agent), so identical
+ * phones share a fingerprint; hence the default action is to flag, not block.
+ */
+@Slf4j
+@Component
+public class DeviceSharingDetector {
+
+    public enum Action { FLAG, BLOCK }
+
+    private static final int ROWS = 2;
+    private static final int EPOCH_BITS = 20;
+    private static final long EPOCH_MASK = (1L << EPOCH_BITS) - 1;
+    private static final long HEAP_SHARE = 32;
+    private static final long MIN_SESSIONS = 16;
+
+    private final Cache<UUID, SessionWindow> windows;
+    private final int maxStudentsPerDevice;
+    private final Action action;
+    private final int width;
+    private final int slotSize;
+    private final int buckets;
+    private final long bucketMillis;
+
+    public DeviceSharingDetector(
+            MeterRegistry registry,
+            CacheInvalidationBus invalidationBus,
+            @Value("${scan.device-sharing.max-students-per-device:3}") int maxStudentsPerDevice,
+            @Value("${scan.device-sharing.action:flag}") String action,
+            @Value("${scan.device-sharing.window:10m}") Duration window,
+            @Value("${scan.device-sharing.buckets:4}") int buckets,
+            @Value("${scan.device-sharing.width:2048}") int width,
+            @Value("${scan.device-sharing.max-sessions:0}") long maxSessions) {
+        this.maxStudentsPerDevice = maxStudentsPerDevice;
+        this.action = Action.valueOf(action.toUpperCase());
+        this.width = Integer.highestOneBit(Math.max(width, 64));
+        this.slotSize = Math.max(maxStudentsPerDevice, 0) + 1;
+        this.buckets = (int) Math.min(Math.max(buckets, 1), EPOCH_MASK);
+        this.bucketMillis = Math.max(window.toMillis() / this.buckets, 1);
+        long sessionBytes = (long) ROWS * this.width * slotSize * Long.BYTES;
+        if (maxSessions <= 0) {
+            maxSessions = Math.max(Runtime.getRuntime().maxMemory() / HEAP_SHARE / sessionBytes, MIN_SESSIONS);
+        }
+        log.info("Device-sharing detection: up to {} sessions of {} kB", maxSessions, sessionBytes / 1024);
+        this.windows = Caffeine.newBuilder()
+            .maximumSize(maxSessions)
+            .expireAfterAccess(window)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, windows, "device-sharing.sessions");
+        // A session ended on another instance; on a full flush keep the windows, they only hold live scans
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_SESSION, key -> {
+            if (!CacheInvalidationBus.ALL.equals(key)) {
+                evictSession(UUID.fromString(key));
+            }
+        });
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * Record a scan and return whether its device has now been used by more than
+     * max-students-per-device distinct students in this session within the window.
+     * Scans without device info are never suspect.
+     */
+    public boolean observe(UUID sessionId, UUID studentId, String deviceInfo) {
+        if (deviceInfo == null || deviceInfo.isBlank()) {
+            return false;
+        }
+        long fingerprint = Hashes.hash(deviceInfo);
+        // Top bit set so an entry is never 0 (empty), low bits hold the epoch
+        long student = (Hashes.hash(studentId) | Long.MIN_VALUE) & ~EPOCH_MASK;
+        SessionWindow window = windows.get(sessionId, id -> new SessionWindow());
+        return window.observe(System.currentTimeMillis() / bucketMillis, fingerprint, student) > maxStudentsPerDevice;
+    }
+
+    /**
+     * Drop a session's window (e.g. once it has ended)
+     */
+    public void evictSession(UUID sessionId) {
+        windows.invalidate(sessionId);
+    }
+
+    /**
+     * ROWS x width slots of slotSize entries stored in one array
+     */
+    private final class SessionWindow {
+
+        private final long[] entries = new long[ROWS * width * slotSize];
+
+        synchronized int observe(long epoch, long fingerprint, long student) {
+            long stamped = student | (epoch & EPOCH_MASK);
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < ROWS; row++) {
+                int base = (row * width + (int) ((fingerprint >>> (row * 32)) & (width - 1))) * slotSize;
+                int live = 0;
+                int match = -1;
+                int free = -1;
+                int stalest = -1;
+                long stalestAge = -1;
+                for (int i = base; i < base + slotSize; i++) {
+                    long entry = entries[i];
+                    long age = (epoch - entry) & EPOCH_MASK;
+                    if (entry == 0 || age >= buckets) {
+                        if (free < 0) {
+                            free = i;
+                        }
+                    } else if ((entry & ~EPOCH_MASK) == student) {
+                        match = i;
+                    } else {
+                        live++;
+                        if (age > stalestAge) {
+                            stalest = i;
+                            stalestAge = age;
+                        }
+                    }
+                }
+                if (match >= 0 || free >= 0) {
+                    entries[match >= 0 ? match : free] = stamped;
+                    live++;
+                } else {
+                    // Full of other students: already over the limit, keep the most recent ones
+                    entries[stalest] = stamped;
+                }
+                estimate = Math.min(estimate, live);
+            }
+            return estimate;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.university.attendance.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds weak HTTP entity tags from entity version rows (id, version, timestamps...)
+ * so conditional GETs can be answered without loading or serializing entities.
+ * Weak because list ordering and JSON formatting are not guaranteed byte-identical.
+ */
+public final class ETags {
+    
+    private ETags() {
+    }
+    
+    /**
+     * ETag for one entity, empty if it does not exist
+     */
+    public static Optional<String> ofSingle(String kind, List<Object[]> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(of(kind, rows));
+    }
+    
+    /**
+     * ETag for one entity given its version parts
+     */
+    public static String ofParts(String kind, Object... parts) {
+        return of(kind, List.<Object[]>of(parts));
+    }
+    
+    /**
+     * ETag for a collection (or single entity) given its version rows
+     */
+    public static String of(String kind, List<Object[]> rows) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Object[] row : rows) {
+            for (Object column : row) {
+                digest.update(String.valueOf(column).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '|');
+            }
+            digest.update((byte) '\n');
+        }
+        // 64 bits is plenty to tell versions of the same resource apart
+        String hash = HexFormat.of().formatHex(digest.digest(), 0, 8);
+        return "W/\"" + kind + "-" + hash + "\"";
+    }
+}
@@ -0,0 +1,220 @@
+package com.university.attendance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.GeofenceType;
+import com.university.attendance.entity.GeofenceZone;
+import com.university.attendance.repository.GeofenceZoneRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@Transactional
+public class GeofenceService {
+
+    private final GeofenceZoneRepository zoneRepository;
+    private final ScanMetrics scanMetrics;
+    private final CacheInvalidationBus invalidationBus;
+
+    // Compiled geofence per session, built on first scan and reused while the session is scanned
+    private final Cache<UUID, CompiledGeofence> compiledBySession;
+
+    public GeofenceService(
+            GeofenceZoneRepository zoneRepository,
+            ScanMetrics scanMetrics,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry registry,
+            @Value("${cache.geofences.expire-after-access:30m}") Duration expireAfterAccess,
+            @Value("${cache.geofences.maximum-size:2000}") long maximumSize) {
+        this.zoneRepository = zoneRepository;
+        this.scanMetrics = scanMetrics;
+        this.invalidationBus = invalidationBus;
+        this.compiledBySession = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterAccess(expireAfterAccess)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, compiledBySession, "geofences");
+        // Zones or session status changed on another instance
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_GEOFENCES, this::evictKey);
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_SESSION, this::evictKey);
+    }
+
+    /**
+     * Create a geofence zone
+     * Business Rules:
+     * - Zone belongs to exactly one of: a session, or a classroom
+     * - CIRCLE needs center and positive radius, POLYGON needs at least 3 vertices
+     */
+    public GeofenceZone createZone(GeofenceZone zone) {
+        boolean hasSession = zone.getSession() != null;
+        boolean hasClassroom = zone.getClassroom() != null && !zone.getClassroom().isBlank();
+        if (hasSession == hasClassroom) {
+            throw new RuntimeException("Geofence zone must belong to either a session or a classroom");
+        }
+
+        if (zone.getZoneType() == GeofenceType.CIRCLE) {
+            if (zone.getCenterLatitude() == null || zone.getCenterLongitude() == null
+                    || zone.getRadiusMeters() == null || zone.getRadiusMeters() <= 0) {
+                throw new RuntimeException("Circle zone requires center coordinates and a positive radius");
+            }
+        } else if (parseVertices(zone.getVertices()).length < 3) {
+            throw new RuntimeException("Polygon zone requires at least 3 vertices");
+        }
+
+        GeofenceZone saved = zoneRepository.save(zone);
+        evictFor(saved);
+        return saved;
+    }
+
+    /**
+     * Get every zone that applies to a session (its own zones plus its classroom's zones)
+     */
+    @Transactional(readOnly = true)
+    public List<GeofenceZone> getZonesForSession(AttendanceSession session) {
+        List<GeofenceZone> zones = new ArrayList<>(zoneRepository.findBySession(session));
+        zones.addAll(zoneRepository.findByClassroom(session.getClassroom()));
+        return zones;
+    }
+
+    /**
+     * Get zones defined for a classroom
+     */
+    @Transactional(readOnly = true)
+    public List<GeofenceZone> getZonesForClassroom(String classroom) {
+        return zoneRepository.findByClassroom(classroom);
+    }
+
+    /**
+     * Delete a zone
+     */
+    public void deleteZone(UUID zoneId) {
+        GeofenceZone zone = zoneRepository.findById(zoneId)
+            .orElseThrow(() -> new RuntimeException("Geofence zone not found"));
+        zoneRepository.delete(zone);
+        evictFor(zone);
+    }
+
+    /**
+     * Validate a student's location against the session geofence
+     * Throws if location is missing or outside every zone; the rejection does not mark the
+     * caller's transaction rollback-only (an offline batch still records its other events)
+     */
+    @Transactional(readOnly = true, noRollbackFor = RuntimeException.class)
+    public void checkLocation(AttendanceSession session, Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            throw scanMetrics.rejected("location_missing", "Location is required for this session");
+        }
+
+        CompiledGeofence geofence = getGeofence(session);
+        if (geofence.isEmpty()) {
+            throw scanMetrics.rejected("geofence_missing", "No campus geofence is configured for this session");
+        }
+
+        if (!geofence.contains(latitude, longitude)) {
+            throw scanMetrics.rejected("outside_geofence", "You must be on campus to mark attendance. Distance: "
+                + geofence.distanceMeters(latitude, longitude)
+                + " meters");
+        }
+    }
+
+    /**
+     * Get (or compile and cache) the geofence for a session
+     */
+    @Transactional(readOnly = true)
+    public CompiledGeofence getGeofence(AttendanceSession session) {
+        return compiledBySession.get(session.getId(), id -> compile(session));
+    }
+
+    /**
+     * Drop the compiled geofence of a session (e.g. once it has ended)
+     */
+    public void evictSession(UUID sessionId) {
+        compiledBySession.invalidate(sessionId);
+    }
+
+    private CompiledGeofence compile(AttendanceSession session) {
+        CompiledGeofence.Builder builder = CompiledGeofence.builder();
+
+        // Legacy single campus circle stored on the session itself
+        if (session.getCampusLatitude() != null && session.getCampusLongitude() != null
+                && session.getCampusRadiusMeters() != null) {
+            builder.circle(session.getCampusLatitude(), session.getCampusLongitude(), session.getCampusRadiusMeters());
+        }
+
+        for (GeofenceZone zone : getZonesForSession(session)) {
+            if (zone.getZoneType() == GeofenceType.CIRCLE) {
+                builder.circle(zone.getCenterLatitude(), zone.getCenterLongitude(), zone.getRadiusMeters());
+            } else {
+                builder.polygon(parseVertices(zone.getVertices()));
+            }
+        }
+
+        return builder.build();
+    }
+
+    private void evictFor(GeofenceZone zone) {
+        if (zone.getSession() != null) {
+            evictSession(zone.getSession().getId());
+            invalidationBus.publish(CacheInvalidationBus.TOPIC_GEOFENCES, zone.getSession().getId());
+        } else {
+            // Classroom zones can affect any session, just recompile lazily
+            compiledBySession.invalidateAll();
+            invalidationBus.publish(CacheInvalidationBus.TOPIC_GEOFENCES, CacheInvalidationBus.ALL);
+        }
+    }
+
+    private void evictKey(String key) {
+        if (CacheInvalidationBus.ALL.equals(key)) {
+            compiledBySession.invalidateAll();
+        } else {
+            evictSession(UUID.fromString(key));
+        }
+    }
+
+    /**
+     * Parse "lat,lng;lat,lng;..." into {lat, lng} pairs
+     */
+    public static double[][] parseVertices(String vertices) {
+        if (vertices == null || vertices.isBlank()) {
+            return new double[0][];
+        }
+        String[] points = vertices.split(";");
+        double[][] result = new double[points.length][];
+        for (int i = 0; i < points.length; i++) {
+            String[] latLng = points[i].split(",");
+            if (latLng.length != 2) {
+                throw new RuntimeException("Invalid polygon vertex: " + points[i]);
+            }
+            result[i] = new double[] {
+                Double.parseDouble(latLng[0].trim()),
+                Double.parseDouble(latLng[1].trim())
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Format {lat, lng} pairs as "lat,lng;lat,lng;..."
+     */
+    public static String formatVertices(List<List<Double>> vertices) {
+        StringBuilder result = new StringBuilder();
+        for (List<Double> vertex : vertices) {
+            if (vertex.size() != 2) {
+                throw new RuntimeException("Polygon vertex must be [latitude, longitude]");
+            }
+            if (result.length() > 0) result.append(";");
+            result.append(vertex.get(0)).append(",").append(vertex.get(1));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.university.attendance.service;
+
+import java.util.UUID;
+
+/**
+ * Fast non-cryptographic 64-bit hashes for in-memory placement (hash rings, sketches)
+ */
+final class Hashes {
+
+    private Hashes() {
+    }
+
+    /**
+     * FNV-1a style over the chars, then the MurmurHash3 finalizer
+     */
+    static long hash(String value) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    static long hash(UUID value) {
+        return mix(value.getMostSignificantBits() ^ mix(value.getLeastSignificantBits()));
+    }
+
+    // MurmurHash3 finalizer
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93E8A8F7B6BL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,132 @@
+package com.university.attendance.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.university.attendance.config.PrimaryReads;
+import com.university.attendance.entity.Module;
+import com.university.attendance.repository.ModuleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cache for the module catalogue: the active module list, code lookups and
+ * per-teacher active lists.
+ *
+ * The catalogue changes a few times a term, so entries are refreshed ahead in the
+ * background (refresh-after) while readers keep getting the old value, and expire
+ * only if nobody reads them for a long time. Every write through ModuleService
+ * invalidates the whole catalogue, here and (through CacheInvalidationBus) on the
+ * other instances once it commits, so a concurrent reader cannot re-cache the old rows;
+ * refresh-after still bounds staleness should the bus be down. Callers get copies,
+ * never the cached instances, as with UserIdentityCache.
+ *
+ * Metrics: cache.gets{cache=modules.*,result=hit|miss}, cache.size, cache.evictions
+ * (hit rate = hit / (hit + miss)) and module.catalogue.load{cache=...}, the latency
+ * of initial loads and background refreshes.
+ */
+@Component
+public class ModuleCatalogueCache {
+    
+    private static final String ACTIVE_KEY = "active";
+    
+    private final LoadingCache<String, List<Module>> activeModules;
+    private final LoadingCache<String, Optional<Module>> modulesByCode;
+    private final LoadingCache<UUID, List<Module>> modulesByTeacher;
+    private final CacheInvalidationBus invalidationBus;
+    
+    public ModuleCatalogueCache(
+            ModuleRepository moduleRepository,
+            PrimaryReads primaryReads,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry registry,
+            @Value("${cache.modules.refresh-after:5m}") Duration refreshAfter,
+            @Value("${cache.modules.expire-after:1h}") Duration expireAfter,
+            @Value("${cache.modules.maximum-size:2000}") long maximumSize) {
+        if (!refreshAfter.minus(expireAfter).isNegative()) {
+            throw new IllegalStateException("cache.modules.refresh-after must be shorter than expire-after");
+        }
+        this.activeModules = build("modules.active", 1, refreshAfter, expireAfter, registry, primaryReads,
+            key -> moduleRepository.findByActiveTrue());
+        this.modulesByCode = build("modules.code", maximumSize, refreshAfter, expireAfter, registry, primaryReads,
+            moduleRepository::findByModuleCode);
+        this.modulesByTeacher = build("modules.teacher", maximumSize, refreshAfter, expireAfter, registry,
+            primaryReads, moduleRepository::findByTeacherIdAndActiveTrue);
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_MODULES, key -> invalidateLocal());
+    }
+    
+    private static <K, V> LoadingCache<K, V> build(String name, long maximumSize, Duration refreshAfter,
+            Duration expireAfter, MeterRegistry registry, PrimaryReads primaryReads, Function<K, V> loader) {
+        Timer loadTimer = Timer.builder("module.catalogue.load")
+            .description("Latency of module catalogue loads and refreshes")
+            .tag("cache", name)
+            .register(registry);
+        LoadingCache<K, V> cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .refreshAfterWrite(refreshAfter)
+            .expireAfterWrite(expireAfter)
+            .recordStats()
+            // Loads always read the primary, a reload right after a write must not cache replica lag
+            .build(key -> loadTimer.record(() -> primaryReads.read(() -> loader.apply(key))));
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        return cache;
+    }
+    
+    public List<Module> getActiveModules() {
+        return copy(activeModules.get(ACTIVE_KEY));
+    }
+    
+    public Optional<Module> getByCode(String moduleCode) {
+        return modulesByCode.get(moduleCode).map(ModuleCatalogueCache::copy);
+    }
+    
+    public List<Module> getActiveByTeacher(UUID teacherId) {
+        return copy(modulesByTeacher.get(teacherId));
+    }
+    
+    /**
+     * Drop everything, called after any module write.
+     * Deferred to after commit when called inside a transaction.
+     */
+    public void invalidateAll() {
+        invalidationBus.publish(CacheInvalidationBus.TOPIC_MODULES, CacheInvalidationBus.ALL);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateLocal();
+                }
+            });
+        } else {
+            invalidateLocal();
+        }
+    }
+    
+    private void invalidateLocal() {
+        activeModules.invalidateAll();
+        modulesByCode.invalidateAll();
+        modulesByTeacher.invalidateAll();
+    }
+    
+    private static List<Module> copy(List<Module> modules) {
+        return modules.stream().map(ModuleCatalogueCache::copy).collect(Collectors.toList());
+    }
+    
+    private static Module copy(Module module) {
+        return new Module(module.getId(), module.getModuleCode(), module.getModuleName(),
+            UserIdentityCache.copy(module.getTeacher()), module.getDescription(), module.getActive(),
+            module.getCreatedAt(), module.getVersion());
+    }
+}
@@ -7,9 +7,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -18,6 +20,7 @@ public class ModuleService {
     
     private final ModuleRepository moduleRepository;
     private final UserService userService;
+    private final ModuleCatalogueCache catalogueCache;
     
     /**
      * Create a new module
@@ -35,44 +38,91 @@ public class ModuleService {
             throw new RuntimeException("Invalid teacher");
         }
         
-        return moduleRepository.save(module);
+        Module saved = moduleRepository.save(module);
+        catalogueCache.invalidateAll();
+        return saved;
     }
     
     /**
      * Find module by ID
      */
+    @Transactional(readOnly = true)
     public Optional<Module> getModuleById(UUID id) {
         return moduleRepository.findById(id);
     }
     
     /**
-     * Find module by code (e.g., "CS101")
+     * Find module by code (e.g., "CS101"), served from the catalogue cache
      */
+    @Transactional(readOnly = true)
     public Optional<Module> getModuleByCode(String moduleCode) {
-        return moduleRepository.findByModuleCode(moduleCode);
+        return catalogueCache.getByCode(moduleCode);
+    }
+    
+    /**
+     * Get the ETag of a module without loading it
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> getModuleETag(UUID id) {
+        return ETags.ofSingle("module", moduleRepository.findVersionRowById(id));
+    }
+    
+    /**
+     * Get the ETag of a module by code, from the catalogue cache
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> getModuleByCodeETag(String moduleCode) {
+        return catalogueCache.getByCode(moduleCode)
+            .map(module -> ETags.of("module", List.<Object[]>of(versionRow(module))));
+    }
+    
+    /**
+     * Get the ETag of the active module list, from the catalogue cache
+     */
+    @Transactional(readOnly = true)
+    public String getActiveModulesETag() {
+        List<Object[]> rows = catalogueCache.getActiveModules().stream()
+            .sorted(Comparator.comparing(Module::getId))
+            .map(ModuleService::versionRow)
+            .collect(Collectors.toList());
+        return ETags.of("modules", rows);
+    }
+    
+    // Same columns as ModuleRepository.findVersionRowById
+    private static Object[] versionRow(Module module) {
+        User teacher = module.getTeacher();
+        return new Object[] {
+            module.getId(),
+            module.getVersion(),
+            teacher.getUpdatedAt() != null ? teacher.getUpdatedAt() : teacher.getCreatedAt()
+        };
     }
     
     /**
      * Get all modules taught by a specific teacher
      */
+    @Transactional(readOnly = true)
     public List<Module> getModulesByTeacher(User teacher) {
         return moduleRepository.findByTeacher(teacher);
     }
     
     /**
-     * Get all active modules
+     * Get all active modules, served from the catalogue cache
      */
+    @Transactional(readOnly = true)
     public List<Module> getAllActiveModules() {
-        return moduleRepository.findByActiveTrue();
+        return catalogueCache.getActiveModules();
     }
     
     /**
-     * Get active modules for a specific teacher
+     * Get active modules for a specific teacher, served from the catalogue cache
      */
+    @Transactional(readOnly = true)
     public List<Module> getActiveModulesByTeacher(UUID teacherId) {
-        User teacher = userService.getUserById(teacherId)
-            .orElseThrow(() -> new RuntimeException("Teacher not found"));
-        return moduleRepository.findByTeacherAndActiveTrue(teacher);
+        if (userService.getUserById(teacherId).isEmpty()) {
+            throw new RuntimeException("Teacher not found");
+        }
+        return catalogueCache.getActiveByTeacher(teacherId);
     }
     
     /**
@@ -82,7 +132,9 @@ public class ModuleService {
         if (!moduleRepository.existsById(module.getId())) {
             throw new RuntimeException("Module not found with ID: " + module.getId());
         }
-        return moduleRepository.save(module);
+        Module saved = moduleRepository.save(module);
+        catalogueCache.invalidateAll();
+        return saved;
     }
     
     /**
@@ -93,5 +145,6 @@ public class ModuleService {
             .orElseThrow(() -> new RuntimeException("Module not found"));
         module.setActive(false);
         moduleRepository.save(module);
+        catalogueCache.invalidateAll();
     }
 }
\ No newline at end of file
@@ -0,0 +1,235 @@
+package com.university.attendance.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders QR codes straight from their modules, without a BufferedImage.
+ *
+ * The code is encoded at one pixel per module (quiet zone included) and then written as:
+ *   PNG  1-bit indexed (two colour palette), scaled and centred exactly like
+ *        QRCodeWriter does for the requested size, so the pixels are the same as the
+ *        former MatrixToImageWriter output. Each module row is built once and repeated,
+ *        repeats use the PNG "Up" filter so they deflate to almost nothing.
+ *   SVG  one stroked path of the horizontal runs of dark modules over a viewBox of
+ *        the module grid, with crispEdges so it stays sharp at any projector resolution.
+ */
+@Component
+public class QRCodeRenderer {
+
+    public enum Format {
+        PNG(MediaType.IMAGE_PNG),
+        SVG(MediaType.valueOf("image/svg+xml"));
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Format named by a ?format= value, or picked from an Accept header.
+         * SVG is only chosen when it is preferred over PNG, a tie keeps PNG.
+         */
+        public static Format resolve(String format, String accept) {
+            if (format != null && !format.isBlank()) {
+                try {
+                    return valueOf(format.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException("Unsupported QR code format: " + format);
+                }
+            }
+            if (accept == null || accept.isBlank()) {
+                return PNG;
+            }
+            List<MediaType> accepted;
+            try {
+                accepted = MediaType.parseMediaTypes(accept);
+            } catch (IllegalArgumentException e) {
+                return PNG;
+            }
+            return quality(accepted, SVG) > quality(accepted, PNG) ? SVG : PNG;
+        }
+
+        // q of the most specific accepted type covering this format, 0 if none
+        private static double quality(List<MediaType> accepted, Format format) {
+            double quality = 0;
+            int specificity = -1;
+            for (MediaType type : accepted) {
+                if (!type.includes(format.mediaType)) {
+                    continue;
+                }
+                int rank = type.isWildcardType() ? 0 : type.isWildcardSubtype() ? 1 : 2;
+                if (rank > specificity) {
+                    specificity = rank;
+                    quality = type.getQualityValue();
+                }
+            }
+            return quality;
+        }
+    }
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    // Palette index 0 = white, 1 = black (a set module)
+    private static final byte[] PALETTE = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0 };
+    private static final byte FILTER_NONE = 0;
+    private static final byte FILTER_UP = 2;
+
+    public byte[] render(String data, Format format, int width, int height) {
+        BitMatrix modules = encode(data);
+        return format == Format.SVG ? toSvg(modules, width, height) : toPng(modules, width, height);
+    }
+
+    /**
+     * The QR code at one pixel per module, quiet zone included
+     */
+    public BitMatrix encode(String data) {
+        try {
+            return new QRCodeWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0);
+        } catch (WriterException e) {
+            throw new RuntimeException("Failed to generate QR code", e);
+        }
+    }
+
+    public byte[] toPng(BitMatrix modules, int width, int height) {
+        int size = modules.getWidth();
+        int outputWidth = Math.max(width, size);
+        int outputHeight = Math.max(height, size);
+        // Same fit as QRCodeWriter: whole pixels per module, centred
+        int scale = Math.min(outputWidth / size, outputHeight / size);
+        int left = (outputWidth - size * scale) / 2;
+        int top = (outputHeight - size * scale) / 2;
+        int rowBytes = (outputWidth + 7) / 8;
+
+        byte[] raw = new byte[(rowBytes + 1) * outputHeight];
+        byte[] previous = new byte[rowBytes];
+        byte[] row = new byte[rowBytes];
+        int offset = 0;
+        for (int y = 0; y < outputHeight; y++) {
+            int moduleY = y - top;
+            Arrays.fill(row, (byte) 0);
+            if (moduleY >= 0 && moduleY < size * scale) {
+                int my = moduleY / scale;
+                for (int mx = 0; mx < size; mx++) {
+                    if (modules.get(mx, my)) {
+                        int start = left + mx * scale;
+                        for (int x = start; x < start + scale; x++) {
+                            row[x >> 3] |= (byte) (0x80 >>> (x & 7));
+                        }
+                    }
+                }
+            }
+            if (y > 0 && Arrays.equals(row, previous)) {
+                // Up filter of an identical row is all zeros, left as allocated
+                raw[offset] = FILTER_UP;
+            } else {
+                raw[offset] = FILTER_NONE;
+                System.arraycopy(row, 0, raw, offset + 1, rowBytes);
+                byte[] swap = previous;
+                previous = row;
+                row = swap;
+            }
+            offset += rowBytes + 1;
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(1024);
+        png.writeBytes(PNG_SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, outputWidth);
+        writeInt(header, 4, outputHeight);
+        header[8] = 1;   // bit depth
+        header[9] = 3;   // indexed colour
+        // compression, filter and interlace methods all 0
+        writeChunk(png, "IHDR", header, header.length);
+        writeChunk(png, "PLTE", PALETTE, PALETTE.length);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] compressed = new byte[raw.length / 4 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            writeChunk(png, "IDAT", compressed, length);
+        } finally {
+            deflater.end();
+        }
+        writeChunk(png, "IEND", new byte[0], 0);
+        return png.toByteArray();
+    }
+
+    public byte[] toSvg(BitMatrix modules, int width, int height) {
+        int size = modules.getWidth();
+        StringBuilder svg = new StringBuilder(8192)
+            .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+            .append("\" height=\"").append(height)
+            .append("\" viewBox=\"0 0 ").append(size).append(' ').append(size)
+            .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>")
+            .append("<path stroke=\"#000\" d=\"");
+        // Each run of dark modules is a 1-unit stroke along the middle of its row,
+        // runs after the first in a row move relative to the end of the previous one
+        for (int y = 0; y < size; y++) {
+            int end = -1;
+            int x = 0;
+            while (x < size) {
+                if (!modules.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < size && modules.get(x, y)) {
+                    x++;
+                }
+                if (end < 0) {
+                    svg.append('M').append(start).append(' ').append(y).append(".5");
+                } else {
+                    svg.append('m').append(start - end).append(" 0");
+                }
+                svg.append('h').append(x - start);
+                end = x;
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void writeChunk(ByteArrayOutputStream png, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] word = new byte[4];
+        writeInt(word, 0, length);
+        png.writeBytes(word);
+        png.writeBytes(typeBytes);
+        png.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(word, 0, (int) crc.getValue());
+        png.writeBytes(word);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -1,17 +1,15 @@
 package com.university.attendance.service;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
+import com.university.attendance.config.PrimaryReads;
 import com.university.attendance.entity.AttendanceSession;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
-import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Base64;
@@ -24,6 +22,16 @@ import java.util.UUID;
 public class QRCodeService {
     
     private final AttendanceSessionService sessionService;
+    private final ScanMetrics scanMetrics;
+    private final QRCodeRenderer qrCodeRenderer;
+    private final PrimaryReads primaryReads;
+    
+    // Offline scans: tolerated phone clock error, and how long after capture an upload is accepted
+    @Value("${scan.offline.clock-skew:2m}")
+    private Duration offlineClockSkew;
+    
+    @Value("${scan.offline.max-age:24h}")
+    private Duration offlineMaxAge;
     
     // Encryption key - In production, use environment variable
     private static final String ENCRYPTION_KEY = "MySecretKey12345"; // Must be 16 chars for AES-128
@@ -79,20 +87,17 @@ public class QRCodeService {
      * @param data The encrypted QR code data
      * @param width QR code width in pixels
      * @param height QR code height in pixels
-     * @return QR code image as byte[]
+     * @return QR code image as byte[] (PNG)
      */
     public byte[] generateQRCodeImage(String data, int width, int height) {
-        try {
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(data, BarcodeFormat.QR_CODE, width, height);
-            
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", outputStream);
-            
-            return outputStream.toByteArray();
-        } catch (WriterException | java.io.IOException e) {
-            throw new RuntimeException("Failed to generate QR code", e);
-        }
+        return generateQRCodeImage(data, width, height, QRCodeRenderer.Format.PNG);
+    }
+    
+    /**
+     * Generate QR code image in the given format (see QRCodeRenderer)
+     */
+    public byte[] generateQRCodeImage(String data, int width, int height, QRCodeRenderer.Format format) {
+        return qrCodeRenderer.render(data, format, width, height);
     }
     
     /**
@@ -100,32 +105,81 @@ public class QRCodeService {
      * Returns sessionId if valid, throws exception if invalid/expired
      */
     public Map<String, String> validateQRCode(String encryptedData) {
-        // Decrypt the data
-        String decryptedJson = decrypt(encryptedData);
-        
-        // Parse JSON
-        Map<String, String> payload = parseJsonToMap(decryptedJson);
+        // Decrypt and parse the payload
+        Map<String, String> payload = scanMetrics.time(ScanMetrics.STAGE_TOKEN, () -> decodePayload(encryptedData));
         
         // Validate expiry
         long expiresAt = Long.parseLong(payload.get("expiresAt"));
         long currentTime = System.currentTimeMillis();
         
         if (currentTime > expiresAt) {
-            throw new RuntimeException("QR code has expired");
+            throw scanMetrics.rejected("token_expired", "QR code has expired");
         }
         
-        // Validate session still exists and is active
+        // Validate session still exists and is active, on the primary: a session just
+        // started or ended must not be judged by a lagging replica
         UUID sessionId = UUID.fromString(payload.get("sessionId"));
-        AttendanceSession session = sessionService.getSessionById(sessionId)
-            .orElseThrow(() -> new RuntimeException("Invalid session"));
+        AttendanceSession session = scanMetrics.time(ScanMetrics.STAGE_SESSION,
+                () -> primaryReads.read(() -> sessionService.getSessionById(sessionId)))
+            .orElseThrow(() -> scanMetrics.rejected("session_not_found", "Invalid session"));
         
         if (session.getStatus() != com.university.attendance.entity.SessionStatus.ACTIVE) {
-            throw new RuntimeException("Session is not active");
+            throw scanMetrics.rejected("session_inactive", "Session is not active");
         }
         
         return payload;
     }
     
+    /**
+     * Validate a QR token against the time it was scanned, for offline scans uploaded later.
+     * The capture time must fall inside the token's validity (issued .. expires, give or
+     * take the allowed clock skew), must not be in the future and must be recent enough
+     * to upload. Session status is checked by the caller.
+     */
+    public Map<String, String> validateQRCodeAt(String encryptedData, Instant capturedAt) {
+        Map<String, String> payload = scanMetrics.time(ScanMetrics.STAGE_TOKEN, () -> decodePayload(encryptedData));
+        
+        long issuedAt = Long.parseLong(payload.get("timestamp"));
+        long expiresAt = Long.parseLong(payload.get("expiresAt"));
+        long captured = capturedAt.toEpochMilli();
+        long skew = offlineClockSkew.toMillis();
+        long now = System.currentTimeMillis();
+        
+        if (captured > now + skew) {
+            throw scanMetrics.rejected("capture_in_future", "Capture time is in the future");
+        }
+        if (captured < now - offlineMaxAge.toMillis()) {
+            throw scanMetrics.rejected("capture_too_old", "Offline scan is too old to upload");
+        }
+        if (captured < issuedAt - skew) {
+            throw scanMetrics.rejected("capture_before_issue", "Scanned before this QR code was issued");
+        }
+        if (captured > expiresAt + skew) {
+            throw scanMetrics.rejected("token_expired", "QR code had expired when it was scanned");
+        }
+        
+        return payload;
+    }
+    
+    /**
+     * Decrypt and parse a QR token, counting malformed tokens as rejections
+     */
+    private Map<String, String> decodePayload(String encryptedData) {
+        String decryptedJson;
+        try {
+            decryptedJson = decrypt(encryptedData);
+        } catch (RuntimeException e) {
+            scanMetrics.rejected("token_invalid", e.getMessage());
+            throw e;
+        }
+        
+        try {
+            return parseJsonToMap(decryptedJson);
+        } catch (RuntimeException e) {
+            throw scanMetrics.rejected("token_invalid", "Invalid QR code payload");
+        }
+    }
+    
     /**
      * Encrypt data using AES
      */
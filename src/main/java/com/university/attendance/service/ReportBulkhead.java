@@ -0,0 +1,120 @@
+package com.university.attendance.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead for heavy export/report work: bounded report concurrency.
+ *
+ * Exports run on their own small, bounded pool instead of Tomcat request threads.
+ * Every report thread holds at most one DB connection at a time, so reports can
+ * never hold more than threads + streams Hikari connections. The remaining
+ * bulkhead.scan.reserved-connections are only checked at startup to exist in the
+ * pool; they are not set aside, /scan shares them with every other light request.
+ * When all report threads are busy and the queue is full, new work is rejected
+ * (mapped to 503 by GlobalExceptionHandler) rather than piling up.
+ *
+ * Long streaming exports run on the request thread instead (no async timeout) but
+ * take one of bulkhead.report.streams permits, each also worth one connection.
+ *
+ * QR image rendering is not behind the bulkhead: it takes no connection, and since it
+ * is rendered straight from the modules (QRCodeRenderer) it is cheap enough to stay on
+ * the request thread, where a report burst cannot reject it.
+ */
+@Component
+public class ReportBulkhead {
+    
+    private final ThreadPoolExecutor executor;
+    private final Semaphore streams;
+    
+    public ReportBulkhead(
+            @Value("${bulkhead.report.threads:2}") int threads,
+            @Value("${bulkhead.report.queue-capacity:8}") int queueCapacity,
+            @Value("${bulkhead.report.streams:1}") int streams,
+            @Value("${bulkhead.scan.reserved-connections:6}") int reservedConnections,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        
+        // Business Rule: reports alone may never exhaust the pool
+        if (threads + streams + reservedConnections > poolSize) {
+            throw new IllegalStateException("bulkhead.report.threads (" + threads
+                + ") + bulkhead.report.streams (" + streams
+                + ") + bulkhead.scan.reserved-connections (" + reservedConnections
+                + ") exceeds spring.datasource.hikari.maximum-pool-size (" + poolSize + ")");
+        }
+        
+        this.streams = new Semaphore(streams);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "report-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+    
+    /**
+     * Run heavy work inside the bulkhead
+     * Throws RejectedExecutionException immediately if the bulkhead is saturated
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            throw new RejectedExecutionException("Report capacity exhausted, please retry shortly", e);
+        }
+    }
+    
+    /**
+     * Work that streams its output and may be cut short by the client
+     */
+    @FunctionalInterface
+    public interface StreamingWork {
+        void run() throws IOException;
+    }
+    
+    /**
+     * Run a long streaming export on the calling thread, holding a stream permit
+     * Throws RejectedExecutionException immediately if all permits are taken
+     */
+    public void stream(StreamingWork work) throws IOException {
+        if (!streams.tryAcquire()) {
+            throw new RejectedExecutionException("Export capacity exhausted, please retry shortly");
+        }
+        try {
+            work.run();
+        } finally {
+            streams.release();
+        }
+    }
+    
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+    
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
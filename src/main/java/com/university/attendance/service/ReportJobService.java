@@ -0,0 +1,316 @@
+package com.university.attendance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.university.attendance.entity.AttendanceRecord;
+import com.university.attendance.entity.AttendanceSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous report jobs.
+ *
+ * A request submits a job and gets its id back straight away; the job runs on the
+ * ReportBulkhead pool (so its connection use stays bounded) and writes its
+ * output to report.jobs.dir. Clients poll the job and download the file once it is
+ * READY. Finished jobs, and their files, are dropped report.jobs.ttl after they finish.
+ *
+ * Each client (remote address) may have at most report.jobs.max-per-client jobs queued
+ * or running; more are rejected like a saturated bulkhead (503 with Retry-After).
+ * requestedBy is only recorded on the job: it is a request parameter, not a login.
+ *
+ * Jobs are kept in memory: a restart forgets them and clears the directory, clients
+ * then get "Report job not found" and resubmit.
+ * Metrics: report.jobs.duration{type,outcome} (run time), report.jobs.wait{type}
+ * (time queued), report.jobs.active.
+ */
+@Slf4j
+@Service
+public class ReportJobService {
+
+    public enum JobType { SESSION_XLSX, ATTENDANCE_CSV }
+
+    public enum JobStatus { QUEUED, RUNNING, READY, FAILED }
+
+    private final ReportBulkhead reportBulkhead;
+    private final AttendanceRecordService attendanceService;
+    private final ExcelExportService excelExportService;
+    private final SessionExportCache exportCache;
+    private final MeterRegistry registry;
+    private final Path directory;
+    private final int maxPerClient;
+
+    private final Cache<UUID, Job> jobs;
+    private final Map<String, Integer> activeByClient = new ConcurrentHashMap<>();
+
+    public ReportJobService(
+            ReportBulkhead reportBulkhead,
+            AttendanceRecordService attendanceService,
+            ExcelExportService excelExportService,
+            SessionExportCache exportCache,
+            MeterRegistry registry,
+            @Value("${report.jobs.dir:./data/report-jobs}") Path directory,
+            @Value("${report.jobs.ttl:1h}") Duration ttl,
+            @Value("${report.jobs.max-per-client:2}") int maxPerClient) throws IOException {
+        this.reportBulkhead = reportBulkhead;
+        this.attendanceService = attendanceService;
+        this.excelExportService = excelExportService;
+        this.exportCache = exportCache;
+        this.registry = registry;
+        this.directory = directory;
+        this.maxPerClient = maxPerClient;
+        this.jobs = Caffeine.newBuilder()
+            .expireAfter(new FinishedJobExpiry(ttl))
+            .scheduler(Scheduler.systemScheduler())
+            .removalListener((UUID id, Job job, RemovalCause cause) -> {
+                if (job != null && cause != RemovalCause.REPLACED) {
+                    job.deleteOutput();
+                }
+            })
+            .build();
+        registry.gauge("report.jobs.active", activeByClient, m -> m.values().stream().mapToInt(Integer::intValue).sum());
+
+        // Outputs of a previous run have no job any more
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * A report job. Mutable state is written by the worker and read by pollers.
+     */
+    public static final class Job {
+
+        private final UUID id;
+        private final JobType type;
+        private final UUID requestedBy;
+        private final String client;
+        private final String fileName;
+        private final Path output;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final long createdNanos = System.nanoTime();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile LocalDateTime expiresAt;
+        private volatile String error;
+        private volatile long size;
+
+        private Job(UUID id, JobType type, UUID requestedBy, String client, String fileName, Path output) {
+            this.id = id;
+            this.type = type;
+            this.requestedBy = requestedBy;
+            this.client = client;
+            this.fileName = fileName;
+            this.output = output;
+        }
+
+        public UUID getId() { return id; }
+        public JobType getType() { return type; }
+        public UUID getRequestedBy() { return requestedBy; }
+        public String getFileName() { return fileName; }
+        public Path getOutput() { return output; }
+        public JobStatus getStatus() { return status; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public LocalDateTime getExpiresAt() { return expiresAt; }
+        public String getError() { return error; }
+        public long getSize() { return size; }
+
+        private void deleteOutput() {
+            try {
+                Files.deleteIfExists(output);
+            } catch (IOException e) {
+                log.warn("Failed to delete report {}: {}", output, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Work writing a job's output file
+     */
+    @FunctionalInterface
+    private interface OutputWriter {
+        void write(Path file) throws IOException;
+    }
+
+    /**
+     * Queue the Excel export of a session
+     */
+    public Job submitSessionExport(AttendanceSession session, UUID requestedBy, String client) {
+        String fileName = "Attendance_" + session.getModule().getModuleCode() + "_" + session.getSessionDate() + ".xlsx";
+        return submit(JobType.SESSION_XLSX, requestedBy, client, fileName, file -> {
+            Optional<SessionExportCache.Slot> slot = exportCache.lookup(session);
+            if (slot.isPresent() && slot.get().cached()) {
+                Files.copy(slot.get().file(), file, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            List<AttendanceRecord> records = attendanceService.getAttendanceBySession(session.getId());
+            byte[] workbook = excelExportService.exportSessionAttendance(session, records);
+            slot.ifPresent(s -> exportCache.store(s, workbook));
+            Files.write(file, workbook);
+        });
+    }
+
+    /**
+     * Queue a raw attendance CSV export (see AttendanceRecordService.writeAttendanceCsv)
+     */
+    public Job submitAttendanceCsv(String moduleCodePrefix, LocalDate from, LocalDate to, UUID requestedBy, String client) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new RuntimeException("A valid from/to date range is required");
+        }
+        String fileName = "attendance_" + from + "_" + to + ".csv";
+        return submit(JobType.ATTENDANCE_CSV, requestedBy, client, fileName, file -> {
+            try (Writer csv = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 64 * 1024)) {
+                attendanceService.writeAttendanceCsv(moduleCodePrefix, from, to, csv);
+            }
+        });
+    }
+
+    public Optional<Job> getJob(UUID jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId));
+    }
+
+    /**
+     * Forget a job and delete its output. A job still running finishes, but its output is discarded.
+     */
+    public void deleteJob(UUID jobId) {
+        if (jobs.asMap().remove(jobId) == null) {
+            throw new RuntimeException("Report job not found");
+        }
+    }
+
+    private Job submit(JobType type, UUID requestedBy, String client, String fileName, OutputWriter writer) {
+        UUID id = UUID.randomUUID();
+        String extension = fileName.substring(fileName.lastIndexOf('.'));
+        Job job = new Job(id, type, requestedBy, client, fileName, directory.resolve(id + extension));
+
+        // Business Rule: one client cannot fill the report pool on its own
+        boolean[] admitted = new boolean[1];
+        activeByClient.compute(client, (key, active) -> {
+            int count = active == null ? 0 : active;
+            admitted[0] = count < maxPerClient;
+            return admitted[0] ? count + 1 : active;
+        });
+        if (!admitted[0]) {
+            throw new RejectedExecutionException("You already have " + maxPerClient + " reports in progress, please retry when one is ready");
+        }
+
+        jobs.put(id, job);
+        try {
+            reportBulkhead.submit(() -> {
+                run(job, writer);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            release(client);
+            jobs.invalidate(id);
+            throw e;
+        }
+        return job;
+    }
+
+    private void run(Job job, OutputWriter writer) {
+        registry.timer("report.jobs.wait", "type", job.type.name())
+            .record(Duration.ofNanos(System.nanoTime() - job.createdNanos));
+        job.startedAt = LocalDateTime.now();
+        job.status = JobStatus.RUNNING;
+        Timer.Sample sample = Timer.start(registry);
+        JobStatus result = JobStatus.FAILED;
+        Path partial = directory.resolve(job.id + ".part");
+        try {
+            writer.write(partial);
+            Files.move(partial, job.output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            job.size = Files.size(job.output);
+            result = JobStatus.READY;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Report job {} ({}) failed: {}", job.id, job.type, e.getMessage());
+            job.error = e instanceof UncheckedIOException || e instanceof IOException
+                ? "Failed to write report" : e.getMessage();
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Cleared on the next start
+            }
+        } finally {
+            sample.stop(registry.timer("report.jobs.duration", "type", job.type.name(),
+                "outcome", result == JobStatus.READY ? "success" : "failure"));
+            job.finishedAt = LocalDateTime.now();
+            job.status = result;
+            release(job.client);
+            // Re-insert so the cache recomputes the expiry now the job is finished,
+            // unless it was deleted meanwhile, in which case its output goes too
+            if (jobs.asMap().replace(job.id, job) == null) {
+                job.deleteOutput();
+            }
+        }
+    }
+
+    private void release(String client) {
+        activeByClient.computeIfPresent(client, (key, active) -> active > 1 ? active - 1 : null);
+    }
+
+    /**
+     * Unfinished jobs never expire; finished ones expire ttl after they finish
+     */
+    private static final class FinishedJobExpiry implements Expiry<UUID, Job> {
+
+        private final Duration ttl;
+
+        FinishedJobExpiry(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        private long expiry(Job job) {
+            if (job.finishedAt == null) {
+                return Long.MAX_VALUE;
+            }
+            job.expiresAt = job.finishedAt.plus(ttl);
+            return ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(UUID id, Job job, long currentTime) {
+            return expiry(job);
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID id, Job job, long currentTime, long currentDuration) {
+            return expiry(job);
+        }
+
+        @Override
+        public long expireAfterRead(UUID id, Job job, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
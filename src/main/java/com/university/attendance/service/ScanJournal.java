@@ -0,0 +1,396 @@
+package com.university.attendance.service;
+
+import com.university.attendance.entity.AttendanceStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only scan journal in memory-mapped, preallocated segment files.
+ *
+ * Every entry is one fixed-size record, numbered by a global sequence; segment
+ * files are named after the sequence of their first record. Appends only copy into
+ * the mapping, durability comes from sync(), which forces everything appended since
+ * the previous sync in one go (group commit: all scans that arrived during one
+ * fsync share the next one).
+ *
+ * Record layout (RECORD_SIZE bytes, big-endian):
+ *   0  int   marker            8  uuid  event id         24 uuid  session id
+ *   4  int   CRC32C of 8..end  40 uuid  student id       56 long  scanned at (epoch s)
+ *   64 int   nanos             68 byte  status ordinal   69 double latitude (NaN = none)
+ *   77 double longitude        85 short device info length  87 byte flags (1 = device shared)
+ *   88 device info (UTF-8)
+ * A zero or corrupt marker/CRC ends a segment on open, which is how a record torn by
+ * a crash is dropped.
+ */
+final class ScanJournal implements Closeable {
+
+    static final int RECORD_SIZE = 512;
+    private static final int MARKER = 0x5343414E; // "SCAN"
+    private static final int HEADER_SIZE = 88;
+    private static final byte FLAG_DEVICE_SHARED = 1;
+    private static final int MAX_DEVICE_BYTES = RECORD_SIZE - HEADER_SIZE;
+    private static final String SUFFIX = ".scanlog";
+
+    /**
+     * One journaled scan
+     */
+    record Entry(long sequence, UUID eventId, UUID sessionId, UUID studentId, LocalDateTime scannedAt,
+                 AttendanceStatus status, String deviceInfo, Double latitude, Double longitude,
+                 boolean deviceShared) {
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private long next;      // sequence of the next append
+    private long durable;   // every sequence below this is forced to disk
+
+    private ScanJournal(Path directory, int recordsPerSegment) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * Open (or create) the journal in a directory and find the end of the last segment
+     */
+    static ScanJournal open(Path directory, long segmentBytes) throws IOException {
+        int recordsPerSegment = (int) Math.max(1, Math.min(segmentBytes / RECORD_SIZE, Integer.MAX_VALUE / RECORD_SIZE));
+        ScanJournal journal = new ScanJournal(directory, recordsPerSegment);
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long first = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            Segment segment = Segment.map(file, first, recordsPerSegment);
+            journal.segments.put(first, segment);
+            journal.next = first + segment.countValid();
+        }
+        if (journal.segments.isEmpty()) {
+            journal.segments.put(0L, journal.createSegment(0L));
+        }
+        journal.durable = journal.next;
+        return journal;
+    }
+
+    /**
+     * Sequence of the oldest record still on disk
+     */
+    long firstSequence() {
+        lock.lock();
+        try {
+            return segments.firstKey();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long durableSequence() {
+        lock.lock();
+        try {
+            return durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copy an entry into the journal, returns its sequence. Not durable until sync() passes it.
+     */
+    long append(UUID eventId, UUID sessionId, UUID studentId, LocalDateTime scannedAt,
+                AttendanceStatus status, String deviceInfo, Double latitude, Double longitude,
+                boolean deviceShared) throws IOException {
+        byte[] device = deviceBytes(deviceInfo);
+        lock.lock();
+        try {
+            long sequence = next;
+            Map.Entry<Long, Segment> last = segments.lastEntry();
+            Segment segment = last.getValue();
+            if (sequence - last.getKey() >= recordsPerSegment) {
+                segment = createSegment(sequence);
+                segments.put(sequence, segment);
+            }
+            int offset = (int) (sequence - segment.first) * RECORD_SIZE;
+            ByteBuffer buffer = segment.buffer;
+            putUuid(buffer, offset + 8, eventId);
+            putUuid(buffer, offset + 24, sessionId);
+            putUuid(buffer, offset + 40, studentId);
+            buffer.putLong(offset + 56, scannedAt.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(offset + 64, scannedAt.getNano());
+            buffer.put(offset + 68, (byte) status.ordinal());
+            buffer.putDouble(offset + 69, latitude != null ? latitude : Double.NaN);
+            buffer.putDouble(offset + 77, longitude != null ? longitude : Double.NaN);
+            buffer.putShort(offset + 85, (short) device.length);
+            buffer.put(offset + 87, deviceShared ? FLAG_DEVICE_SHARED : 0);
+            buffer.put(offset + HEADER_SIZE, device);
+            buffer.putInt(offset + 4, crc(buffer, offset));
+            // Marker last: a record is only valid once everything else is in place
+            buffer.putInt(offset, MARKER);
+            next = sequence + 1;
+            appended.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the record with this sequence has been forced to disk
+     */
+    boolean awaitDurable(long sequence, long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (durable <= sequence) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = synced.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until something beyond the given sequence is durable (or the timeout passes)
+     */
+    void awaitDurableBeyond(long sequence, long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (durable <= sequence) {
+                synced.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until there are appends that are not yet durable, then force them all.
+     * Returns the number of records made durable by this call (0 on timeout).
+     */
+    int sync(long timeoutMillis) throws InterruptedException {
+        long from;
+        long to;
+        List<Segment> dirty = new ArrayList<>();
+        lock.lock();
+        try {
+            if (next == durable) {
+                appended.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            from = durable;
+            to = next;
+            if (from == to) {
+                return 0;
+            }
+            dirty.addAll(segments.subMap(segments.floorKey(from), true, segments.floorKey(to - 1), true).values());
+        } finally {
+            lock.unlock();
+        }
+
+        // Appends carry on into the mapping while the range below is forced
+        for (Segment segment : dirty) {
+            long start = Math.max(from, segment.first);
+            long end = Math.min(to, segment.first + recordsPerSegment);
+            segment.buffer.force((int) (start - segment.first) * RECORD_SIZE, (int) (end - start) * RECORD_SIZE);
+        }
+
+        lock.lock();
+        try {
+            durable = to;
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return (int) (to - from);
+    }
+
+    /**
+     * Up to max durable entries starting at a sequence
+     */
+    List<Entry> read(long fromSequence, int max) {
+        List<Entry> entries = new ArrayList<>();
+        lock.lock();
+        try {
+            long end = Math.min(durable, fromSequence + max);
+            for (long sequence = Math.max(fromSequence, segments.firstKey()); sequence < end; sequence++) {
+                Segment segment = segments.floorEntry(sequence).getValue();
+                entries.add(segment.read(sequence));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return entries;
+    }
+
+    /**
+     * Delete segments whose records are all below the given sequence (never the one being written)
+     */
+    void release(long belowSequence) throws IOException {
+        List<Segment> released = new ArrayList<>();
+        lock.lock();
+        try {
+            while (segments.size() > 1) {
+                Segment oldest = segments.firstEntry().getValue();
+                if (oldest.first + recordsPerSegment > belowSequence) {
+                    break;
+                }
+                segments.pollFirstEntry();
+                released.add(oldest);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : released) {
+            segment.channel.close();
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Segment createSegment(long first) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", first, SUFFIX));
+        Segment segment = Segment.map(file, first, recordsPerSegment);
+        // Make the new file's directory entry durable too
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException notSupported) {
+            // Not every platform lets a directory be opened for fsync
+        }
+        return segment;
+    }
+
+    private static byte[] deviceBytes(String deviceInfo) {
+        if (deviceInfo == null) {
+            return new byte[0];
+        }
+        byte[] bytes = deviceInfo.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_DEVICE_BYTES) {
+            return bytes;
+        }
+        // Truncate on a character boundary
+        int length = MAX_DEVICE_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] truncated = new byte[length];
+        System.arraycopy(bytes, 0, truncated, 0, length);
+        return truncated;
+    }
+
+    private static int crc(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + 8, RECORD_SIZE - 8));
+        return (int) crc.getValue();
+    }
+
+    private static void putUuid(ByteBuffer buffer, int offset, UUID uuid) {
+        buffer.putLong(offset, uuid.getMostSignificantBits());
+        buffer.putLong(offset + 8, uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer, int offset) {
+        return new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+    }
+
+    /**
+     * One preallocated, mapped segment file
+     */
+    private static final class Segment {
+
+        final Path file;
+        final long first;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        private Segment(Path file, long first, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.first = first;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path file, long first, int records) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = (long) records * RECORD_SIZE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+            return new Segment(file, first, channel, buffer);
+        }
+
+        /**
+         * Number of valid records from the start of the segment
+         */
+        int countValid() {
+            int count = 0;
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+                if (buffer.getInt(offset) != MARKER || buffer.getInt(offset + 4) != crc(buffer, offset)) {
+                    break;
+                }
+                count++;
+            }
+            return count;
+        }
+
+        Entry read(long sequence) {
+            int offset = (int) (sequence - first) * RECORD_SIZE;
+            LocalDateTime scannedAt = LocalDateTime.ofEpochSecond(
+                buffer.getLong(offset + 56), buffer.getInt(offset + 64), ZoneOffset.UTC);
+            double latitude = buffer.getDouble(offset + 69);
+            double longitude = buffer.getDouble(offset + 77);
+            byte[] device = new byte[buffer.getShort(offset + 85)];
+            buffer.get(offset + HEADER_SIZE, device);
+            return new Entry(
+                sequence,
+                getUuid(buffer, offset + 8),
+                getUuid(buffer, offset + 24),
+                getUuid(buffer, offset + 40),
+                scannedAt,
+                AttendanceStatus.values()[buffer.get(offset + 68)],
+                device.length > 0 ? new String(device, StandardCharsets.UTF_8) : null,
+                Double.isNaN(latitude) ? null : latitude,
+                Double.isNaN(longitude) ? null : longitude,
+                (buffer.get(offset + 87) & FLAG_DEVICE_SHARED) != 0);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.university.attendance.service;
+
+import com.university.attendance.config.ReadWriteRoutingDataSource;
+import com.university.attendance.entity.AttendanceRecord;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.AttendanceStatus;
+import com.university.attendance.entity.User;
+import com.university.attendance.repository.AttendanceRecordRepository;
+import com.university.attendance.repository.AttendanceSessionRepository;
+import com.university.attendance.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Write-ahead journal for live scans (scan.journal.enabled).
+ *
+ * An accepted scan is appended to the local ScanJournal and acknowledged as soon as
+ * the group-commit fsync covering it completes; a background thread then inserts
+ * journaled scans into Postgres in batches. This takes the insert off the scan, not
+ * the database: validating a scan still reads its session, the student and the
+ * duplicate check. If inserts are slow or failing (lock contention, a write stall)
+ * while those reads succeed, scans keep being accepted into the journal and the
+ * applier retries with backoff, so the stall neither loses nor blocks scans.
+ *
+ * Journaled rows keep the time the scan was accepted as markedAt (and capturedAt),
+ * the same value the client was answered with, however late they are applied.
+ *
+ * Applying is idempotent: the journal entry id is stored as the record's
+ * clientEventId, so entries already inserted, or students already marked by another
+ * path, are skipped. On startup every entry still on disk is replayed this way.
+ * Segments are deleted once all their entries are applied.
+ *
+ * Until an entry is applied it is not visible to reads (roster, exports); the
+ * duplicate-scan check covers it through the in-memory pending map. A scan whose
+ * fsync timed out was not acknowledged, but its entry is still applied once the sync
+ * catches up: the client's retry is answered with that entry instead of being
+ * rejected as a duplicate.
+ * Metrics: attendance.scan.journal.sync (fsync time), .group (scans per fsync),
+ * .lag (durable but not applied), .apply.failures.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "scan.journal.enabled", havingValue = "true")
+public class ScanJournalService {
+
+    private final AttendanceRecordRepository recordRepository;
+    private final AttendanceSessionRepository sessionRepository;
+    private final UserRepository userRepository;
+    private final AtRiskEngine atRiskEngine;
+    private final TransactionTemplate transaction;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int batchSize;
+    private final Duration syncTimeout;
+    private final Duration maxRetryDelay;
+
+    private final Timer syncTimer;
+    private final DistributionSummary groupSize;
+    private final Counter applyFailures;
+
+    // (sessionId, studentId) of journaled scans not yet in the database
+    private final Map<List<UUID>, PendingScan> pending = new ConcurrentHashMap<>();
+
+    private ScanJournal journal;
+    private volatile long applied;
+    private volatile boolean running;
+    private Thread syncThread;
+    private Thread applyThread;
+
+    public ScanJournalService(
+            AttendanceRecordRepository recordRepository,
+            AttendanceSessionRepository sessionRepository,
+            UserRepository userRepository,
+            AtRiskEngine atRiskEngine,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry registry,
+            @Value("${scan.journal.dir:./data/scan-journal}") Path directory,
+            @Value("${scan.journal.segment-size:64MB}") DataSize segmentSize,
+            @Value("${scan.journal.batch-size:200}") int batchSize,
+            @Value("${scan.journal.sync-timeout:5s}") Duration syncTimeout,
+            @Value("${scan.journal.max-retry-delay:30s}") Duration maxRetryDelay) {
+        this.recordRepository = recordRepository;
+        this.sessionRepository = sessionRepository;
+        this.userRepository = userRepository;
+        this.atRiskEngine = atRiskEngine;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.directory = directory;
+        this.segmentBytes = segmentSize.toBytes();
+        this.batchSize = batchSize;
+        this.syncTimeout = syncTimeout;
+        this.maxRetryDelay = maxRetryDelay;
+        this.syncTimer = Timer.builder("attendance.scan.journal.sync")
+            .description("Duration of one group-commit fsync of the scan journal")
+            .register(registry);
+        this.groupSize = DistributionSummary.builder("attendance.scan.journal.group")
+            .description("Scans made durable by one fsync")
+            .register(registry);
+        this.applyFailures = Counter.builder("attendance.scan.journal.apply.failures")
+            .description("Failed attempts to apply journaled scans to the database")
+            .register(registry);
+        registry.gauge("attendance.scan.journal.lag", this, s -> s.journal == null ? 0 : s.journal.durableSequence() - s.applied);
+    }
+
+    private enum Acknowledgement { AWAITING, TIMED_OUT, DONE }
+
+    /**
+     * A journaled scan until it is applied, with the record its client was (or will be) answered with
+     */
+    private static final class PendingScan {
+
+        private final AtomicReference<Acknowledgement> acknowledgement;
+        private AttendanceRecord record;
+        private long sequence;
+
+        PendingScan(Acknowledgement acknowledgement) {
+            this.acknowledgement = new AtomicReference<>(acknowledgement);
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        journal = ScanJournal.open(directory, segmentBytes);
+        applied = journal.firstSequence();
+        // Everything still on disk is replayed; keep duplicate checks covering it meanwhile
+        long durable = journal.durableSequence();
+        for (long from = applied; from < durable; from += batchSize) {
+            for (ScanJournal.Entry entry : journal.read(from, batchSize)) {
+                pending.put(List.of(entry.sessionId(), entry.studentId()), new PendingScan(Acknowledgement.DONE));
+            }
+        }
+        if (durable > applied) {
+            log.info("Scan journal {}: replaying {} entries", directory.toAbsolutePath(), durable - applied);
+        }
+        running = true;
+        syncThread = new Thread(this::syncLoop, "scan-journal-sync");
+        applyThread = new Thread(this::applyLoop, "scan-journal-apply");
+        syncThread.start();
+        applyThread.start();
+    }
+
+    /**
+     * Whether a scan for this student and session is journaled but not yet in the database.
+     * A scan whose acknowledgement timed out is not: its retry goes on to append.
+     */
+    public boolean isPending(UUID sessionId, UUID studentId) {
+        PendingScan scan = pending.get(List.of(sessionId, studentId));
+        return scan != null && scan.acknowledgement.get() != Acknowledgement.TIMED_OUT;
+    }
+
+    /**
+     * Journal a validated scan and wait for it to be durable.
+     * Returns the record as it will be inserted (no id yet, clientEventId = journal entry id);
+     * null if a scan for this student and session is already journaled. The retry of a
+     * scan whose sync timed out gets that scan's record once it is durable.
+     */
+    public AttendanceRecord append(AttendanceSession session, User student, AttendanceStatus status,
+                                   String deviceInfo, Double latitude, Double longitude, boolean deviceShared) {
+        List<UUID> key = List.of(session.getId(), student.getId());
+        PendingScan scan = new PendingScan(Acknowledgement.AWAITING);
+        PendingScan existing = pending.putIfAbsent(key, scan);
+        if (existing != null) {
+            return existing.acknowledgement.compareAndSet(Acknowledgement.TIMED_OUT, Acknowledgement.AWAITING)
+                ? acknowledge(existing) : null;
+        }
+        UUID eventId = UUID.randomUUID();
+        LocalDateTime scannedAt = LocalDateTime.now();
+        scan.record = record(session, student, status, deviceInfo, latitude, longitude, deviceShared,
+            eventId, scannedAt);
+        try {
+            scan.sequence = journal.append(eventId, session.getId(), student.getId(), scannedAt, status,
+                deviceInfo, latitude, longitude, deviceShared);
+        } catch (IOException e) {
+            pending.remove(key);
+            throw new UncheckedIOException("Scan journal write failed", e);
+        }
+        return acknowledge(scan);
+    }
+
+    /**
+     * Wait for a journaled scan to be durable and return its record
+     */
+    private AttendanceRecord acknowledge(PendingScan scan) {
+        try {
+            if (!journal.awaitDurable(scan.sequence, syncTimeout.toMillis())) {
+                // The entry stays in the journal and is applied once the sync catches up
+                scan.acknowledgement.set(Acknowledgement.TIMED_OUT);
+                throw new RuntimeException("Scan journal sync timed out, please retry");
+            }
+        } catch (InterruptedException e) {
+            scan.acknowledgement.set(Acknowledgement.TIMED_OUT);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the scan journal");
+        }
+        scan.acknowledgement.set(Acknowledgement.DONE);
+        return scan.record;
+    }
+
+    private static AttendanceRecord record(AttendanceSession session, User student, AttendanceStatus status,
+                                           String deviceInfo, Double latitude, Double longitude,
+                                           boolean deviceShared, UUID eventId, LocalDateTime scannedAt) {
+        AttendanceRecord record = new AttendanceRecord();
+        record.setSession(session);
+        record.setStudent(student);
+        record.setStatus(status);
+        record.setDeviceInfo(deviceInfo);
+        record.setLatitude(latitude);
+        record.setLongitude(longitude);
+        record.setDeviceSharingSuspected(deviceShared);
+        record.setClientEventId(eventId);
+        record.setMarkedAt(scannedAt);
+        record.setCapturedAt(scannedAt);
+        return record;
+    }
+
+    private void syncLoop() {
+        while (running) {
+            try {
+                long start = System.nanoTime();
+                int synced = journal.sync(100);
+                if (synced > 0) {
+                    syncTimer.record(Duration.ofNanos(System.nanoTime() - start));
+                    groupSize.record(synced);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Scan journal fsync failed", e);
+            }
+        }
+    }
+
+    private void applyLoop() {
+        long retryDelay = 100;
+        while (running) {
+            try {
+                List<ScanJournal.Entry> batch = journal.read(applied, batchSize);
+                if (batch.isEmpty()) {
+                    journal.awaitDurableBeyond(applied, 500);
+                    continue;
+                }
+                apply(batch);
+                applied = batch.get(batch.size() - 1).sequence() + 1;
+                for (ScanJournal.Entry entry : batch) {
+                    pending.remove(List.of(entry.sessionId(), entry.studentId()));
+                }
+                journal.release(applied);
+                retryDelay = 100;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                applyFailures.increment();
+                log.warn("Applying journaled scans failed, retrying in {} ms: {}", retryDelay, e.getMessage());
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                retryDelay = Math.min(retryDelay * 2, maxRetryDelay.toMillis());
+            }
+        }
+    }
+
+    /**
+     * Insert one batch of entries in one transaction, skipping those already applied
+     */
+    private void apply(List<ScanJournal.Entry> batch) {
+        ReadWriteRoutingDataSource.onPrimary(() -> transaction.execute(status -> {
+            Set<UUID> eventIds = batch.stream().map(ScanJournal.Entry::eventId).collect(Collectors.toSet());
+            Set<UUID> sessionIds = batch.stream().map(ScanJournal.Entry::sessionId).collect(Collectors.toSet());
+            Set<UUID> studentIds = batch.stream().map(ScanJournal.Entry::studentId).collect(Collectors.toSet());
+
+            Set<UUID> recorded = new HashSet<>();
+            for (Object[] row : recordRepository.findByClientEventIds(eventIds)) {
+                recorded.add((UUID) row[0]);
+            }
+            Set<List<UUID>> marked = new HashSet<>();
+            for (Object[] pair : recordRepository.findMarkedPairs(sessionIds, studentIds)) {
+                marked.add(List.of((UUID) pair[0], (UUID) pair[1]));
+            }
+            Map<UUID, AttendanceSession> sessions = sessionRepository.findAllById(sessionIds).stream()
+                .collect(Collectors.toMap(AttendanceSession::getId, Function.identity()));
+            Map<UUID, User> students = userRepository.findAllById(studentIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+            List<AttendanceRecord> records = new ArrayList<>();
+            for (ScanJournal.Entry entry : batch) {
+                if (recorded.contains(entry.eventId())
+                        || !marked.add(List.of(entry.sessionId(), entry.studentId()))) {
+                    continue;
+                }
+                AttendanceSession session = sessions.get(entry.sessionId());
+                User student = students.get(entry.studentId());
+                if (session == null || student == null) {
+                    log.warn("Dropping journaled scan {}: session or student no longer exists", entry.eventId());
+                    continue;
+                }
+                AttendanceRecord record = new AttendanceRecord();
+                record.setSession(session);
+                record.setStudent(student);
+                record.setStatus(entry.status());
+                record.setDeviceInfo(entry.deviceInfo());
+                record.setLatitude(entry.latitude());
+                record.setLongitude(entry.longitude());
+                record.setDeviceSharingSuspected(entry.deviceShared());
+                record.setClientEventId(entry.eventId());
+                record.setMarkedAt(entry.scannedAt());
+                record.setCapturedAt(entry.scannedAt());
+                records.add(record);
+            }
+            recordRepository.saveAll(records);
+            recordRepository.flush();
+            records.forEach(atRiskEngine::attendanceChanged);
+            return null;
+        }));
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        // Let the sync thread finish its current fsync, only the applier is interrupted
+        syncThread.join(syncTimeout.toMillis());
+        applyThread.interrupt();
+        applyThread.join(syncTimeout.toMillis());
+        journal.close();
+    }
+}
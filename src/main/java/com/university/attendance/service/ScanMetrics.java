@@ -0,0 +1,91 @@
+package com.university.attendance.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation for the /scan pipeline.
+ *
+ * attendance.scan.stage{stage=...}      - histogram timer per pipeline stage
+ * attendance.scan.rejected{reason=...}  - counter per rejection reason
+ * attendance.scan.flagged{reason=...}   - counter of accepted but suspect scans
+ *
+ * Exposed in Prometheus format at /actuator/prometheus.
+ */
+@Component
+public class ScanMetrics {
+    
+    public static final String STAGE_TOKEN = "token";            // decrypt + parse QR payload
+    public static final String STAGE_SESSION = "session";        // session lookup + status check
+    public static final String STAGE_STUDENT = "student";        // student lookup
+    public static final String STAGE_DUPLICATE = "duplicate";    // already-marked check
+    public static final String STAGE_GEOFENCE = "geofence";      // location check
+    public static final String STAGE_DEVICE = "device";          // device-sharing check
+    public static final String STAGE_INSERT = "insert";          // record insert
+    public static final String STAGE_JOURNAL = "journal";        // journal append + fsync (scan.journal.enabled)
+    
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+    private final Map<String, Counter> flags = new ConcurrentHashMap<>();
+    
+    public ScanMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        // Register stages up front so dashboards see them before the first scan
+        for (String stage : new String[] {
+                STAGE_TOKEN, STAGE_SESSION, STAGE_STUDENT, STAGE_DUPLICATE, STAGE_GEOFENCE, STAGE_DEVICE, STAGE_INSERT, STAGE_JOURNAL}) {
+            timer(stage);
+        }
+    }
+    
+    /**
+     * Time one stage of the scan pipeline
+     */
+    public <T> T time(String stage, Supplier<T> work) {
+        return timer(stage).record(work);
+    }
+    
+    /**
+     * Time one stage of the scan pipeline (no result)
+     */
+    public void time(String stage, Runnable work) {
+        timer(stage).record(work);
+    }
+    
+    /**
+     * Count a rejected scan and build the exception to throw
+     */
+    public RuntimeException rejected(String reason, String message) {
+        rejections.computeIfAbsent(reason, r -> Counter.builder("attendance.scan.rejected")
+                .description("Scans rejected, by reason")
+                .tag("reason", r)
+                .register(registry))
+            .increment();
+        return new RuntimeException(message);
+    }
+    
+    /**
+     * Count an accepted scan that was flagged as suspect
+     */
+    public void flagged(String reason) {
+        flags.computeIfAbsent(reason, r -> Counter.builder("attendance.scan.flagged")
+                .description("Scans accepted but flagged as suspect, by reason")
+                .tag("reason", r)
+                .register(registry))
+            .increment();
+    }
+    
+    private Timer timer(String stage) {
+        return timers.computeIfAbsent(stage, s -> Timer.builder("attendance.scan.stage")
+            .description("Latency of each /scan pipeline stage")
+            .tag("stage", s)
+            .publishPercentileHistogram()
+            .register(registry));
+    }
+}
@@ -0,0 +1,282 @@
+package com.university.attendance.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session affinity for scans across several instances (cluster.peers).
+ *
+ * Per-session scan state (device-sharing windows, compiled geofences, journal pending
+ * sets) lives in the memory of whichever instance handles the scan, so it is only
+ * complete if every scan of a session reaches the same instance. Each session is owned
+ * by one peer, picked on a consistent-hash ring of the live peers (cluster.virtual-nodes
+ * points per peer, keyed by session id). A scan reaching another instance is forwarded to
+ * the owner over HTTP (cluster.scan-routing=forward) or answered with a 307 to it
+ * (redirect); forwarded requests carry FORWARDED_HEADER and are always handled where they
+ * land, so instances that briefly disagree on membership cannot bounce a scan around.
+ *
+ * Peers are probed on /actuator/health every cluster.probe-interval, and a failed forward
+ * marks its target down at once. Any change rebuilds the ring, which only moves the
+ * sessions of the peer that left or joined. If the owner cannot be reached the scan is
+ * handled locally: the database still rejects duplicates, only the in-memory state splits.
+ *
+ * With no peers configured every session is local. The batch upload path is not routed,
+ * its events span many sessions and arrive after the fact.
+ * Metrics: attendance.scan.routed{result=local|forwarded|redirected|fallback},
+ * attendance.scan.forward (forward latency), cluster.peers.live.
+ */
+@Slf4j
+@Component
+public class SessionAffinityRouter {
+
+    public static final String FORWARDED_HEADER = "X-Scan-Forwarded-By";
+    public static final String OWNER_HEADER = "X-Session-Owner";
+
+    private static final String SCAN_PATH = "/api/v1/attendance/scan";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final String self;
+    private final List<String> peers;
+    private final int virtualNodes;
+    private final boolean redirect;
+    private final Duration probeInterval;
+    private final Duration forwardTimeout;
+    private final HttpClient http;
+    private final Timer forwardTimer;
+
+    private volatile Ring ring;
+    private ScheduledExecutorService prober;
+
+    public SessionAffinityRouter(
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            @Value("${cluster.self-url:}") String self,
+            @Value("${cluster.peers:}") List<String> peers,
+            @Value("${cluster.virtual-nodes:128}") int virtualNodes,
+            @Value("${cluster.scan-routing:forward}") String scanRouting,
+            @Value("${cluster.probe-interval:2s}") Duration probeInterval,
+            @Value("${cluster.forward-timeout:2s}") Duration forwardTimeout) {
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.self = normalize(self);
+        Set<String> members = new LinkedHashSet<>();
+        for (String peer : peers) {
+            if (!peer.isBlank()) {
+                members.add(normalize(peer));
+            }
+        }
+        if (!members.isEmpty() && !members.contains(this.self)) {
+            throw new IllegalStateException("cluster.self-url (" + self + ") must be one of cluster.peers " + members);
+        }
+        this.peers = List.copyOf(members);
+        this.virtualNodes = virtualNodes;
+        this.redirect = scanRouting.equalsIgnoreCase("redirect");
+        this.probeInterval = probeInterval;
+        this.forwardTimeout = forwardTimeout;
+        this.http = HttpClient.newBuilder().connectTimeout(forwardTimeout).build();
+        this.forwardTimer = Timer.builder("attendance.scan.forward")
+            .description("Latency of scans forwarded to the session owner")
+            .register(registry);
+        this.ring = new Ring(this.peers, virtualNodes);
+        registry.gauge("cluster.peers.live", this, router -> router.ring.peers.length);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (peers.size() < 2) {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(this::probe, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isClustered() {
+        return peers.size() > 1;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getLivePeers() {
+        return List.of(ring.peers);
+    }
+
+    /**
+     * Base URL of the peer owning a session (this instance when not clustered)
+     */
+    public String ownerOf(UUID sessionId) {
+        return ring.peers.length == 0 ? self : ring.ownerOf(sessionId);
+    }
+
+    /**
+     * Route a validated scan: empty when it is to be handled here, otherwise the
+     * owner's response (forward) or a redirect to it
+     */
+    public Optional<ResponseEntity<byte[]>> route(UUID sessionId, Object scanRequest, String forwardedBy) {
+        if (!isClustered() || forwardedBy != null) {
+            return Optional.empty();
+        }
+        String owner = ownerOf(sessionId);
+        if (owner.equals(self)) {
+            registry.counter("attendance.scan.routed", "result", "local").increment();
+            return Optional.empty();
+        }
+        if (redirect) {
+            registry.counter("attendance.scan.routed", "result", "redirected").increment();
+            return Optional.of(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                .location(URI.create(owner + SCAN_PATH))
+                .header(OWNER_HEADER, owner)
+                .build());
+        }
+        try {
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(URI.create(owner + SCAN_PATH))
+                    .timeout(forwardTimeout)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(FORWARDED_HEADER, self)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(scanRequest)))
+                    .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            forwardTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            registry.counter("attendance.scan.routed", "result", "forwarded").increment();
+            HttpHeaders headers = new HttpHeaders();
+            response.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(type -> headers.set(HttpHeaders.CONTENT_TYPE, type));
+            response.headers().firstValue(HttpHeaders.RETRY_AFTER).ifPresent(after -> headers.set(HttpHeaders.RETRY_AFTER, after));
+            headers.set(OWNER_HEADER, owner);
+            return Optional.of(ResponseEntity.status(response.statusCode()).headers(headers).body(response.body()));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to forward scan", e);
+        } catch (IOException e) {
+            log.warn("Session owner {} unreachable, handling scan locally: {}", owner, e.getMessage());
+            markDown(owner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        registry.counter("attendance.scan.routed", "result", "fallback").increment();
+        return Optional.empty();
+    }
+
+    private void probe() {
+        List<String> live = new ArrayList<>();
+        for (String peer : peers) {
+            if (peer.equals(self) || isHealthy(peer)) {
+                live.add(peer);
+            }
+        }
+        updateMembership(live);
+    }
+
+    private boolean isHealthy(String peer) {
+        try {
+            HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(peer + "/actuator/health"))
+                    .timeout(forwardTimeout)
+                    .GET()
+                    .build(),
+                HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized void markDown(String peer) {
+        List<String> live = new ArrayList<>(List.of(ring.peers));
+        if (live.remove(peer)) {
+            updateMembership(live);
+        }
+    }
+
+    private synchronized void updateMembership(List<String> live) {
+        if (!live.equals(List.of(ring.peers))) {
+            ring = new Ring(live, virtualNodes);
+            log.info("Session ownership rebalanced, live peers: {}", live);
+        }
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+    }
+
+    /**
+     * Consistent-hash ring: virtualNodes points per peer, sorted; a session belongs to the
+     * first point at or after its hash. Immutable, replaced whole on membership changes.
+     */
+    private static final class Ring {
+
+        private final String[] peers;
+        private final long[] points;
+        private final int[] owners;
+
+        Ring(List<String> livePeers, int virtualNodes) {
+            this.peers = livePeers.toArray(new String[0]);
+            long[][] entries = new long[peers.length * virtualNodes][];
+            int n = 0;
+            for (int p = 0; p < peers.length; p++) {
+                for (int v = 0; v < virtualNodes; v++) {
+                    entries[n++] = new long[] { Hashes.hash(peers[p] + "#" + v), p };
+                }
+            }
+            Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+            this.points = new long[entries.length];
+            this.owners = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = entries[i][0];
+                owners[i] = (int) entries[i][1];
+            }
+        }
+
+        String ownerOf(UUID sessionId) {
+            long key = Hashes.hash(sessionId);
+            int index = Arrays.binarySearch(points, key);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return peers[owners[index == points.length ? 0 : index]];
+        }
+    }
+}
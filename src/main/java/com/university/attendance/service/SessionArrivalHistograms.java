@@ -0,0 +1,323 @@
+package com.university.attendance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.university.attendance.dto.ArrivalHistogramDTO;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.SessionArrivalHistogram;
+import com.university.attendance.entity.SessionStatus;
+import com.university.attendance.repository.AttendanceSessionRepository;
+import com.university.attendance.repository.SessionArrivalHistogramRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Per-minute scan arrival histograms of sessions, kept without reading markedAt back.
+ *
+ * While a session runs, each accepted scan increments one bucket of a fixed int array
+ * held in memory: bucket i counts scans in minute i after the scheduled start (the
+ * first bucket also takes scans before the start, the last one everything from
+ * analytics.arrivals.minutes - 1 on). A scan costs one synchronized increment; memory is
+ * 4 bytes per bucket per running session. Increments are applied after the scan's
+ * transaction commits, so a rolled back scan is not counted.
+ *
+ * When the session completes, its counts are added to its row in
+ * session_arrival_histograms in the completing transaction. Scans of an already
+ * completed session (late offline uploads) are added to that row directly. Each add is
+ * one INSERT .. ON CONFLICT statement, so instances adding to the same row at once
+ * serialize on it. Adding, never overwriting, keeps partial histograms mergeable:
+ *   - with scan routing a session's scans land on its owner, but scans handled by
+ *     another instance (owner down) are counted there; that instance adds its part
+ *     when it hears of the completion on CacheInvalidationBus
+ *   - histograms of sessions idle for idle-flush, evicted beyond max-sessions, or
+ *     held at shutdown are added to the row early and counting starts again from zero
+ * Counts of scans accepted by an instance that crashes before any of these are lost.
+ *
+ * Live results are those of this instance, i.e. complete on the session's owner.
+ */
+@Slf4j
+@Component
+public class SessionArrivalHistograms {
+
+    private final SessionArrivalHistogramRepository histogramRepository;
+    private final AttendanceSessionRepository sessionRepository;
+    private final ModuleService moduleService;
+    private final TransactionTemplate transaction;
+    private final Cache<UUID, LiveHistogram> live;
+    private final int minutes;
+
+    public SessionArrivalHistograms(
+            SessionArrivalHistogramRepository histogramRepository,
+            AttendanceSessionRepository sessionRepository,
+            ModuleService moduleService,
+            PlatformTransactionManager transactionManager,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry registry,
+            @Value("${analytics.arrivals.minutes:120}") int minutes,
+            @Value("${analytics.arrivals.max-sessions:5000}") long maxSessions,
+            @Value("${analytics.arrivals.idle-flush:6h}") Duration idleFlush) {
+        this.histogramRepository = histogramRepository;
+        this.sessionRepository = sessionRepository;
+        this.moduleService = moduleService;
+        // Own read-write transaction: flushes run outside requests and must see the primary
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.minutes = Math.max(minutes, 1);
+        this.live = Caffeine.newBuilder()
+            .maximumSize(maxSessions)
+            .expireAfterAccess(idleFlush)
+            .scheduler(Scheduler.systemScheduler())
+            .removalListener((UUID sessionId, LiveHistogram histogram, RemovalCause cause) -> {
+                if (histogram != null && cause.wasEvicted()) {
+                    flush(histogram);
+                }
+            })
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, live, "arrival-histograms.sessions");
+        // A session completed or was cancelled on another instance: settle what this one counted.
+        // Looked up off the listener thread; on a full flush every held session is checked
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_SESSION, key -> ForkJoinPool.commonPool().execute(() -> {
+            if (CacheInvalidationBus.ALL.equals(key)) {
+                live.asMap().keySet().forEach(this::reconcile);
+            } else {
+                reconcile(UUID.fromString(key));
+            }
+        }));
+    }
+
+    /**
+     * Session fields a histogram row copies
+     */
+    private record SessionInfo(UUID sessionId, UUID moduleId, LocalDate sessionDate, int qrValidityMinutes) {
+
+        static SessionInfo of(AttendanceSession session) {
+            return new SessionInfo(session.getId(), session.getModule().getId(),
+                session.getSessionDate(), session.getQrValidityMinutes());
+        }
+
+        SessionArrivalHistogram newRow() {
+            return new SessionArrivalHistogram(sessionId, moduleId, sessionDate, qrValidityMinutes);
+        }
+    }
+
+    /**
+     * Counts held for a session. Once removed from the cache to be persisted it is closed,
+     * and adds that raced with the removal fail so the caller counts in a new one.
+     */
+    private final class LiveHistogram {
+
+        private final SessionInfo session;
+        private final int[] counts = new int[minutes];
+        private boolean closed;
+
+        LiveHistogram(SessionInfo session) {
+            this.session = session;
+        }
+
+        synchronized boolean add(int[] buckets) {
+            if (closed) {
+                return false;
+            }
+            for (int bucket : buckets) {
+                counts[bucket]++;
+            }
+            return true;
+        }
+
+        synchronized boolean addCounts(int[] more) {
+            if (closed) {
+                return false;
+            }
+            for (int i = 0; i < more.length; i++) {
+                counts[i] += more[i];
+            }
+            return true;
+        }
+
+        synchronized int[] snapshot() {
+            return counts.clone();
+        }
+
+        // Final counts, called after removal from the cache
+        synchronized int[] close() {
+            closed = true;
+            return counts.clone();
+        }
+    }
+
+    /**
+     * Count scans of a session made at the given times, once the surrounding transaction
+     * commits. Scans of a completed session are added to its persisted histogram instead,
+     * within the transaction.
+     */
+    public void record(AttendanceSession session, List<LocalDateTime> scannedAt) {
+        if (scannedAt.isEmpty()) {
+            return;
+        }
+        LocalDateTime start = LocalDateTime.of(session.getSessionDate(), session.getStartTime());
+        int[] buckets = new int[scannedAt.size()];
+        for (int i = 0; i < buckets.length; i++) {
+            long minute = Math.floorDiv(Duration.between(start, scannedAt.get(i)).toSeconds(), 60);
+            buckets[i] = (int) Math.max(0, Math.min(minute, minutes - 1));
+        }
+        SessionInfo info = SessionInfo.of(session);
+        if (session.getStatus() == SessionStatus.COMPLETED) {
+            int[] counts = new int[minutes];
+            for (int bucket : buckets) {
+                counts[bucket]++;
+            }
+            merge(info, counts);
+            return;
+        }
+        afterCommit(() -> addLive(info, held -> held.add(buckets)));
+    }
+
+    /**
+     * The session completed: persist its histogram in the current transaction (an empty
+     * one if it had no scans here). The counts are held again if the transaction rolls back.
+     */
+    public void sessionCompleted(AttendanceSession session) {
+        SessionInfo info = SessionInfo.of(session);
+        LiveHistogram held = live.asMap().remove(info.sessionId());
+        int[] counts = held != null ? held.close() : new int[minutes];
+        merge(info, counts);
+        if (held != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        addLive(info, again -> again.addCounts(counts));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * The session was cancelled: its arrivals are not kept
+     */
+    public void sessionCancelled(UUID sessionId) {
+        live.invalidate(sessionId);
+    }
+
+    /**
+     * Histogram of one session; while it runs, the counts so far on this instance
+     */
+    @Transactional(readOnly = true)
+    public ArrivalHistogramDTO getSessionArrivals(UUID sessionId) {
+        AttendanceSession session = sessionRepository.findById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Session not found"));
+        boolean running = session.getStatus() == SessionStatus.SCHEDULED || session.getStatus() == SessionStatus.ACTIVE;
+        Optional<SessionArrivalHistogram> persisted = histogramRepository.findById(sessionId);
+        LiveHistogram held = live.asMap().get(sessionId);
+        if (persisted.isEmpty() && held == null && !running) {
+            throw new RuntimeException("No arrival histogram recorded for this session");
+        }
+        // Detached copy: the live counts are added for the response only
+        SessionArrivalHistogram histogram = SessionInfo.of(session).newRow();
+        persisted.ifPresent(row -> histogram.add(row.getCounts()));
+        histogram.add(held != null ? held.snapshot() : new int[minutes]);
+        return ArrivalHistogramDTO.fromEntity(histogram, running);
+    }
+
+    /**
+     * Summed histograms of a module's sessions between from and to (all dates when null)
+     */
+    @Transactional(readOnly = true)
+    public ArrivalHistogramDTO getModuleArrivals(UUID moduleId, LocalDate from, LocalDate to) {
+        moduleService.getModuleById(moduleId)
+            .orElseThrow(() -> new RuntimeException("Module not found"));
+        return ArrivalHistogramDTO.ofModule(moduleId, histogramRepository.findByModuleAndDateRange(moduleId,
+            from != null ? from : LocalDate.of(1970, 1, 1),
+            to != null ? to : LocalDate.of(9999, 12, 31)));
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        for (UUID sessionId : List.copyOf(live.asMap().keySet())) {
+            LiveHistogram held = live.asMap().remove(sessionId);
+            if (held != null) {
+                flush(held);
+            }
+        }
+    }
+
+    private void reconcile(UUID sessionId) {
+        if (!live.asMap().containsKey(sessionId)) {
+            return;
+        }
+        SessionStatus status = transaction.execute(tx -> sessionRepository.findById(sessionId)
+            .map(AttendanceSession::getStatus).orElse(null));
+        if (status == SessionStatus.COMPLETED) {
+            LiveHistogram held = live.asMap().remove(sessionId);
+            if (held != null) {
+                flush(held);
+            }
+        } else if (status == null || status == SessionStatus.CANCELLED) {
+            live.invalidate(sessionId);
+        }
+    }
+
+    /**
+     * Add a histogram removed from the cache to its row, in its own transaction
+     */
+    private void flush(LiveHistogram histogram) {
+        int[] counts = histogram.close();
+        try {
+            transaction.executeWithoutResult(tx -> merge(histogram.session, counts));
+        } catch (RuntimeException e) {
+            log.warn("Could not persist the arrival histogram of session {}", histogram.session.sessionId(), e);
+        }
+    }
+
+    private void merge(SessionInfo session, int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        histogramRepository.addCounts(session.sessionId(), session.moduleId(), session.sessionDate(),
+            session.qrValidityMinutes(), total, counts);
+    }
+
+    // A histogram closed by a concurrent flush is already out of the cache, so the retry gets a new one
+    private void addLive(SessionInfo info, Predicate<LiveHistogram> add) {
+        while (!add.test(live.get(info.sessionId(), id -> new LiveHistogram(info)))) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.university.attendance.service;
+
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.SessionStatus;
+import com.university.attendance.repository.AttendanceRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * On-disk cache of the xlsx export of COMPLETED sessions.
+ *
+ * The file name carries the session id and a version key: the session and module
+ * versions (header content) and the record count and sum of record versions (any
+ * insert or status correction changes it). A lookup is one aggregate query; a stale
+ * file can never match, and updateAttendanceStatus also deletes the session's files
+ * once it commits. The key is taken before the records are read for a new file, so
+ * a concurrent change can only make the stored file miss, never be served stale.
+ *
+ * Files are written to a temp name and moved into place, so readers never see a
+ * partial workbook. When the directory grows beyond export.cache.max-size the least
+ * recently used files are deleted.
+ * Metrics: export.cache.requests{result=hit|miss}.
+ */
+@Slf4j
+@Component
+public class SessionExportCache {
+
+    private static final String SUFFIX = ".xlsx";
+    // Version key of a file name: session, module, record count, record version sum
+    private static final Pattern KEY = Pattern.compile("-s(\\d+)-m(\\d+)-r(\\d+)\\.(\\d+)\\.xlsx$");
+
+    private final AttendanceRecordRepository recordRepository;
+    private final Path directory;
+    private final long maxBytes;
+    private final Counter hits;
+    private final Counter misses;
+
+    public SessionExportCache(
+            AttendanceRecordRepository recordRepository,
+            MeterRegistry registry,
+            @Value("${export.cache.dir:./data/export-cache}") Path directory,
+            @Value("${export.cache.max-size:1GB}") DataSize maxSize) throws IOException {
+        this.recordRepository = recordRepository;
+        this.directory = directory;
+        this.maxBytes = maxSize.toBytes();
+        this.hits = Counter.builder("export.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("export.cache.requests").tag("result", "miss").register(registry);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Cache slot of a session's export: the file when it is already cached, the path
+     * to store it under otherwise. Empty for sessions that are not COMPLETED.
+     */
+    public record Slot(Path file, boolean cached) {
+    }
+
+    public Optional<Slot> lookup(AttendanceSession session) {
+        if (session.getStatus() != SessionStatus.COMPLETED) {
+            return Optional.empty();
+        }
+        Object[] records = recordRepository.findVersionRowBySessionId(session.getId()).get(0);
+        String key = String.format("%s-s%d-m%d-r%d.%d", session.getId(), session.getVersion(),
+            session.getModule().getVersion(), (Long) records[0], (Long) records[1]);
+        Path file = directory.resolve(key + SUFFIX);
+        if (Files.exists(file)) {
+            hits.increment();
+            touch(file);
+            return Optional.of(new Slot(file, true));
+        }
+        misses.increment();
+        return Optional.of(new Slot(file, false));
+    }
+
+    /**
+     * Store a generated workbook in its slot, replacing older versions of the session.
+     * Every part of the version key only grows, so a file is older when none of its parts
+     * is greater than the slot's; a newer file stored meanwhile by another request is kept.
+     */
+    public Path store(Slot slot, byte[] workbook) {
+        try {
+            Path temp = Files.createTempFile(directory, "export-", ".tmp");
+            Files.write(temp, workbook);
+            Files.move(temp, slot.file(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            String sessionId = slot.file().getFileName().toString().substring(0, 36);
+            deleteOlder(sessionId, slot.file());
+            trim();
+            return slot.file();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to cache export", e);
+        }
+    }
+
+    /**
+     * Delete a session's cached exports, after the surrounding transaction commits
+     */
+    public void invalidate(UUID sessionId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    delete(sessionId.toString());
+                }
+            });
+        } else {
+            delete(sessionId.toString());
+        }
+    }
+
+    private void delete(String sessionId) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, sessionId + "-*" + SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete cached exports of session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private void deleteOlder(String sessionId, Path stored) {
+        long[] storedKey = key(stored);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, sessionId + "-*" + SUFFIX)) {
+            for (Path file : files) {
+                if (!file.equals(stored) && olderOrEqual(key(file), storedKey)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete cached exports of session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    // Null for a name not written by lookup
+    private static long[] key(Path file) {
+        Matcher matcher = KEY.matcher(file.getFileName().toString());
+        if (!matcher.find()) {
+            return null;
+        }
+        long[] key = new long[4];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = Long.parseLong(matcher.group(i + 1));
+        }
+        return key;
+    }
+
+    private static boolean olderOrEqual(long[] key, long[] than) {
+        if (key == null || than == null) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] > than[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Delete least recently used files until the cache fits its size limit
+     */
+    private void trim() throws IOException {
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+                total += size(file);
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        files.sort(Comparator.comparing(SessionExportCache::lastUsed));
+        for (Path file : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            total -= size(file);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // The modification time doubles as last-used time
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Deleted concurrently, the caller still holds the path
+        }
+    }
+
+    // 0 when deleted concurrently
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastUsed(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime();
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.university.attendance.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.university.attendance.config.PrimaryReads;
+import com.university.attendance.entity.User;
+import com.university.attendance.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache of user identities by id, email and Microsoft id.
+ *
+ * Found users are kept for cache.users.ttl; lookups that found nothing (unknown
+ * emails on the SSO path, bad ids) are cached too, but only for the much shorter
+ * cache.users.negative-ttl so a user created on another instance shows up quickly.
+ * Callers get a copy, never the cached instance, because entities handed out by
+ * UserService are routinely modified and saved.
+ *
+ * Writes through UserService evict the user from all three caches once the
+ * transaction commits, so a concurrent reader cannot re-cache the old row. The
+ * email and Microsoft id entries of a user are found through an index by user id
+ * (its old values may differ from the new ones), so an eviction never scans a cache.
+ * Other instances get the id, email and Microsoft id through CacheInvalidationBus
+ * and evict the same way, dropping negative entries for the new values.
+ * Metrics: cache.gets{cache=users.*,result=hit|miss}, cache.size, cache.evictions.
+ */
+@Component
+public class UserIdentityCache {
+    
+    private static final String KEY_SEPARATOR = " ";
+    
+    private final LoadingCache<UUID, Optional<User>> byId;
+    private final LoadingCache<String, Optional<User>> byEmail;
+    private final LoadingCache<String, Optional<User>> byMicrosoftId;
+    // User id -> email / Microsoft id keys cached for it
+    private final Map<UUID, Set<String>> emailsById = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> microsoftIdsById = new ConcurrentHashMap<>();
+    private final CacheInvalidationBus invalidationBus;
+    
+    public UserIdentityCache(
+            UserRepository userRepository,
+            PrimaryReads primaryReads,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry registry,
+            @Value("${cache.users.ttl:10m}") Duration ttl,
+            @Value("${cache.users.negative-ttl:30s}") Duration negativeTtl,
+            @Value("${cache.users.maximum-size:50000}") long maximumSize) {
+        this.byId = build("users.id", maximumSize, ttl, negativeTtl, registry, primaryReads,
+            userRepository::findById, null);
+        this.byEmail = build("users.email", maximumSize, ttl, negativeTtl, registry, primaryReads,
+            userRepository::findByEmail, emailsById);
+        this.byMicrosoftId = build("users.microsoft-id", maximumSize, ttl, negativeTtl, registry, primaryReads,
+            userRepository::findByMicrosoftId, microsoftIdsById);
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(CacheInvalidationBus.TOPIC_USER, this::evictRemote);
+    }
+    
+    /**
+     * A cache of users; with an index, found users' keys are tracked by user id.
+     * The index is updated under the entry's lock (load, expiry and size eviction),
+     * explicit invalidations go through evict(), which removes the ids first.
+     */
+    private static <K> LoadingCache<K, Optional<User>> build(String name, long maximumSize, Duration ttl,
+            Duration negativeTtl, MeterRegistry registry, PrimaryReads primaryReads,
+            Function<K, Optional<User>> loader, Map<UUID, Set<K>> index) {
+        Caffeine<K, Optional<User>> builder = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new PresenceExpiry<K>(ttl.toNanos(), negativeTtl.toNanos()))
+            .recordStats();
+        if (index != null) {
+            builder = builder.evictionListener((K key, Optional<User> value, RemovalCause cause) -> {
+                if (value != null && value.isPresent()) {
+                    index.computeIfPresent(value.get().getId(), (id, keys) -> {
+                        keys.remove(key);
+                        return keys.isEmpty() ? null : keys;
+                    });
+                }
+            });
+        }
+        // Loads always read the primary, a reload right after a write must not cache replica lag
+        LoadingCache<K, Optional<User>> cache = builder.build(key -> {
+            Optional<User> user = primaryReads.read(() -> loader.apply(key));
+            if (index != null && user.isPresent()) {
+                index.compute(user.get().getId(), (id, keys) -> {
+                    Set<K> indexed = keys == null ? new HashSet<>() : keys;
+                    indexed.add(key);
+                    return indexed;
+                });
+            }
+            return user;
+        });
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        return cache;
+    }
+    
+    public Optional<User> getById(UUID id) {
+        return byId.get(id).map(UserIdentityCache::copy);
+    }
+    
+    public Optional<User> getByEmail(String email) {
+        return byEmail.get(email).map(UserIdentityCache::copy);
+    }
+    
+    public Optional<User> getByMicrosoftId(String microsoftId) {
+        return byMicrosoftId.get(microsoftId).map(UserIdentityCache::copy);
+    }
+    
+    /**
+     * Evict a created/updated/deactivated user: every entry pointing at its id,
+     * plus (negative) entries for its current email and Microsoft id.
+     * Deferred to after commit when called inside a transaction.
+     */
+    public void evict(User user) {
+        invalidationBus.publish(CacheInvalidationBus.TOPIC_USER, String.join(KEY_SEPARATOR, user.getId().toString(),
+            Objects.toString(user.getEmail(), ""), Objects.toString(user.getMicrosoftId(), "")));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(user.getId(), user.getEmail(), user.getMicrosoftId());
+                }
+            });
+        } else {
+            evictNow(user.getId(), user.getEmail(), user.getMicrosoftId());
+        }
+    }
+    
+    private void evictNow(UUID id, String email, String microsoftId) {
+        byId.invalidate(id);
+        // The email or Microsoft id may have changed, so drop the entries indexed under the id too
+        evict(byEmail, emailsById, id, email);
+        evict(byMicrosoftId, microsoftIdsById, id, microsoftId);
+    }
+    
+    private static void evict(LoadingCache<String, Optional<User>> cache, Map<UUID, Set<String>> index,
+            UUID id, String current) {
+        Set<String> keys = index.remove(id);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+        if (current != null) {
+            cache.invalidate(current);
+        }
+    }
+    
+    // A user changed on another instance: "id email microsoftId", empty when absent
+    private void evictRemote(String key) {
+        if (CacheInvalidationBus.ALL.equals(key)) {
+            emailsById.clear();
+            microsoftIdsById.clear();
+            byId.invalidateAll();
+            byEmail.invalidateAll();
+            byMicrosoftId.invalidateAll();
+            return;
+        }
+        String[] parts = key.split(KEY_SEPARATOR, -1);
+        evictNow(UUID.fromString(parts[0]), part(parts, 1), part(parts, 2));
+    }
+    
+    private static String part(String[] parts, int index) {
+        return index < parts.length && !parts[index].isEmpty() ? parts[index] : null;
+    }
+    
+    static User copy(User user) {
+        return new User(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(), user.getRole(),
+            user.getMicrosoftId(), user.getActive(), user.getCreatedAt(), user.getUpdatedAt());
+    }
+    
+    /**
+     * Full TTL for found users, short TTL for misses
+     */
+    private static class PresenceExpiry<K> implements Expiry<K, Optional<User>> {
+        
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+        
+        PresenceExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+        
+        @Override
+        public long expireAfterCreate(K key, Optional<User> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+        
+        @Override
+        public long expireAfterUpdate(K key, Optional<User> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(K key, Optional<User> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,6 +18,7 @@ import java.util.UUID;
 public class UserService {
     
     private final UserRepository userRepository;
+    private final UserIdentityCache identityCache;
     
     /**
      * Create a new user
@@ -26,33 +28,47 @@ public class UserService {
         if (userRepository.existsByEmail(user.getEmail())) {
             throw new RuntimeException("User with email " + user.getEmail() + " already exists");
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        identityCache.evict(saved);  // drop negative entries for its email / Microsoft id
+        return saved;
     }
     
     /**
-     * Find user by ID
+     * Find user by ID (cached)
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(UUID id) {
-        return userRepository.findById(id);
+        return identityCache.getById(id);
     }
     
     /**
-     * Find user by email
+     * Get when a user was last changed, without loading it (for ETag/Last-Modified)
      */
+    @Transactional(readOnly = true)
+    public Optional<LocalDateTime> getUserLastModified(UUID id) {
+        return userRepository.findLastModifiedById(id);
+    }
+    
+    /**
+     * Find user by email (cached, including misses)
+     */
+    @Transactional(readOnly = true)
     public Optional<User> getUserByEmail(String email) {
-        return userRepository.findByEmail(email);
+        return identityCache.getByEmail(email);
     }
     
     /**
-     * Find user by Microsoft ID (for SSO)
+     * Find user by Microsoft ID (for SSO, cached including misses)
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserByMicrosoftId(String microsoftId) {
-        return userRepository.findByMicrosoftId(microsoftId);
+        return identityCache.getByMicrosoftId(microsoftId);
     }
     
     /**
      * Get all users by role
      */
+    @Transactional(readOnly = true)
     public List<User> getUsersByRole(UserRole role) {
         return userRepository.findByRole(role);
     }
@@ -60,6 +76,7 @@ public class UserService {
     /**
      * Get all active students
      */
+    @Transactional(readOnly = true)
     public List<User> getAllStudents() {
         return userRepository.findByRole(UserRole.STUDENT);
     }
@@ -67,6 +84,7 @@ public class UserService {
     /**
      * Get all active teachers
      */
+    @Transactional(readOnly = true)
     public List<User> getAllTeachers() {
         return userRepository.findByRole(UserRole.TEACHER);
     }
@@ -78,7 +96,9 @@ public class UserService {
         if (!userRepository.existsById(user.getId())) {
             throw new RuntimeException("User not found with ID: " + user.getId());
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        identityCache.evict(saved);
+        return saved;
     }
     
     /**
@@ -90,11 +110,13 @@ public class UserService {
             .orElseThrow(() -> new RuntimeException("User not found with ID: " + userId));
         user.setActive(false);
         userRepository.save(user);
+        identityCache.evict(user);
     }
     
     /**
      * Check if user exists by email
      */
+    @Transactional(readOnly = true)
     public boolean userExistsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
@@ -0,0 +1,34 @@
+-- Columns and tables added since the V1 release: optimistic lock versions (ETags),
+-- offline scan uploads, device-sharing flags and geofence zones.
+-- IF NOT EXISTS because a database kept on ddl-auto: update in the meantime may have
+-- some of them already. Constant defaults, so adding a column does not rewrite the table.
+
+alter table modules
+    add column if not exists version bigint not null default 0;
+
+alter table attendance_sessions
+    add column if not exists version bigint not null default 0;
+
+alter table attendance_records
+    add column if not exists client_event_id uuid,
+    add column if not exists captured_at timestamp(6),
+    add column if not exists version bigint not null default 0,
+    add column if not exists device_sharing_suspected boolean not null default false;
+
+-- Idempotent offline uploads: one record per client event
+create unique index if not exists uk_attendance_records_client_event_id
+    on attendance_records (client_event_id);
+
+create table if not exists geofence_zones (
+    id uuid not null,
+    session_id uuid,
+    classroom varchar(255),
+    zone_type varchar(255) not null check (zone_type in ('CIRCLE','POLYGON')),
+    center_latitude float(53),
+    center_longitude float(53),
+    radius_meters integer,
+    vertices varchar(4000),
+    created_at timestamp(6) not null,
+    primary key (id),
+    constraint FK1cs7v89pfyq3lvxwxd211dl0p foreign key (session_id) references attendance_sessions
+);
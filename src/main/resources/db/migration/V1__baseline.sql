@@ -0,0 +1,79 @@
+-- Schema as created by Hibernate (ddl-auto: update) from the entities of the last release
+-- before migrations were introduced.
+-- Existing databases are baselined at this version (spring.flyway.baseline-on-migrate),
+-- so it must not change: later schema changes go in new versions.
+
+create table users (
+    id uuid not null,
+    email varchar(255) not null unique,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    role varchar(255) not null check (role in ('STUDENT','TEACHER','ADMIN')),
+    microsoft_id varchar(255) unique,
+    active boolean not null,
+    created_at timestamp(6) not null,
+    updated_at timestamp(6),
+    primary key (id)
+);
+
+create table modules (
+    id uuid not null,
+    module_code varchar(255) not null unique,
+    module_name varchar(255) not null,
+    teacher_id uuid not null,
+    description varchar(1000),
+    active boolean not null,
+    created_at timestamp(6) not null,
+    primary key (id)
+);
+
+create table attendance_sessions (
+    id uuid not null,
+    module_id uuid not null,
+    teacher_id uuid not null,
+    session_date date not null,
+    start_time time(6) not null,
+    end_time time(6) not null,
+    classroom varchar(255) not null,
+    qr_validity_minutes integer not null,
+    status varchar(255) not null check (status in ('SCHEDULED','ACTIVE','COMPLETED','CANCELLED')),
+    created_at timestamp(6) not null,
+    location_required boolean not null,
+    campus_latitude float(53),
+    campus_longitude float(53),
+    campus_radius_meters integer,
+    mandatory_attendance boolean not null,
+    primary key (id)
+);
+
+create table attendance_records (
+    id uuid not null,
+    session_id uuid not null,
+    student_id uuid not null,
+    marked_at timestamp(6) not null,
+    status varchar(255) not null check (status in ('PRESENT','LATE','ABSENT','EXCUSED')),
+    device_info varchar(500),
+    latitude float(53),
+    longitude float(53),
+    primary key (id)
+);
+
+alter table modules
+    add constraint FKklpqly9yjl0j7eidib7bajb82
+    foreign key (teacher_id) references users;
+
+alter table attendance_sessions
+    add constraint FKqt9deynr13uvl3a7dlsbxqtmd
+    foreign key (module_id) references modules;
+
+alter table attendance_sessions
+    add constraint FK6s2263mwg9o2ulfjllxrqn0d6
+    foreign key (teacher_id) references users;
+
+alter table attendance_records
+    add constraint FKfaf92mkjrosrvdqq5bev7cl1m
+    foreign key (session_id) references attendance_sessions;
+
+alter table attendance_records
+    add constraint FKms9j38vjchi503h7j0nk0y1hp
+    foreign key (student_id) references users;
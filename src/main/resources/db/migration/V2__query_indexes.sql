@@ -0,0 +1,48 @@
+-- Indexes behind the repository finders (checked by the QueryPlanCheck perf harness).
+-- Built CONCURRENTLY so migrating a live database does not block scans; Flyway runs
+-- this version outside a transaction. IF NOT EXISTS makes a retry after a failed
+-- build safe, but an index left INVALID by one has to be dropped by hand first.
+
+-- Every lookup of a session's records (roster, duplicate check, dashboard and matrix
+-- joins, export version); the included columns let roster rows, per-status counts and
+-- the version sum be answered from the index alone
+create index concurrently if not exists idx_attendance_records_session_student
+    on attendance_records (session_id, student_id) include (status, marked_at, version);
+
+-- A student's history and present count
+create index concurrently if not exists idx_attendance_records_student
+    on attendance_records (student_id) include (session_id, status, marked_at);
+
+-- Teacher dashboard (teacher + day) and a teacher's sessions
+create index concurrently if not exists idx_attendance_sessions_teacher_date
+    on attendance_sessions (teacher_id, session_date, start_time);
+
+-- Module matrix / reports over a date range and a module's sessions
+create index concurrently if not exists idx_attendance_sessions_module_date
+    on attendance_sessions (module_id, session_date, start_time);
+
+-- Sessions of a day across modules (CSV export date range, findBySessionDate)
+create index concurrently if not exists idx_attendance_sessions_date
+    on attendance_sessions (session_date);
+
+-- Live sessions (findByStatus ACTIVE/SCHEDULED); COMPLETED is most rows and scans the table anyway
+create index concurrently if not exists idx_attendance_sessions_status
+    on attendance_sessions (status);
+
+create index concurrently if not exists idx_modules_teacher
+    on modules (teacher_id);
+
+-- Case-insensitive module code prefix (UPPER(module_code) LIKE 'CS%' in the CSV export),
+-- text_pattern_ops so LIKE can use it whatever the database collation
+create index concurrently if not exists idx_modules_code_upper
+    on modules (upper(module_code) text_pattern_ops);
+
+create index concurrently if not exists idx_geofence_zones_session
+    on geofence_zones (session_id);
+
+create index concurrently if not exists idx_geofence_zones_classroom
+    on geofence_zones (classroom);
+
+-- Teacher and admin listings; STUDENT is most rows and scans the table anyway
+create index concurrently if not exists idx_users_role
+    on users (role);
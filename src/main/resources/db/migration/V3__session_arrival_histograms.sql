@@ -0,0 +1,27 @@
+-- Per-minute scan arrival histograms of sessions (SessionArrivalHistograms), written when
+-- a session completes. Module, date and QR validity are copied from the session so module
+-- curves are read from this table alone.
+create table session_arrival_histograms (
+    session_id uuid not null,
+    module_id uuid not null,
+    session_date date not null,
+    qr_validity_minutes integer not null,
+    total_scans integer not null,
+    -- counts[i] = scans in minute i after the scheduled start; the first also holds
+    -- earlier scans, the last also holds later ones
+    counts integer[] not null,
+    updated_at timestamp(6) not null,
+    primary key (session_id)
+);
+
+alter table session_arrival_histograms
+    add constraint fk_session_arrival_histograms_session
+    foreign key (session_id) references attendance_sessions;
+
+alter table session_arrival_histograms
+    add constraint fk_session_arrival_histograms_module
+    foreign key (module_id) references modules;
+
+-- Module curves over a date range
+create index idx_session_arrival_histograms_module_date
+    on session_arrival_histograms (module_id, session_date);
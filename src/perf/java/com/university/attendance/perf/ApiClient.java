@@ -0,0 +1,113 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Minimal client for the REST API, used by the perf harnesses to build fixtures
+ */
+class ApiClient {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    final HttpClient http;
+    final String baseUrl;
+
+    ApiClient(HttpClient http, String baseUrl) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+    }
+
+    JsonNode get(String path) throws Exception {
+        return send("GET", path, null);
+    }
+
+    JsonNode post(String path, Object body) throws Exception {
+        return send("POST", path, body);
+    }
+
+    JsonNode put(String path) throws Exception {
+        return send("PUT", path, null);
+    }
+
+    JsonNode send(String method, String path, Object body) throws Exception {
+        HttpResponse<String> response = http.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(method + " " + path + " -> " + response.statusCode() + " " + response.body());
+        }
+        return response.body().isEmpty() ? null : MAPPER.readTree(response.body());
+    }
+
+    HttpResponse<byte[]> getBytes(String path) throws Exception {
+        return http.send(request("GET", path, null), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    HttpRequest request(String method, String path, Object body) throws Exception {
+        HttpRequest.BodyPublisher publisher = body == null
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body));
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "application/json")
+            .method(method, publisher)
+            .build();
+    }
+
+    UUID createUser(String role, String name, String domain) throws Exception {
+        Map<String, Object> user = new HashMap<>();
+        user.put("email", name + "@" + domain);
+        user.put("firstName", name);
+        user.put("lastName", domain);
+        user.put("role", role);
+        return UUID.fromString(post("/api/v1/users", user).get("id").asText());
+    }
+
+    UUID createModule(UUID teacherId, String code) throws Exception {
+        Map<String, Object> module = new HashMap<>();
+        module.put("moduleCode", code);
+        module.put("moduleName", "Module " + code);
+        module.put("teacherId", teacherId);
+        return UUID.fromString(post("/api/v1/modules", module).get("id").asText());
+    }
+
+    /**
+     * Create a session starting now and start it, so its QR is valid for validityMinutes
+     */
+    UUID createActiveSession(UUID teacherId, UUID moduleId, String classroom, int validityMinutes) throws Exception {
+        LocalTime now = LocalTime.now().withNano(0);
+        Map<String, Object> session = new HashMap<>();
+        session.put("moduleId", moduleId);
+        session.put("sessionDate", LocalDate.now().toString());
+        session.put("startTime", now.toString());
+        session.put("endTime", now.plusHours(2).toString());
+        session.put("classroom", classroom);
+        session.put("qrValidityMinutes", validityMinutes);
+        session.put("locationRequired", false);
+        UUID sessionId = UUID.fromString(post("/api/v1/sessions?teacherId=" + teacherId, session).get("id").asText());
+        put("/api/v1/sessions/" + sessionId + "/start");
+        return sessionId;
+    }
+
+    String qrToken(UUID sessionId) throws Exception {
+        return get("/api/v1/sessions/" + sessionId + "/qr-data").get("qrToken").asText();
+    }
+
+    HttpRequest scanRequest(String qrToken, UUID studentId) throws Exception {
+        Map<String, Object> scan = new HashMap<>();
+        scan.put("qrToken", qrToken);
+        scan.put("studentId", studentId.toString());
+        scan.put("deviceInfo", "perf/" + studentId);
+        return request("POST", "/api/v1/attendance/scan", scan);
+    }
+}
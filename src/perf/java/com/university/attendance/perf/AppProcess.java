@@ -0,0 +1,129 @@
+package com.university.attendance.perf;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application running as a child process (JVM or native), configured through
+ * the same environment variables as production, with output captured to a log file
+ */
+class AppProcess implements AutoCloseable {
+
+    final String baseUrl;
+    final Path log;
+    final long startedAt;
+    private final Process process;
+
+    private AppProcess(Process process, int port, Path log, long startedAt) {
+        this.process = process;
+        this.baseUrl = "http://localhost:" + port;
+        this.log = log;
+        this.startedAt = startedAt;
+    }
+
+    static AppProcess start(List<String> command, PerfDatabase database, Path log) throws IOException {
+        return start(command, database, log, freePort());
+    }
+
+    /**
+     * Start on a given port, for instances that must know each other's URL up front
+     */
+    static AppProcess start(List<String> command, PerfDatabase database, Path log, int port) throws IOException {
+        Files.createDirectories(log.getParent());
+        ProcessBuilder builder = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile());
+        builder.environment().put("SPRING_DATASOURCE_URL", database.url);
+        builder.environment().put("SPRING_DATASOURCE_USERNAME", database.user);
+        builder.environment().put("SPRING_DATASOURCE_PASSWORD", database.password);
+        builder.environment().put("PORT", String.valueOf(port));
+        long startedAt = System.nanoTime();
+        return new AppProcess(builder.start(), port, log, startedAt);
+    }
+
+    static String java() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return process.waitFor(timeout, unit);
+    }
+
+    /**
+     * Block until /actuator/health answers 200, returns milliseconds since launch
+     */
+    long awaitHealthy(HttpClient http, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health"))
+            .timeout(Duration.ofSeconds(2))
+            .build();
+        while (true) {
+            if (System.nanoTime() > deadline || !process.isAlive()) {
+                throw new IllegalStateException("Application did not become healthy, see " + log);
+            }
+            try {
+                if (http.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return millisSinceStart();
+                }
+            } catch (IOException notListeningYet) {
+                // retry
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    long millisSinceStart() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Resident set size in kB (Linux only, 0 elsewhere)
+     */
+    long residentKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(process.pid()), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException e) {
+            // Not Linux
+        }
+        return 0;
+    }
+
+    /**
+     * SIGKILL, no shutdown hooks: simulates a crash
+     */
+    void kill() throws InterruptedException {
+        process.destroyForcibly().waitFor();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.university.attendance.perf;
+
+import java.util.Random;
+
+/**
+ * Shape of student arrivals inside the QR validity window.
+ * sample() returns an offset in [0, 1) as a fraction of the window.
+ */
+public enum ArrivalCurve {
+
+    // Evenly spread over the window
+    UNIFORM {
+        @Override
+        double sample(Random random) {
+            return random.nextDouble();
+        }
+    },
+
+    // Most students scan as soon as the QR appears, then a long tail of late arrivals
+    // (exponential with mean at 20% of the window, truncated)
+    BURST {
+        @Override
+        double sample(Random random) {
+            double offset;
+            do {
+                offset = -Math.log(1 - random.nextDouble()) * 0.2;
+            } while (offset >= 1);
+            return offset;
+        }
+    },
+
+    // Arrivals peak a little after the start (normal around 30% of the window)
+    PEAK {
+        @Override
+        double sample(Random random) {
+            double offset;
+            do {
+                offset = 0.3 + random.nextGaussian() * 0.15;
+            } while (offset < 0 || offset >= 1);
+            return offset;
+        }
+    };
+
+    abstract double sample(Random random);
+}
@@ -0,0 +1,294 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Two-instance check of the per-session scan arrival histograms (SessionArrivalHistograms).
+ *
+ * Starts instances A and B on one database and creates sessions that started --offsets
+ * minutes ago (plus half a minute, so scans land mid-minute). Every student scans every
+ * session, one in three through B, so each instance counts part of each session, as
+ * when scans fall back from an unreachable owner. Checks:
+ *   - while running, A's live histogram holds exactly the scans A accepted
+ *   - completing on A persists A's part and B adds its part on the session event;
+ *     the persisted histogram equals one computed from markedAt with SQL
+ *   - offline scans uploaded to B after completion are added at their capture time
+ *   - the module curve is the sum of its sessions
+ *   - histograms of running sessions are persisted when B shuts down
+ *   - a cancelled session keeps no histogram
+ *
+ * Usage:
+ *   mvn package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.ArrivalHistogramCheck
+ *
+ * Options:
+ *   --jar PATH        packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --students N      students scanning each session (default 150)
+ *   --offsets LIST    comma-separated minutes since each session's start (default 0,2,5,9,14,22,37)
+ *   --db-url URL      use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class ArrivalHistogramCheck {
+
+    private static final int MINUTES = 120;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final PerfDatabase database;
+    private final List<String> command;
+    private final int students;
+    private final int[] offsets;
+    private final Path workDir = Paths.get("target", "arrival-histogram-check");
+    private final List<String> failures = new ArrayList<>();
+
+    public ArrivalHistogramCheck(PerfDatabase database, List<String> command, int students, int[] offsets) {
+        this.database = database;
+        this.command = command;
+        this.students = students;
+        this.offsets = offsets;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+        int students = Integer.parseInt(options.getOrDefault("students", "150"));
+        int[] offsets = Arrays.stream(options.getOrDefault("offsets", "0,2,5,9,14,22,37").split(","))
+            .mapToInt(offset -> Integer.parseInt(offset.trim())).toArray();
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            passed = new ArrivalHistogramCheck(database, List.of(AppProcess.java(), "-jar", jar.toString()),
+                students, offsets).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try (AppProcess first = AppProcess.start(command, database, workDir.resolve("a.log"));
+             AppProcess second = AppProcess.start(command, database, workDir.resolve("b.log"))) {
+            first.awaitHealthy(http, Duration.ofMinutes(3));
+            second.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient a = new ApiClient(http, first.baseUrl);
+            ApiClient b = new ApiClient(http, second.baseUrl);
+
+            UUID teacherId = a.createUser("TEACHER", "teacher", "arrivals.local");
+            UUID moduleId = a.createModule(teacherId, "ARR-1");
+            List<UUID> studentIds = new ArrayList<>();
+            for (int i = 0; i < students + 20; i++) {
+                studentIds.add(a.createUser("STUDENT", "student" + i, "arrivals.local"));
+            }
+            List<UUID> late = studentIds.subList(students, students + 20);
+
+            // Scans split across the instances
+            List<UUID> sessions = new ArrayList<>();
+            Map<UUID, String> tokens = new HashMap<>();
+            Map<UUID, Integer> acceptedByA = new HashMap<>();
+            long scanStart = System.nanoTime();
+            for (int offset : offsets) {
+                UUID sessionId = createSession(a, teacherId, moduleId, offset);
+                sessions.add(sessionId);
+                tokens.put(sessionId, a.qrToken(sessionId));
+                List<Future<Boolean>> scans = new ArrayList<>();
+                for (int i = 0; i < students; i++) {
+                    ApiClient via = i % 3 == 0 ? b : a;
+                    UUID studentId = studentIds.get(i);
+                    scans.add(pool.submit(() -> scan(via, tokens.get(sessionId), studentId)));
+                }
+                int viaA = 0;
+                for (int i = 0; i < scans.size(); i++) {
+                    if (!scans.get(i).get()) {
+                        throw new IllegalStateException("Scan rejected for session " + sessionId);
+                    }
+                    viaA += i % 3 == 0 ? 0 : 1;
+                }
+                acceptedByA.put(sessionId, viaA);
+            }
+            System.out.printf("  %d scans over %d sessions in %.1f s%n%n", students * offsets.length, offsets.length,
+                (System.nanoTime() - scanStart) / 1e9);
+
+            boolean liveOk = true;
+            for (UUID sessionId : sessions) {
+                JsonNode live = a.get("/api/v1/analytics/sessions/" + sessionId + "/arrivals");
+                liveOk &= live.get("live").asBoolean() && live.get("totalScans").asInt() == acceptedByA.get(sessionId);
+            }
+            expect("live histogram on A holds A's scans", liveOk, "");
+
+            for (UUID sessionId : sessions) {
+                a.put("/api/v1/sessions/" + sessionId + "/complete");
+            }
+            expect("B adds its part on completion", eventually(() -> {
+                for (UUID sessionId : sessions) {
+                    if (a.get("/api/v1/analytics/sessions/" + sessionId + "/arrivals").get("totalScans").asInt() != students) {
+                        return false;
+                    }
+                }
+                return true;
+            }, Duration.ofSeconds(5)), "");
+            List<String> mismatched = new ArrayList<>();
+            for (UUID sessionId : sessions) {
+                if (!Arrays.equals(counts(a.get("/api/v1/analytics/sessions/" + sessionId + "/arrivals")), fromMarkedAt(sessionId))) {
+                    mismatched.add(sessionId.toString());
+                }
+            }
+            expect("persisted histograms equal markedAt buckets", mismatched.isEmpty(), mismatched);
+
+            // Offline scans of the first session uploaded after it completed
+            UUID firstSession = sessions.get(0);
+            List<Map<String, Object>> events = new ArrayList<>();
+            Instant now = Instant.now();
+            for (int i = 0; i < late.size(); i++) {
+                Map<String, Object> event = new HashMap<>();
+                event.put("eventId", UUID.randomUUID().toString());
+                event.put("qrToken", tokens.get(firstSession));
+                event.put("studentId", late.get(i).toString());
+                event.put("capturedAt", now.minusSeconds(5L * i).toString());
+                events.add(event);
+            }
+            JsonNode results = b.post("/api/v1/attendance/scan/batch", Map.of("events", events));
+            long accepted = 0;
+            for (JsonNode result : results) {
+                accepted += "ACCEPTED".equals(result.get("outcome").asText()) ? 1 : 0;
+            }
+            JsonNode afterUpload = a.get("/api/v1/analytics/sessions/" + firstSession + "/arrivals");
+            expect("late offline scans added at their capture time", accepted == late.size()
+                && afterUpload.get("totalScans").asInt() == students + late.size()
+                && Arrays.equals(counts(afterUpload), fromMarkedAt(firstSession)), afterUpload.get("totalScans"));
+
+            JsonNode module = a.get("/api/v1/analytics/modules/" + moduleId + "/arrivals");
+            int[] sum = new int[MINUTES];
+            for (UUID sessionId : sessions) {
+                int[] counts = fromMarkedAt(sessionId);
+                for (int i = 0; i < MINUTES; i++) {
+                    sum[i] += counts[i];
+                }
+            }
+            expect("module curve is the sum of its sessions", module.get("sessions").asInt() == sessions.size()
+                && Arrays.equals(counts(module), sum), module.get("totalScans"));
+            System.out.printf("       module curve: %d scans, p50 %d min, p90 %d min, p95 %d min%n",
+                module.get("totalScans").asInt(), module.get("p50Minutes").asInt(),
+                module.get("p90Minutes").asInt(), module.get("p95Minutes").asInt());
+
+            // Cancelled: nothing kept
+            UUID cancelled = createSession(a, teacherId, moduleId, 1);
+            String cancelledToken = a.qrToken(cancelled);
+            for (int i = 0; i < 10; i++) {
+                scan(a, cancelledToken, studentIds.get(i));
+            }
+            a.put("/api/v1/sessions/" + cancelled + "/cancel");
+            expect("cancelled session keeps no histogram",
+                status(a, "/api/v1/analytics/sessions/" + cancelled + "/arrivals") == 400, "");
+
+            // Running session held by B when it shuts down
+            UUID running = createSession(a, teacherId, moduleId, 3);
+            String runningToken = a.qrToken(running);
+            for (int i = 0; i < 30; i++) {
+                scan(b, runningToken, studentIds.get(i));
+            }
+            second.close();
+            JsonNode persisted = a.get("/api/v1/analytics/sessions/" + running + "/arrivals");
+            expect("running histogram persisted at shutdown", persisted.get("totalScans").asInt() == 30
+                && Arrays.equals(counts(persisted), fromMarkedAt(running)), persisted.get("totalScans"));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    /**
+     * A started session whose scheduled start was offsetMinutes and a half ago, QR valid for an hour
+     */
+    private static UUID createSession(ApiClient api, UUID teacherId, UUID moduleId, int offsetMinutes) throws Exception {
+        LocalTime start = LocalTime.now().withNano(0).minusMinutes(offsetMinutes).minusSeconds(30);
+        Map<String, Object> session = new HashMap<>();
+        session.put("moduleId", moduleId);
+        session.put("sessionDate", LocalDate.now().toString());
+        session.put("startTime", start.toString());
+        session.put("endTime", start.plusHours(2).toString());
+        session.put("classroom", "ARR-" + offsetMinutes);
+        session.put("qrValidityMinutes", 60);
+        session.put("locationRequired", false);
+        UUID sessionId = UUID.fromString(api.post("/api/v1/sessions?teacherId=" + teacherId, session).get("id").asText());
+        api.put("/api/v1/sessions/" + sessionId + "/start");
+        return sessionId;
+    }
+
+    private boolean scan(ApiClient api, String token, UUID studentId) throws Exception {
+        return http.send(api.scanRequest(token, studentId), HttpResponse.BodyHandlers.discarding()).statusCode() < 300;
+    }
+
+    private static int[] counts(JsonNode histogram) {
+        int[] counts = new int[MINUTES];
+        JsonNode values = histogram.get("counts");
+        for (int i = 0; i < values.size(); i++) {
+            counts[i] = values.get(i).asInt();
+        }
+        return counts;
+    }
+
+    // The histogram computed the expensive way, from every record's scan time
+    private int[] fromMarkedAt(UUID sessionId) throws Exception {
+        int[] counts = new int[MINUTES];
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT least(greatest(floor(extract(epoch FROM coalesce(r.captured_at, r.marked_at) "
+                     + "- (s.session_date + s.start_time)) / 60), 0), ?)::int, count(*) "
+                     + "FROM attendance_records r JOIN attendance_sessions s ON s.id = r.session_id "
+                     + "WHERE r.session_id = ? GROUP BY 1")) {
+            statement.setInt(1, MINUTES - 1);
+            statement.setObject(2, sessionId);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    counts[rows.getInt(1)] = rows.getInt(2);
+                }
+            }
+        }
+        return counts;
+    }
+
+    private int status(ApiClient api, String path) throws Exception {
+        return http.send(api.request("GET", path, null), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static boolean eventually(Callable<Boolean> condition, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            if (condition.call()) {
+                return true;
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-52s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Two-instance check of the LISTEN/NOTIFY cache invalidation bus.
+ *
+ * Starts instances A and B on one database, warms B's caches, then writes through A
+ * and checks B serves the change within --max-delay (default 2s), far below the
+ * caches' own refresh/TTL:
+ *   - a new module appears in B's cached active module list,
+ *   - a user deactivated on A is inactive on B,
+ *   - an email B has cached as unknown resolves once A creates the user,
+ *   - starting and completing a session on A reaches B's session and at-risk topics.
+ * It then terminates both listener connections server-side and checks they reconnect
+ * (cache.invalidation.reconnects) and that events flow again afterwards.
+ *
+ * Usage:
+ *   mvn package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.CacheInvalidationCheck
+ *
+ * Options:
+ *   --jar PATH        packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --max-delay MS    how long B may take to see a change (default 2000)
+ *   --db-url URL      use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class CacheInvalidationCheck {
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final PerfDatabase database;
+    private final List<String> command;
+    private final long maxDelayMillis;
+    private final Path workDir = Paths.get("target", "cache-invalidation-check");
+    private final List<String> failures = new ArrayList<>();
+
+    public CacheInvalidationCheck(PerfDatabase database, List<String> command, long maxDelayMillis) {
+        this.database = database;
+        this.command = command;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+        long maxDelay = Long.parseLong(options.getOrDefault("max-delay", "2000"));
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            passed = new CacheInvalidationCheck(database, List.of(AppProcess.java(), "-jar", jar.toString()), maxDelay).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        try (AppProcess first = AppProcess.start(command, database, workDir.resolve("a.log"));
+             AppProcess second = AppProcess.start(command, database, workDir.resolve("b.log"))) {
+            first.awaitHealthy(http, Duration.ofMinutes(3));
+            second.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient a = new ApiClient(http, first.baseUrl);
+            ApiClient b = new ApiClient(http, second.baseUrl);
+            awaitConnected(a);
+            awaitConnected(b);
+
+            UUID teacherId = a.createUser("TEACHER", "teacher", "bus.local");
+            UUID moduleId = a.createModule(teacherId, "BUS-1");
+            expect("B sees a module created on A", eventually(() -> moduleCount(b, "BUS-1") == 1), "");
+
+            UUID studentId = a.createUser("STUDENT", "student", "bus.local");
+            expect("B caches the user as active", b.get("/api/v1/users/" + studentId).get("active").asBoolean(), "");
+            a.send("DELETE", "/api/v1/users/" + studentId, null);
+            expect("B sees the user deactivated on A",
+                eventually(() -> !b.get("/api/v1/users/" + studentId).get("active").asBoolean()), "");
+
+            String ghost = "/api/v1/users/email/ghost@bus.local";
+            expect("B caches an unknown email", status(b, ghost) == 400, "");
+            a.createUser("STUDENT", "ghost", "bus.local");
+            expect("B resolves the email once A creates the user", eventually(() -> status(b, ghost) == 200), "");
+
+            UUID sessionId = a.createActiveSession(teacherId, moduleId, "BUS-R1", 15);
+            a.put("/api/v1/sessions/" + sessionId + "/complete");
+            expect("B receives the session events", eventually(() -> received(b, "session") >= 2), received(b, "session"));
+            expect("B receives the at-risk event", eventually(() -> received(b, "at-risk") >= 1), received(b, "at-risk"));
+
+            int terminated = terminateListeners();
+            expect("both listener connections terminated", terminated == 2, terminated);
+            expect("A reconnects", eventually(() -> metric(a, "cache.invalidation.reconnects") >= 1
+                && metric(a, "cache.invalidation.connected") == 1, Duration.ofSeconds(10)), "");
+            expect("B reconnects", eventually(() -> metric(b, "cache.invalidation.reconnects") >= 1
+                && metric(b, "cache.invalidation.connected") == 1, Duration.ofSeconds(10)), "");
+            a.createModule(teacherId, "BUS-2");
+            expect("events flow again after the reconnect", eventually(() -> moduleCount(b, "BUS-2") == 1), "");
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    private boolean eventually(Callable<Boolean> condition) throws Exception {
+        return eventually(condition, Duration.ofMillis(maxDelayMillis));
+    }
+
+    private static boolean eventually(Callable<Boolean> condition, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            if (condition.call()) {
+                return true;
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private void awaitConnected(ApiClient api) throws Exception {
+        if (!eventually(() -> metric(api, "cache.invalidation.connected") == 1, Duration.ofSeconds(10))) {
+            throw new IllegalStateException("Invalidation listener of " + api.baseUrl + " never connected");
+        }
+    }
+
+    private static long moduleCount(ApiClient api, String code) throws Exception {
+        long count = 0;
+        for (JsonNode module : api.get("/api/v1/modules")) {
+            if (code.equals(module.get("moduleCode").asText())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int status(ApiClient api, String path) throws Exception {
+        return http.send(api.request("GET", path, null), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static double received(ApiClient api, String topic) throws Exception {
+        return metric(api, "cache.invalidation.received?tag=topic:" + topic);
+    }
+
+    private static double metric(ApiClient api, String name) {
+        try {
+            return api.get("/actuator/metrics/" + name).get("measurements").get(0).get("value").asDouble();
+        } catch (Exception e) {
+            return 0;  // not registered yet
+        }
+    }
+
+    private int terminateListeners() throws Exception {
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT count(pg_terminate_backend(pid)) FROM pg_stat_activity "
+                 + "WHERE application_name = 'cache-invalidation'")) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-52s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Constant-memory check of the streamed CSV export (GET /api/v1/attendance/export/csv).
+ *
+ *   1. Start the app with a small heap (--heap, default 64m) and seed students x sessions
+ *      attendance records of one module directly in the database (1,000,000 by default).
+ *   2. Export the whole range, counting rows and sampling the app's used heap while it runs:
+ *      every row must arrive, although the CSV is larger than the whole heap.
+ *   3. Start another export, drop the connection after the first MB and check the server
+ *      stops reading (no export query left running) and frees its stream permit.
+ *
+ * Usage:
+ *   mvn package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.ExportStreamCheck
+ *
+ * Options:
+ *   --jar PATH        packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --students N      students seeded (default 1000)
+ *   --sessions N      sessions seeded, each attended by every student (default 1000)
+ *   --heap SIZE       app -Xmx (default 64m)
+ *   --db-url URL      use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class ExportStreamCheck {
+
+    private static final String MODULE_CODE = "EXPRT-1";
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final PerfDatabase database;
+    private final List<String> command;
+    private final int studentCount;
+    private final int sessionCount;
+    private final List<String> failures = new ArrayList<>();
+
+    public ExportStreamCheck(PerfDatabase database, List<String> command, int studentCount, int sessionCount) {
+        this.database = database;
+        this.command = command;
+        this.studentCount = studentCount;
+        this.sessionCount = sessionCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+        int students = Integer.parseInt(options.getOrDefault("students", "1000"));
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "1000"));
+        String heap = options.getOrDefault("heap", "64m");
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            List<String> command = List.of(AppProcess.java(), "-Xmx" + heap, "-jar", jar.toString());
+            passed = new ExportStreamCheck(database, command, students, sessions).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        try (AppProcess app = AppProcess.start(command, database, Paths.get("target", "export-stream-check", "app.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient api = new ApiClient(http, app.baseUrl);
+            UUID teacherId = api.createUser("TEACHER", "teacher", "export.local");
+            UUID moduleId = api.createModule(teacherId, MODULE_CODE);
+            long expected = (long) studentCount * sessionCount;
+            long seedStart = System.nanoTime();
+            seed(teacherId, moduleId);
+            System.out.printf("  seeded %,d records in %.1f s%n", expected, (System.nanoTime() - seedStart) / 1e9);
+
+            String path = "/api/v1/attendance/export/csv?moduleCodePrefix=" + MODULE_CODE
+                + "&from=2000-01-01&to=2100-01-01";
+            AtomicBoolean exporting = new AtomicBoolean(true);
+            AtomicLong peakHeap = new AtomicLong();
+            Thread sampler = new Thread(() -> {
+                while (exporting.get()) {
+                    try {
+                        peakHeap.accumulateAndGet(usedHeap(api), Math::max);
+                        Thread.sleep(200);
+                    } catch (Exception e) {
+                        return;
+                    }
+                }
+            });
+            sampler.start();
+
+            long start = System.nanoTime();
+            long lines = 0;
+            long bytes = 0;
+            HttpResponse<InputStream> response = http.send(get(app.baseUrl + path), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = body.read(buffer)) > 0) {
+                    bytes += read;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] == '\n') {
+                            lines++;
+                        }
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            exporting.set(false);
+            sampler.join();
+            System.out.printf("  exported %,d rows (%,d MB) in %.1f s, %,.0f rows/s, peak used heap %d MB%n",
+                lines - 1, bytes >> 20, seconds, (lines - 1) / seconds, peakHeap.get() >> 20);
+            expect("export answered 200", response.statusCode() == 200, response.statusCode());
+            // The CSV alone is larger than the app's heap, so this only passes if nothing is materialised
+            expect("every record exported", lines - 1 == expected, (lines - 1) + "/" + expected);
+
+            HttpResponse<InputStream> aborted = http.send(get(app.baseUrl + path), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = aborted.body()) {
+                body.readNBytes(1 << 20);
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (exportQueries() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            expect("aborted export stops its query", exportQueries() == 0, exportQueries() + " still running");
+            HttpResponse<Void> next = http.send(
+                get(app.baseUrl + "/api/v1/attendance/export/csv?moduleCodePrefix=NONE&from=2000-01-01&to=2100-01-01"),
+                HttpResponse.BodyHandlers.discarding());
+            expect("stream permit released", next.statusCode() == 200, next.statusCode());
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    private void seed(UUID teacherId, UUID moduleId) throws Exception {
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO users (id, email, first_name, last_name, role, active, created_at) "
+                + "SELECT gen_random_uuid(), 'export' || i || '@export.local', 'Student', 'No. ' || i, 'STUDENT', true, now() "
+                + "FROM generate_series(1, " + studentCount + ") i");
+            statement.execute("INSERT INTO attendance_sessions (id, module_id, teacher_id, session_date, start_time, end_time, "
+                + "classroom, qr_validity_minutes, status, created_at, version, location_required, mandatory_attendance) "
+                + "SELECT gen_random_uuid(), '" + moduleId + "', '" + teacherId + "', DATE '2020-01-01' + i, TIME '09:00', "
+                + "TIME '10:00', 'E-' || i, 15, 'COMPLETED', now(), 0, false, true FROM generate_series(1, " + sessionCount + ") i");
+            statement.execute("INSERT INTO attendance_records (id, session_id, student_id, marked_at, status, device_info, "
+                + "version, device_sharing_suspected) "
+                + "SELECT gen_random_uuid(), s.id, u.id, s.session_date + s.start_time, 'PRESENT', 'perf', 0, false "
+                + "FROM attendance_sessions s CROSS JOIN users u "
+                + "WHERE s.module_id = '" + moduleId + "' AND u.email LIKE 'export%@export.local'");
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private int exportQueries() throws Exception {
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT count(*) FROM pg_stat_activity "
+                 + "WHERE state <> 'idle' AND query ILIKE '%upper(m%module_code%like%' AND pid <> pg_backend_pid()")) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private static long usedHeap(ApiClient api) throws Exception {
+        JsonNode metric = api.get("/actuator/metrics/jvm.memory.used?tag=area:heap");
+        return metric.get("measurements").get(0).get("value").asLong();
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-52s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.university.attendance.perf;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Native image smoke test.
+ *
+ * Runs the native executable, and the JVM jar for comparison, through the main flow:
+ * create session -> start -> QR image -> scan -> Excel export. Fails if any step
+ * fails, which is how missing reachability metadata shows up. Records startup time
+ * (launch to healthy), time to the first successful scan, and RSS after the flow,
+ * and writes the table to target/native-smoke/report.txt.
+ *
+ * Usage:
+ *   mvn -Pnative native:compile -DskipTests            (needs GraalVM 22.3+ as JAVA_HOME)
+ *   mvn package -DskipTests                            (JVM jar for the comparison)
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.NativeSmokeTest
+ *
+ * Options:
+ *   --native PATH     native executable (default target/attendance-system)
+ *   --jar PATH        JVM jar (default target/attendance-system-1.0.0.jar), --no-jvm to skip
+ *   --db-url URL      use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class NativeSmokeTest {
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+    private final PerfDatabase database;
+    private final Path workDir = Paths.get("target", "native-smoke");
+
+    public NativeSmokeTest(PerfDatabase database) {
+        this.database = database;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Map<String, List<String>> builds = new LinkedHashMap<>();
+        if (!options.containsKey("no-jvm")) {
+            Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+            builds.put("jvm", List.of(AppProcess.java(), "-jar", jar.toString()));
+        }
+        Path binary = Paths.get(options.getOrDefault("native", "target/attendance-system")).toAbsolutePath();
+        if (!Files.isExecutable(binary)) {
+            throw new IllegalStateException(binary + " not found, run: mvn -Pnative native:compile -DskipTests");
+        }
+        builds.put("native", List.of(binary.toString()));
+
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            passed = new NativeSmokeTest(database).run(builds);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run(Map<String, List<String>> builds) throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-8s %12s %16s %10s  %s", "build", "healthy ms", "first scan ms", "RSS MB", "result"));
+        boolean passed = true;
+
+        for (Map.Entry<String, List<String>> build : builds.entrySet()) {
+            System.out.printf("%n%s: %s%n", build.getKey(), String.join(" ", build.getValue()));
+            try (AppProcess app = AppProcess.start(build.getValue(), database, workDir.resolve(build.getKey() + ".log"))) {
+                long healthyMillis = app.awaitHealthy(http, Duration.ofMinutes(3));
+                String result;
+                long firstScanMillis = -1;
+                try {
+                    firstScanMillis = runFlow(new ApiClient(http, app.baseUrl), app);
+                    result = "PASS";
+                } catch (Exception e) {
+                    result = "FAIL " + e.getMessage();
+                    passed = false;
+                }
+                report.add(String.format("%-8s %12d %16d %10d  %s",
+                    build.getKey(), healthyMillis, firstScanMillis, app.residentKb() / 1024, result));
+            }
+        }
+
+        System.out.println();
+        report.forEach(System.out::println);
+        Files.createDirectories(workDir);
+        Files.write(workDir.resolve("report.txt"), report);
+        return passed;
+    }
+
+    /**
+     * create session -> start -> QR image -> scan -> export, returns ms since launch at the first scan
+     */
+    private long runFlow(ApiClient api, AppProcess app) throws Exception {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        String domain = "smoke-" + runId + ".local";
+        UUID teacherId = api.createUser("TEACHER", "teacher", domain);
+        UUID studentId = api.createUser("STUDENT", "student", domain);
+        UUID moduleId = api.createModule(teacherId, "SMOKE-" + runId);
+        UUID sessionId = api.createActiveSession(teacherId, moduleId, "SMOKE-1", 15);
+        step("create + start session", sessionId);
+
+        HttpResponse<byte[]> qr = api.getBytes("/api/v1/sessions/" + sessionId + "/qr");
+        expect(qr, new byte[] {(byte) 0x89, 'P', 'N', 'G'}, "QR image");
+
+        HttpResponse<String> scan = http.send(api.scanRequest(api.qrToken(sessionId), studentId),
+            HttpResponse.BodyHandlers.ofString());
+        if (scan.statusCode() != 201) {
+            throw new IllegalStateException("scan -> " + scan.statusCode() + " " + scan.body());
+        }
+        long firstScanMillis = app.millisSinceStart();
+        step("scan", studentId);
+
+        HttpResponse<byte[]> export = api.getBytes("/api/v1/attendance/session/" + sessionId + "/export");
+        expect(export, new byte[] {'P', 'K'}, "Excel export");
+        return firstScanMillis;
+    }
+
+    private static void expect(HttpResponse<byte[]> response, byte[] magic, String step) {
+        byte[] body = response.body();
+        if (response.statusCode() != 200 || body.length < magic.length) {
+            throw new IllegalStateException(step + " -> " + response.statusCode() + " " + new String(body));
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (body[i] != magic[i]) {
+                throw new IllegalStateException(step + " returned an unexpected format");
+            }
+        }
+        step(step, body.length + " bytes");
+    }
+
+    private static void step(String name, Object detail) {
+        System.out.printf("  ok  %-24s %s%n", name, detail);
+    }
+}
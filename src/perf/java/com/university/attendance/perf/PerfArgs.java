@@ -0,0 +1,29 @@
+package com.university.attendance.perf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * "--key value" / "--flag" command line parsing shared by the perf harnesses
+ */
+final class PerfArgs {
+
+    private PerfArgs() {
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String key = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(key, args[++i]);
+            } else {
+                options.put(key, "true");
+            }
+        }
+        return options;
+    }
+}
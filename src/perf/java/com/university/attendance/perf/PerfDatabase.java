@@ -0,0 +1,52 @@
+package com.university.attendance.perf;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Postgres for a perf run: an embedded instance, or an existing one given by --db-url
+ */
+class PerfDatabase implements AutoCloseable {
+
+    final String url;
+    final String user;
+    final String password;
+    private final EmbeddedPostgres embedded;
+
+    private PerfDatabase(String url, String user, String password, EmbeddedPostgres embedded) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.embedded = embedded;
+    }
+
+    static PerfDatabase open(Map<String, String> options) throws IOException {
+        if (options.containsKey("db-url")) {
+            return new PerfDatabase(options.get("db-url"),
+                options.getOrDefault("db-user", "postgres"),
+                options.getOrDefault("db-password", ""),
+                null);
+        }
+        System.out.println("Starting embedded Postgres...");
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        return new PerfDatabase(postgres.getJdbcUrl("postgres", "postgres"), "postgres", "", postgres);
+    }
+
+    /**
+     * The same server, another database (and optionally another user); closing it does not stop the server
+     */
+    PerfDatabase withDatabase(String database, String user, String password) {
+        String otherUrl = url.replaceFirst("^(jdbc:postgresql://[^/]+/)[^?]*", "$1" + database)
+            .replaceFirst("([?&]user=)[^&]*", "$1" + user);  // embedded URLs carry the user
+        return new PerfDatabase(otherUrl, user, password, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
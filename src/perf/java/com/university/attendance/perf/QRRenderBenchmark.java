@@ -0,0 +1,168 @@
+package com.university.attendance.perf;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.university.attendance.service.QRCodeRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process benchmark of QR code rendering for GET /api/v1/sessions/{id}/qr.
+ *
+ * Renders realistic tokens (random base64 of the length of an encrypted QR payload)
+ * at 512x512 through three paths and reports bytes, latency and allocation per image:
+ *   imageio    QRCodeWriter at 512x512 + MatrixToImageWriter PNG (the former path)
+ *   png-1bit   QRCodeRenderer PNG, 1-bit indexed, no BufferedImage
+ *   svg        QRCodeRenderer SVG
+ * plus "encode", the module matrix alone, which both new paths start from.
+ * Before timing it checks the 1-bit PNG decodes to exactly the pixels of the former
+ * PNG and back to the token, and that the SVG path covers exactly the dark modules.
+ *
+ * Usage:
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.QRRenderBenchmark
+ *
+ * Options:
+ *   --tokens N        distinct tokens rendered (default 200)
+ *   --token-length N  characters per token (default 600)
+ *   --iterations N    measured renders per path (default 5000)
+ *   --warmup N        unmeasured renders per path first (default 3000)
+ */
+public class QRRenderBenchmark {
+
+    private static final int SIZE = 512;
+
+    @FunctionalInterface
+    private interface Render {
+        byte[] apply(String token) throws Exception;
+    }
+
+    private final QRCodeRenderer renderer = new QRCodeRenderer();
+    private final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        int tokens = Integer.parseInt(options.getOrDefault("tokens", "200"));
+        int tokenLength = Integer.parseInt(options.getOrDefault("token-length", "600"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3000"));
+        System.exit(new QRRenderBenchmark().run(tokens, tokenLength, iterations, warmup) ? 0 : 1);
+    }
+
+    private boolean run(int tokenCount, int tokenLength, int iterations, int warmup) throws Exception {
+        Random random = new Random(42);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < tokenCount; i++) {
+            byte[] bytes = new byte[tokenLength * 3 / 4];
+            random.nextBytes(bytes);
+            tokens.add(Base64.getEncoder().encodeToString(bytes));
+        }
+
+        for (String token : tokens.subList(0, Math.min(20, tokens.size()))) {
+            verify(token);
+        }
+        if (!failures.isEmpty()) {
+            System.out.println("\nFAIL " + failures);
+            return false;
+        }
+        System.out.println("  ok   1-bit PNG pixel-identical to the former PNG and decodable");
+        System.out.println("  ok   SVG covers exactly the dark modules");
+
+        System.out.printf("%n  %-10s %10s %12s %14s%n", "path", "bytes", "us/image", "alloc KB/image");
+        // Shared by both new paths: QR encoding and mask selection, nothing written
+        measure("encode", token -> {
+            renderer.encode(token);
+            return new byte[0];
+        }, tokens, iterations, warmup);
+        measure("imageio", this::imageio, tokens, iterations, warmup);
+        measure("png-1bit", token -> renderer.render(token, QRCodeRenderer.Format.PNG, SIZE, SIZE), tokens, iterations, warmup);
+        measure("svg", token -> renderer.render(token, QRCodeRenderer.Format.SVG, SIZE, SIZE), tokens, iterations, warmup);
+        System.out.println("\nPASS");
+        return true;
+    }
+
+    private byte[] imageio(String token) throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode(token, BarcodeFormat.QR_CODE, SIZE, SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(matrix, "PNG", out);
+        return out.toByteArray();
+    }
+
+    private void verify(String token) throws Exception {
+        BufferedImage former = ImageIO.read(new ByteArrayInputStream(imageio(token)));
+        BufferedImage indexed = ImageIO.read(new ByteArrayInputStream(
+            renderer.render(token, QRCodeRenderer.Format.PNG, SIZE, SIZE)));
+        boolean same = former.getWidth() == indexed.getWidth() && former.getHeight() == indexed.getHeight();
+        for (int y = 0; same && y < former.getHeight(); y++) {
+            for (int x = 0; same && x < former.getWidth(); x++) {
+                same = (former.getRGB(x, y) & 0xFFFFFF) == (indexed.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        if (!same) {
+            failures.add("1-bit PNG differs from the former PNG");
+            return;
+        }
+        String decoded = new QRCodeReader().decode(new BinaryBitmap(
+            new HybridBinarizer(new BufferedImageLuminanceSource(indexed)))).getText();
+        if (!token.equals(decoded)) {
+            failures.add("1-bit PNG does not decode to its token");
+        }
+
+        BitMatrix modules = renderer.encode(token);
+        BitMatrix drawn = new BitMatrix(modules.getWidth(), modules.getHeight());
+        String svg = new String(renderer.toSvg(modules, SIZE, SIZE), StandardCharsets.US_ASCII);
+        Matcher command = Pattern.compile("M(\\d+) (\\d+)\\.5|m(\\d+) 0|h(\\d+)").matcher(svg);
+        int x = 0;
+        int y = 0;
+        while (command.find()) {
+            if (command.group(1) != null) {
+                x = Integer.parseInt(command.group(1));
+                y = Integer.parseInt(command.group(2));
+            } else if (command.group(3) != null) {
+                x += Integer.parseInt(command.group(3));
+            } else {
+                int length = Integer.parseInt(command.group(4));
+                drawn.setRegion(x, y, length, 1);
+                x += length;
+            }
+        }
+        if (!drawn.equals(modules)) {
+            failures.add("SVG does not match the modules");
+        }
+    }
+
+    private static void measure(String name, Render render, List<String> tokens, int iterations, int warmup) throws Exception {
+        long bytes = 0;
+        for (int i = 0; i < warmup; i++) {
+            bytes += render.apply(tokens.get(i % tokens.size())).length;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            bytes += render.apply(tokens.get(i % tokens.size())).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("  %-10s %10d %12.1f %14.1f%n", name, bytes / iterations,
+            elapsed / 1000.0 / iterations, allocated / 1024.0 / iterations);
+    }
+}
@@ -0,0 +1,470 @@
+package com.university.attendance.perf;
+
+import com.university.attendance.AttendanceSystemApplication;
+import com.university.attendance.entity.AttendanceSession;
+import com.university.attendance.entity.Module;
+import com.university.attendance.entity.SessionStatus;
+import com.university.attendance.entity.User;
+import com.university.attendance.entity.UserRole;
+import com.university.attendance.repository.AttendanceRecordRepository;
+import com.university.attendance.repository.AttendanceSessionRepository;
+import com.university.attendance.repository.GeofenceZoneRepository;
+import com.university.attendance.repository.ModuleRepository;
+import com.university.attendance.repository.SessionArrivalHistogramRepository;
+import com.university.attendance.repository.UserRepository;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Query plan check of every repository query against the migrated schema.
+ *
+ * Boots the application in-process on a database left as the last release before
+ * migrations created it: the V1 baseline schema with a few rows and no Flyway history.
+ * The context only starts if Flyway baselines it at V1, every later migration applies and
+ * Hibernate validates the result; the legacy rows must come through unchanged and with
+ * the defaults of the added columns. It then seeds a dataset of --students students,
+ * --sessions sessions and --per-session records each, ANALYZEs it, then calls every
+ * query method declared on the repositories. Each SQL statement a call executes is
+ * EXPLAINed first, on the same connection with the same parameters, and the call fails
+ * if any plan contains a sequential scan of an application table.
+ *
+ * Queries that read a whole table by design (startup loads of the at-risk bitmaps and
+ * the active module catalogue, role-wide user lists) are listed as skipped with the
+ * reason. A query method with no entry at all fails the check, so new finders have to
+ * be added here.
+ *
+ * Usage:
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.QueryPlanCheck
+ * It also runs with default options in the verify phase of the perf profile, failing
+ * the build (mvn -Pperf verify).
+ *
+ * Options:
+ *   --students N      students (default 20000), plus --teachers (default 500)
+ *   --modules N       modules (default 3000)
+ *   --sessions N      sessions over two years (default 60000)
+ *   --per-session N   records per session (default 20)
+ *   --db-url URL      use this (empty) Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class QueryPlanCheck {
+
+    private static final Set<String> TABLES = Set.of(
+        "users", "modules", "attendance_sessions", "attendance_records", "geofence_zones", "session_arrival_histograms");
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    // Plans of the statements run by the current thread while a query is being checked
+    private static final ThreadLocal<List<String>> PLANS = new ThreadLocal<>();
+
+    private final PerfDatabase database;
+    private final Map<String, String> options;
+    private final Path workDir = Paths.get("target", "query-plan-check");
+    private final Map<String, Callable<Object>> queries = new LinkedHashMap<>();
+    private final Map<String, String> skipped = new LinkedHashMap<>();
+    // Writing or row-locking queries, which Postgres refuses in a read-only transaction
+    private final Set<String> writing = new LinkedHashSet<>();
+    private final List<String> failures = new ArrayList<>();
+
+    public QueryPlanCheck(PerfDatabase database, Map<String, String> options) {
+        this.database = database;
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            passed = new QueryPlanCheck(database, options).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        UUID legacyRecord = createLegacySchema();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AttendanceSystemApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new ExplainingDataSource()))
+                .run(
+                    "--spring.datasource.url=" + database.url,
+                    "--spring.datasource.username=" + database.user,
+                    "--spring.datasource.password=" + database.password,
+                    "--report.jobs.dir=" + workDir.resolve("report-jobs").toAbsolutePath(),
+                    "--export.cache.dir=" + workDir.resolve("export-cache").toAbsolutePath(),
+                    "--scan.journal.dir=" + workDir.resolve("scan-journal").toAbsolutePath(),
+                    "--server.port=0",
+                    "--cache.invalidation.enabled=false",
+                    "--logging.level.root=WARN")) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            // The context only starts if Hibernate validated the migrated schema
+            expect("migrations applied, schema validated", jdbc.queryForObject(
+                "SELECT count(*) = 0 FROM flyway_schema_history WHERE NOT success", Boolean.class), "");
+            expect("legacy database baselined at V1", jdbc.queryForObject(
+                "SELECT count(*) = 1 FROM flyway_schema_history WHERE type = 'BASELINE' AND version = '1'",
+                Boolean.class), jdbc.queryForList("SELECT version, type FROM flyway_schema_history"));
+            expect("legacy rows kept, added columns defaulted", jdbc.queryForObject(
+                "SELECT r.version = 0 AND NOT r.device_sharing_suspected AND r.client_event_id IS NULL"
+                    + " AND s.version = 0 AND m.version = 0"
+                    + " FROM attendance_records r JOIN attendance_sessions s ON s.id = r.session_id"
+                    + " JOIN modules m ON m.id = s.module_id WHERE r.id = ?", Boolean.class, legacyRecord), "");
+            // Out of the way of the seeded data the queries are checked against
+            jdbc.update("DELETE FROM attendance_records");
+            jdbc.update("DELETE FROM attendance_sessions");
+            jdbc.update("DELETE FROM modules");
+            jdbc.update("DELETE FROM users");
+
+            seed(jdbc);
+            register(context, jdbc);
+            checkCoverage();
+
+            TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            transaction.setReadOnly(true);
+            TransactionTemplate writeTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            for (Map.Entry<String, Callable<Object>> query : queries.entrySet()) {
+                check(writing.contains(query.getKey()) ? writeTransaction : transaction, query.getKey(), query.getValue());
+            }
+            skipped.forEach((name, reason) -> System.out.printf("  %-4s %-62s %s%n", "skip", name, reason));
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    /**
+     * Create the V1 schema with one record (and its student, teacher, module and session)
+     * the way the last release without migrations left it
+     */
+    private UUID createLegacySchema() throws Exception {
+        String baseline;
+        try (InputStream in = QueryPlanCheck.class.getResourceAsStream("/db/migration/V1__baseline.sql")) {
+            baseline = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        UUID teacher = UUID.randomUUID();
+        UUID student = UUID.randomUUID();
+        UUID module = UUID.randomUUID();
+        UUID session = UUID.randomUUID();
+        UUID record = UUID.randomUUID();
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             Statement statement = connection.createStatement()) {
+            statement.execute(baseline);
+            statement.execute("INSERT INTO users (id, email, first_name, last_name, role, active, created_at) VALUES"
+                + " ('" + teacher + "', 'legacy.teacher@plan.local', 'Legacy', 'Teacher', 'TEACHER', true, now()),"
+                + " ('" + student + "', 'legacy.student@plan.local', 'Legacy', 'Student', 'STUDENT', true, now())");
+            statement.execute("INSERT INTO modules (id, module_code, module_name, teacher_id, active, created_at) VALUES"
+                + " ('" + module + "', 'LEGACY1', 'Legacy module', '" + teacher + "', true, now())");
+            statement.execute("INSERT INTO attendance_sessions (id, module_id, teacher_id, session_date, start_time,"
+                + " end_time, classroom, qr_validity_minutes, status, created_at, location_required,"
+                + " mandatory_attendance) VALUES ('" + session + "', '" + module + "', '" + teacher + "',"
+                + " current_date, '09:00', '10:00', 'L1', 15, 'COMPLETED', now(), false, false)");
+            statement.execute("INSERT INTO attendance_records (id, session_id, student_id, marked_at, status) VALUES"
+                + " ('" + record + "', '" + session + "', '" + student + "', now(), 'PRESENT')");
+        }
+        return record;
+    }
+
+    private void seed(JdbcTemplate jdbc) {
+        int students = Integer.parseInt(options.getOrDefault("students", "20000"));
+        int teachers = Integer.parseInt(options.getOrDefault("teachers", "500"));
+        int modules = Integer.parseInt(options.getOrDefault("modules", "3000"));
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "60000"));
+        int perSession = Integer.parseInt(options.getOrDefault("per-session", "20"));
+        long start = System.nanoTime();
+
+        jdbc.update("INSERT INTO users (id, email, first_name, last_name, role, microsoft_id, active, created_at) "
+            + "SELECT gen_random_uuid(), 'user' || g || '@plan.local', 'First' || g, 'Last' || (g % 997), "
+            + "CASE WHEN g <= ? THEN 'TEACHER' ELSE 'STUDENT' END, 'ms-' || g, true, now() "
+            + "FROM generate_series(1, ?) g", teachers, teachers + students);
+        jdbc.update("INSERT INTO modules (id, module_code, module_name, teacher_id, active, created_at, version) "
+            + "SELECT gen_random_uuid(), 'M' || lpad(g::text, 5, '0'), 'Module ' || g, t.id, g % 10 <> 0, now(), 0 "
+            + "FROM generate_series(1, ?) g "
+            + "JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n FROM users WHERE role = 'TEACHER') t "
+            + "ON t.n = g % ?", modules, teachers);
+        jdbc.update("INSERT INTO attendance_sessions (id, module_id, teacher_id, session_date, start_time, end_time, "
+            + "classroom, qr_validity_minutes, status, created_at, version, location_required, mandatory_attendance) "
+            + "SELECT gen_random_uuid(), m.id, m.teacher_id, date '2024-01-01' + g % 730, "
+            + "time '08:00' + (g % 10) * interval '1 hour', time '09:00' + (g % 10) * interval '1 hour', "
+            + "'Room ' || g % 400, 15, "
+            + "CASE WHEN g % 1000 = 0 THEN 'ACTIVE' WHEN g % 997 = 0 THEN 'SCHEDULED' "
+            + "WHEN g % 50 = 0 THEN 'CANCELLED' ELSE 'COMPLETED' END, now(), 0, false, g % 3 <> 0 "
+            + "FROM generate_series(1, ?) g "
+            + "JOIN (SELECT id, teacher_id, row_number() OVER (ORDER BY id) - 1 AS n FROM modules) m "
+            + "ON m.n = g % ?", sessions, modules);
+        jdbc.update("INSERT INTO attendance_records (id, session_id, student_id, marked_at, status, device_info, "
+            + "client_event_id, version, device_sharing_suspected) "
+            + "SELECT gen_random_uuid(), s.id, st.id, now(), CASE WHEN k % 10 = 0 THEN 'LATE' ELSE 'PRESENT' END, "
+            + "'seed', CASE WHEN k = 0 THEN gen_random_uuid() END, 0, false "
+            + "FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM attendance_sessions) s "
+            + "CROSS JOIN generate_series(0, ? - 1) k "
+            + "JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS n FROM users WHERE role = 'STUDENT') st "
+            + "ON st.n = (s.n * 7 + k * 131) % ?", perSession, students);
+        jdbc.update("INSERT INTO geofence_zones (id, session_id, classroom, zone_type, center_latitude, "
+            + "center_longitude, radius_meters, created_at) "
+            + "SELECT gen_random_uuid(), CASE WHEN s.n % 2 = 0 THEN s.id END, "
+            + "CASE WHEN s.n % 2 = 1 THEN 'Room ' || s.n % 400 END, 'CIRCLE', 51.5, -0.1, 100, now() "
+            + "FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM attendance_sessions) s "
+            + "WHERE s.n <= ?", sessions / 3);
+        jdbc.update("INSERT INTO session_arrival_histograms (session_id, module_id, session_date, qr_validity_minutes, "
+            + "total_scans, counts, updated_at) "
+            + "SELECT id, module_id, session_date, qr_validity_minutes, ?, array_fill(0, ARRAY[119]) || ?, now() "
+            + "FROM attendance_sessions WHERE status = 'COMPLETED'", perSession, perSession);
+        jdbc.execute("ANALYZE");
+        System.out.printf("  seeded %d students, %d sessions, %d records in %.1f s%n%n",
+            students, sessions, (long) sessions * perSession, (System.nanoTime() - start) / 1e9);
+    }
+
+    private void register(ConfigurableApplicationContext context, JdbcTemplate jdbc) {
+        AttendanceRecordRepository records = context.getBean(AttendanceRecordRepository.class);
+        AttendanceSessionRepository sessions = context.getBean(AttendanceSessionRepository.class);
+        GeofenceZoneRepository geofences = context.getBean(GeofenceZoneRepository.class);
+        ModuleRepository modules = context.getBean(ModuleRepository.class);
+        UserRepository users = context.getBean(UserRepository.class);
+        SessionArrivalHistogramRepository histograms = context.getBean(SessionArrivalHistogramRepository.class);
+
+        // Sample arguments, loaded outside the checks
+        AttendanceSession session = sessions.findById(uuid(jdbc,
+            "SELECT session_id FROM attendance_records LIMIT 1")).orElseThrow();
+        User student = users.findById(uuid(jdbc,
+            "SELECT student_id FROM attendance_records WHERE session_id = ? LIMIT 1", session.getId())).orElseThrow();
+        Module module = session.getModule();
+        User teacher = session.getTeacher();
+        LocalDate date = session.getSessionDate();
+        List<UUID> eventIds = jdbc.queryForList(
+            "SELECT client_event_id FROM attendance_records WHERE client_event_id IS NOT NULL LIMIT 50", UUID.class);
+        List<UUID> sessionIds = jdbc.queryForList(
+            "SELECT id FROM attendance_sessions WHERE module_id = ? LIMIT 20", UUID.class, module.getId());
+        List<UUID> studentIds = jdbc.queryForList(
+            "SELECT student_id FROM attendance_records WHERE session_id = ?", UUID.class, session.getId());
+        String codePattern = module.getModuleCode().toUpperCase() + "%";
+
+        String records_ = AttendanceRecordRepository.class.getSimpleName() + ".";
+        queries.put(records_ + "findBySession", () -> records.findBySession(session));
+        queries.put(records_ + "findByStudent", () -> records.findByStudent(student));
+        queries.put(records_ + "findBySessionAndStudent", () -> records.findBySessionAndStudent(session, student));
+        queries.put(records_ + "existsBySessionAndStudent", () -> records.existsBySessionAndStudent(session, student));
+        queries.put(records_ + "countPresentByStudent", () -> records.countPresentByStudent(student));
+        queries.put(records_ + "findByStudentAndModule", () -> records.findByStudentAndModule(student, module.getId()));
+        queries.put(records_ + "findRosterRowsBySessionId", () -> records.findRosterRowsBySessionId(session.getId()));
+        queries.put(records_ + "findHistoryRowsByStudentId", () -> records.findHistoryRowsByStudentId(student.getId()));
+        queries.put(records_ + "findByClientEventIds", () -> records.findByClientEventIds(eventIds));
+        queries.put(records_ + "findMarkedPairs", () -> records.findMarkedPairs(sessionIds, studentIds));
+        queries.put(records_ + "findVersionRowBySessionId", () -> records.findVersionRowBySessionId(session.getId()));
+        queries.put(records_ + "streamExportRows", () -> drain(records.streamExportRows(codePattern, date, date.plusDays(30))));
+        skipped.put(records_ + "streamMandatoryAttendance", "at-risk startup load, every mandatory record");
+
+        String sessions_ = AttendanceSessionRepository.class.getSimpleName() + ".";
+        queries.put(sessions_ + "findByModule", () -> sessions.findByModule(module));
+        queries.put(sessions_ + "findByTeacher", () -> sessions.findByTeacher(teacher));
+        queries.put(sessions_ + "findByStatus", () -> sessions.findByStatus(SessionStatus.ACTIVE));
+        queries.put(sessions_ + "findBySessionDate", () -> sessions.findBySessionDate(date));
+        queries.put(sessions_ + "findByTeacherAndSessionDate", () -> sessions.findByTeacherAndSessionDate(teacher, date));
+        queries.put(sessions_ + "countAttendanceByTeacherAndSessionDate",
+            () -> sessions.countAttendanceByTeacherAndSessionDate(teacher.getId(), date));
+        queries.put(sessions_ + "findByModuleAndSessionDateBetween",
+            () -> sessions.findByModuleAndSessionDateBetween(module, date.minusDays(90), date));
+        queries.put(sessions_ + "streamMatrixRows", () -> drain(sessions.streamMatrixRows(
+            module.getId(), SessionStatus.CANCELLED, date.minusDays(90), date)));
+        queries.put(sessions_ + "findVersionRowById", () -> sessions.findVersionRowById(session.getId()));
+        skipped.put(sessions_ + "streamMandatorySessions", "at-risk startup load, every mandatory session");
+
+        String geofences_ = GeofenceZoneRepository.class.getSimpleName() + ".";
+        queries.put(geofences_ + "findBySession", () -> geofences.findBySession(session));
+        queries.put(geofences_ + "findByClassroom", () -> geofences.findByClassroom("Room 7"));
+
+        String modules_ = ModuleRepository.class.getSimpleName() + ".";
+        queries.put(modules_ + "findByModuleCode", () -> modules.findByModuleCode(module.getModuleCode()));
+        queries.put(modules_ + "findByTeacher", () -> modules.findByTeacher(teacher));
+        queries.put(modules_ + "findByTeacherAndActiveTrue", () -> modules.findByTeacherAndActiveTrue(teacher));
+        queries.put(modules_ + "findByTeacherIdAndActiveTrue", () -> modules.findByTeacherIdAndActiveTrue(teacher.getId()));
+        queries.put(modules_ + "existsByModuleCode", () -> modules.existsByModuleCode(module.getModuleCode()));
+        queries.put(modules_ + "findVersionRowById", () -> modules.findVersionRowById(module.getId()));
+        skipped.put(modules_ + "findByActiveTrue", "module catalogue, every active module");
+
+        String users_ = UserRepository.class.getSimpleName() + ".";
+        queries.put(users_ + "findByEmail", () -> users.findByEmail(student.getEmail()));
+        queries.put(users_ + "findByMicrosoftId", () -> users.findByMicrosoftId(student.getMicrosoftId()));
+        queries.put(users_ + "findByRole", () -> users.findByRole(UserRole.TEACHER));
+        queries.put(users_ + "existsByEmail", () -> users.existsByEmail(student.getEmail()));
+        queries.put(users_ + "findLastModifiedById", () -> users.findLastModifiedById(student.getId()));
+        skipped.put(users_ + "findByActiveTrue", "every active user");
+
+        String histograms_ = SessionArrivalHistogramRepository.class.getSimpleName() + ".";
+        queries.put(histograms_ + "addCounts", () -> {
+            histograms.addCounts(session.getId(), module.getId(), session.getSessionDate(), 15, 3, new int[] {1, 0, 2});
+            return null;
+        });
+        writing.add(histograms_ + "addCounts");
+        queries.put(histograms_ + "findByModuleAndDateRange",
+            () -> histograms.findByModuleAndDateRange(module.getId(), date.minusDays(90), date));
+    }
+
+    // Every query method declared on a repository must be checked or skipped with a reason
+    private void checkCoverage() {
+        Set<String> missing = new LinkedHashSet<>();
+        for (Class<?> repository : List.of(AttendanceRecordRepository.class, AttendanceSessionRepository.class,
+                GeofenceZoneRepository.class, ModuleRepository.class, UserRepository.class,
+                SessionArrivalHistogramRepository.class)) {
+            for (Method method : repository.getDeclaredMethods()) {
+                String name = repository.getSimpleName() + "." + method.getName();
+                if (!method.isSynthetic() && !queries.containsKey(name) && !skipped.containsKey(name)) {
+                    missing.add(name);
+                }
+            }
+        }
+        expect("every repository query is covered", missing.isEmpty(), missing);
+    }
+
+    private void check(TransactionTemplate transaction, String name, Callable<Object> query) {
+        List<String> plans = new ArrayList<>();
+        PLANS.set(plans);
+        try {
+            transaction.execute(status -> {
+                status.setRollbackOnly();
+                try {
+                    return query.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } finally {
+            PLANS.remove();
+        }
+        Set<String> scanned = new LinkedHashSet<>();
+        for (String plan : plans) {
+            Matcher scan = SEQ_SCAN.matcher(plan);
+            while (scan.find()) {
+                if (TABLES.contains(scan.group(1))) {
+                    scanned.add(scan.group(1));
+                }
+            }
+        }
+        boolean ok = !plans.isEmpty() && scanned.isEmpty();
+        expect(name, ok, plans.isEmpty() ? "no statement executed" : "seq scan on " + scanned);
+        if (!ok) {
+            plans.forEach(plan -> System.out.println(plan.indent(8)));
+        }
+    }
+
+    private static long drain(Stream<Object[]> rows) {
+        try (rows) {
+            return rows.count();
+        }
+    }
+
+    private static UUID uuid(JdbcTemplate jdbc, String sql, Object... args) {
+        return jdbc.queryForObject(sql, UUID.class, args);
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-62s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+
+    /**
+     * Wraps the application's DataSource so that, while a check is capturing on the
+     * current thread, every prepared query is EXPLAINed with its bound parameters
+     * just before it runs
+     */
+    private static final class ExplainingDataSource implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource) || !"dataSource".equals(beanName)) {
+                return bean;
+            }
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return connection(super.getConnection());
+                }
+            };
+        }
+
+        private static Connection connection(Connection target) {
+            return proxy(Connection.class, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                    return statement(target, statement, (String) args[0]);
+                }
+                return result;
+            });
+        }
+
+        private static PreparedStatement statement(Connection connection, PreparedStatement target, String sql) {
+            List<Object[]> binds = new ArrayList<>();
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    binds.add(new Object[] { method, args });
+                } else if (name.equals("clearParameters")) {
+                    binds.clear();
+                } else if ((name.equals("executeQuery") || name.equals("executeUpdate") || name.equals("execute"))
+                        && (args == null || args.length == 0)) {
+                    List<String> plans = PLANS.get();
+                    if (plans != null) {
+                        plans.add(explain(connection, sql, binds));
+                    }
+                }
+                return invoke(target, method, args);
+            });
+        }
+
+        private static String explain(Connection connection, String sql, List<Object[]> binds) throws Exception {
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (Object[] bind : binds) {
+                    ((Method) bind[0]).invoke(explain, (Object[]) bind[1]);
+                }
+                StringBuilder plan = new StringBuilder(sql).append('\n');
+                try (ResultSet rows = explain.executeQuery()) {
+                    while (rows.next()) {
+                        plan.append(rows.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            }
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+        }
+    }
+}
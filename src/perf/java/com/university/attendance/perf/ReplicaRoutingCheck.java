@@ -0,0 +1,151 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Local check of the read/write split (datasource.replica.enabled=true) on one
+ * Postgres server, with a frozen copy of the database standing in for a replica.
+ *
+ *   1. Start the app on database "attendance", seed a session and two students, stop it.
+ *   2. Copy it to database "attendance_replica" (an infinitely lagged replica) and create
+ *      role replica_reader, which may only read (default_transaction_read_only).
+ *   3. Start the app with the replica enabled and check:
+ *      - writes still work, so nothing that writes is routed to the read-only replica
+ *      - a second scan is rejected as duplicate although the replica has no record of
+ *        the first one, i.e. the duplicate check reads the primary
+ *      - read-only endpoints (/attendance/check) answer from the replica (stale)
+ *      - with the replica refusing logins, the same read falls back to the primary
+ *      - after retry-after, reads go back to the replica
+ *
+ * Usage:
+ *   mvn package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.ReplicaRoutingCheck
+ *
+ * Options:
+ *   --jar PATH        packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --db-url URL      use this Postgres server instead of an embedded one (needs CREATE DATABASE / ROLE)
+ */
+public class ReplicaRoutingCheck {
+
+    private static final String PRIMARY_DB = "attendance";
+    private static final String REPLICA_DB = "attendance_replica";
+    private static final String REPLICA_USER = "replica_reader";
+    private static final int RETRY_AFTER_SECONDS = 3;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+    private final PerfDatabase server;
+    private final List<String> command;
+    private final Path logDir = Paths.get("target", "replica-check");
+    private final List<String> failures = new ArrayList<>();
+
+    public ReplicaRoutingCheck(PerfDatabase server, List<String> command) {
+        this.server = server;
+        this.command = command;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+        boolean passed;
+        try (PerfDatabase server = PerfDatabase.open(options)) {
+            passed = new ReplicaRoutingCheck(server, List.of(AppProcess.java(), "-jar", jar.toString())).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        sql(server, "DROP DATABASE IF EXISTS " + REPLICA_DB, "DROP DATABASE IF EXISTS " + PRIMARY_DB,
+            "CREATE DATABASE " + PRIMARY_DB);
+        PerfDatabase primary = server.withDatabase(PRIMARY_DB, server.user, server.password);
+
+        // 1. Schema and fixture, written with the replica switched off
+        UUID sessionId;
+        UUID studentId;
+        try (AppProcess app = AppProcess.start(command, primary, logDir.resolve("seed.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient api = new ApiClient(http, app.baseUrl);
+            UUID teacherId = api.createUser("TEACHER", "teacher", "replica.local");
+            UUID moduleId = api.createModule(teacherId, "REPL-1");
+            sessionId = api.createActiveSession(teacherId, moduleId, "R-1", 60);
+            studentId = api.createUser("STUDENT", "student", "replica.local");
+        }
+
+        // 2. Frozen replica: a copy taken now, never updated again
+        sql(server, "CREATE DATABASE " + REPLICA_DB + " TEMPLATE " + PRIMARY_DB,
+            "DO $$ BEGIN IF NOT EXISTS (SELECT FROM pg_roles WHERE rolname = '" + REPLICA_USER + "') "
+                + "THEN CREATE ROLE " + REPLICA_USER + " LOGIN PASSWORD 'replica'; END IF; END $$",
+            "ALTER ROLE " + REPLICA_USER + " LOGIN",
+            "ALTER ROLE " + REPLICA_USER + " SET default_transaction_read_only = on");
+        PerfDatabase replicaAdmin = server.withDatabase(REPLICA_DB, server.user, server.password);
+        sql(replicaAdmin, "GRANT SELECT ON ALL TABLES IN SCHEMA public TO " + REPLICA_USER);
+
+        // 3. Replica enabled
+        List<String> replicaCommand = new ArrayList<>(command);
+        replicaCommand.addAll(1, List.of(
+            "-Ddatasource.replica.enabled=true",
+            "-Ddatasource.replica.url=" + server.withDatabase(REPLICA_DB, REPLICA_USER, "replica").url,
+            "-Ddatasource.replica.username=" + REPLICA_USER,
+            "-Ddatasource.replica.password=replica",
+            "-Ddatasource.replica.retry-after=" + RETRY_AFTER_SECONDS + "s"));
+        try (AppProcess app = AppProcess.start(replicaCommand, primary, logDir.resolve("replica.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient api = new ApiClient(http, app.baseUrl);
+            String checkPath = "/api/v1/attendance/check?sessionId=" + sessionId + "&studentId=" + studentId;
+
+            String token = api.qrToken(sessionId);
+            HttpResponse<String> first = http.send(api.scanRequest(token, studentId), HttpResponse.BodyHandlers.ofString());
+            expect("scan is written to the primary", first.statusCode() == 201, first.statusCode() + " " + first.body());
+
+            HttpResponse<String> second = http.send(api.scanRequest(token, studentId), HttpResponse.BodyHandlers.ofString());
+            expect("duplicate scan rejected (reads the primary)",
+                second.statusCode() == 400 && second.body().contains("already marked"), second.statusCode() + " " + second.body());
+
+            JsonNode stale = api.get(checkPath);
+            expect("read-only check answered by the replica (stale)", !stale.get("hasAttended").asBoolean(), stale);
+
+            sql(server, "ALTER ROLE " + REPLICA_USER + " NOLOGIN",
+                "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE usename = '" + REPLICA_USER + "'");
+            Thread.sleep(1000); // let the backends exit and Hikari's validation window pass
+            JsonNode fallback = api.get(checkPath);
+            expect("replica down: read falls back to the primary", fallback.get("hasAttended").asBoolean(), fallback);
+
+            sql(server, "ALTER ROLE " + REPLICA_USER + " LOGIN");
+            Thread.sleep((RETRY_AFTER_SECONDS + 1) * 1000L);
+            JsonNode recovered = api.get(checkPath);
+            expect("replica back after retry-after", !recovered.get("hasAttended").asBoolean(), recovered);
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-48s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+
+    private static void sql(PerfDatabase database, String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.university.attendance.perf;
+
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counts for one scan-storm step
+ */
+class RunResult {
+
+    final int students;
+    final int requests;
+    long elapsedNanos;
+    int rosterRows;
+    int rosterStudents;
+
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private long[] sorted;
+
+    RunResult(int students, int requests) {
+        this.students = students;
+        this.requests = requests;
+        this.latencies = new long[requests];
+    }
+
+    /**
+     * Record one scan, latency is measured from its scheduled send time
+     */
+    void record(long scheduledAt, HttpResponse<String> response) {
+        latencies[recorded.getAndIncrement()] = System.nanoTime() - scheduledAt;
+
+        if (response == null) {
+            failures.computeIfAbsent("transport error", k -> new LongAdder()).increment();
+        } else if (response.statusCode() == 201) {
+            accepted.increment();
+        } else if (response.body() != null && response.body().contains("already marked")) {
+            duplicates.increment();
+        } else {
+            failures.computeIfAbsent("HTTP " + response.statusCode(), k -> new LongAdder()).increment();
+        }
+    }
+
+    double throughput() {
+        return recorded.get() / (elapsedNanos / 1e9);
+    }
+
+    double p50() {
+        return percentile(0.50);
+    }
+
+    double p99() {
+        return percentile(0.99);
+    }
+
+    double p999() {
+        return percentile(0.999);
+    }
+
+    /**
+     * Percentile in milliseconds
+     */
+    private double percentile(double quantile) {
+        if (sorted == null) {
+            sorted = Arrays.copyOf(latencies, recorded.get());
+            Arrays.sort(sorted);
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    void print(double slaMillis) {
+        Map<String, Long> failureCounts = new TreeMap<>();
+        failures.forEach((reason, count) -> failureCounts.put(reason, count.sum()));
+        long failed = failureCounts.values().stream().mapToLong(Long::longValue).sum();
+
+        System.out.printf("  requests      %d in %.1f s -> %.1f scans/s%n", recorded.get(), elapsedNanos / 1e9, throughput());
+        System.out.printf("  latency (ms)  p50 %.1f   p99 %.1f   p99.9 %.1f   max %.1f%n",
+            p50(), p99(), p999(), percentile(1.0));
+        System.out.printf("  accepted      %d%n", accepted.sum());
+        System.out.printf("  duplicates    %d rejected, %d double-inserted%n",
+            duplicates.sum(), rosterRows - rosterStudents);
+        System.out.printf("  failures      %d %s%n", failed, failureCounts.isEmpty() ? "" : failureCounts);
+        System.out.printf("  SLA           p99 %.1f ms vs %.0f ms -> %s%n",
+            p99(), slaMillis, p99() <= slaMillis ? "PASS" : "FAIL");
+    }
+}
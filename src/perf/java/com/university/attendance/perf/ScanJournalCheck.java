@@ -0,0 +1,198 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Crash/replay check of the scan journal (scan.journal.enabled=true).
+ *
+ *   1. Start the app with the journal on, seed an active session and N students.
+ *   2. Hold an EXCLUSIVE lock on attendance_records (reads pass, inserts block), the
+ *      stand-in for a database hiccup, and fire all N scans concurrently:
+ *      every scan must still be acknowledged (202) from the journal alone.
+ *   3. Kill the app (SIGKILL) while nothing has reached the table, release the lock.
+ *   4. Restart on the same journal directory and check every scan is replayed exactly
+ *      once, marked at its scan time (before the crash, not at replay), and that a
+ *      repeated scan is rejected as duplicate.
+ * Prints acknowledge latency percentiles and the group-commit size reported by the app.
+ *
+ * Usage:
+ *   mvn package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.ScanJournalCheck
+ *
+ * Options:
+ *   --jar PATH        packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --students N      concurrent scans (default 200)
+ *   --db-url URL      use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class ScanJournalCheck {
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+    private final PerfDatabase database;
+    private final List<String> command;
+    private final int studentCount;
+    private final Path workDir = Paths.get("target", "scan-journal-check");
+    private final List<String> failures = new ArrayList<>();
+
+    public ScanJournalCheck(PerfDatabase database, List<String> command, int studentCount) {
+        this.database = database;
+        this.command = command;
+        this.studentCount = studentCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+        int students = Integer.parseInt(options.getOrDefault("students", "200"));
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            passed = new ScanJournalCheck(database, List.of(AppProcess.java(), "-jar", jar.toString()), students).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        Path journalDir = workDir.resolve("journal").toAbsolutePath();
+        deleteRecursively(journalDir);
+        List<String> journalCommand = new ArrayList<>(command);
+        journalCommand.addAll(1, List.of("-Dscan.journal.enabled=true", "-Dscan.journal.dir=" + journalDir));
+
+        UUID sessionId;
+        String token;
+        LocalDateTime killedAt;
+        List<UUID> students = new ArrayList<>();
+        try (AppProcess app = AppProcess.start(journalCommand, database, workDir.resolve("first.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient api = new ApiClient(http, app.baseUrl);
+            UUID teacherId = api.createUser("TEACHER", "teacher", "journal.local");
+            UUID moduleId = api.createModule(teacherId, "JRNL-1");
+            sessionId = api.createActiveSession(teacherId, moduleId, "J-1", 60);
+            token = api.qrToken(sessionId);
+            for (int i = 0; i < studentCount; i++) {
+                students.add(api.createUser("STUDENT", "student" + i, "journal.local"));
+            }
+
+            try (Connection lock = DriverManager.getConnection(database.url, database.user, database.password)) {
+                lock.setAutoCommit(false);
+                try (Statement statement = lock.createStatement()) {
+                    statement.execute("LOCK TABLE attendance_records IN EXCLUSIVE MODE");
+                }
+
+                long[] latencies = new long[studentCount];
+                List<CompletableFuture<HttpResponse<String>>> scans = new ArrayList<>();
+                for (int i = 0; i < studentCount; i++) {
+                    int index = i;
+                    long start = System.nanoTime();
+                    scans.add(http.sendAsync(api.scanRequest(token, students.get(i)), HttpResponse.BodyHandlers.ofString())
+                        .whenComplete((response, error) -> latencies[index] = System.nanoTime() - start));
+                }
+                long accepted = scans.stream().map(CompletableFuture::join).filter(r -> r.statusCode() == 202).count();
+                expect("all scans acknowledged while inserts are blocked", accepted == studentCount,
+                    accepted + "/" + studentCount + " got 202");
+                Arrays.sort(latencies);
+                System.out.printf("  ack latency ms: p50 %.1f  p99 %.1f  max %.1f%n", latencies[studentCount / 2] / 1e6,
+                    latencies[(int) (studentCount * 0.99)] / 1e6, latencies[studentCount - 1] / 1e6);
+                System.out.println("  " + metric(api, "attendance.scan.journal.group"));
+
+                expect("nothing reached the table yet", countRecords(sessionId) == 0, countRecords(sessionId));
+                killedAt = LocalDateTime.now();
+                app.kill();
+                lock.rollback();
+            }
+        }
+
+        try (AppProcess app = AppProcess.start(journalCommand, database, workDir.resolve("replay.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient api = new ApiClient(http, app.baseUrl);
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (countRecords(sessionId) < studentCount && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            expect("every journaled scan replayed after the crash", countRecords(sessionId) == studentCount,
+                countRecords(sessionId) + "/" + studentCount);
+            long markedLate = countMarkedAfter(sessionId, killedAt);
+            expect("replayed scans keep their scan time", markedLate == 0, markedLate + " marked after the crash");
+
+            HttpResponse<String> again = http.send(api.scanRequest(token, students.get(0)), HttpResponse.BodyHandlers.ofString());
+            expect("repeated scan rejected as duplicate", again.statusCode() == 400, again.statusCode() + " " + again.body());
+        }
+
+        try (AppProcess app = AppProcess.start(journalCommand, database, workDir.resolve("restart.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            Thread.sleep(1000);
+            expect("replaying again inserts nothing twice", countRecords(sessionId) == studentCount,
+                countRecords(sessionId) + "/" + studentCount);
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    private long countRecords(UUID sessionId) throws Exception {
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                 "SELECT count(*) FROM attendance_records WHERE session_id = '" + sessionId + "'")) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+
+    private long countMarkedAfter(UUID sessionId, LocalDateTime time) throws Exception {
+        try (Connection connection = DriverManager.getConnection(database.url, database.user, database.password);
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT count(*) FROM attendance_records WHERE session_id = ? AND marked_at > ?")) {
+            statement.setObject(1, sessionId);
+            statement.setObject(2, time);
+            try (ResultSet rows = statement.executeQuery()) {
+                rows.next();
+                return rows.getLong(1);
+            }
+        }
+    }
+
+    private static String metric(ApiClient api, String name) throws Exception {
+        JsonNode metric = api.get("/actuator/metrics/" + name);
+        StringBuilder text = new StringBuilder(name);
+        for (JsonNode measurement : metric.get("measurements")) {
+            text.append(' ').append(measurement.get("statistic").asText().toLowerCase())
+                .append('=').append(measurement.get("value").asText());
+        }
+        return text.toString();
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-52s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws Exception {
+        if (Files.exists(directory)) {
+            try (var files = Files.walk(directory)) {
+                for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.attendance.AttendanceSystemApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan-storm load test.
+ *
+ * Starts the application against an embedded Postgres (or a local one via --db-url),
+ * creates a module and session, then replays N students scanning the session QR
+ * inside the qrValidityMinutes window, compressed to --window-seconds of wall clock.
+ * Scans are open-loop: each is sent at its scheduled arrival time regardless of how
+ * slow earlier ones are, and latency is measured from the scheduled time, so queueing
+ * delay is not hidden (no coordinated omission).
+ *
+ * With --ramp the test repeats with twice as many students each step until p99
+ * exceeds --sla-ms, reporting the highest sustained scan rate.
+ *
+ * Usage:
+ *   mvn -Pperf compile exec:java -Dexec.args="--students 400 --window-seconds 60"
+ *   mvn -Pperf compile exec:java -Dexec.args="--ramp --students 200 --sla-ms 250"
+ *   mvn -Pperf compile exec:java -Dexec.args="--db-url jdbc:postgresql://localhost:5432/attendance --db-user u --db-password p"
+ *   mvn -Pperf compile exec:java -Dexec.args="--target http://localhost:8080"   (already running node)
+ *
+ * Options:
+ *   --students N          students per run (default 400)
+ *   --window-seconds S    wall-clock length of the scan window (default 60)
+ *   --curve C             uniform | burst | peak arrival curve (default burst)
+ *   --retry-fraction F    fraction of students that re-scan shortly after (default 0.05)
+ *   --sla-ms MS           p99 latency budget (default 300)
+ *   --ramp                double students per step until the SLA is missed
+ *   --max-steps K         upper bound on ramp steps (default 8)
+ */
+public class ScanStormLoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, String> options;
+    private final HttpClient http;
+    private String baseUrl;
+
+    public ScanStormLoadTest(Map<String, String> options) {
+        this.options = options;
+        this.http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        EmbeddedPostgres postgres = null;
+        ConfigurableApplicationContext app = null;
+        int exitCode = 0;
+
+        try {
+            ScanStormLoadTest test = new ScanStormLoadTest(options);
+
+            if (options.containsKey("target")) {
+                test.baseUrl = options.get("target");
+            } else {
+                String url = options.get("db-url");
+                String user = options.getOrDefault("db-user", "postgres");
+                String password = options.getOrDefault("db-password", "");
+                if (url == null) {
+                    System.out.println("Starting embedded Postgres...");
+                    postgres = EmbeddedPostgres.builder().start();
+                    url = postgres.getJdbcUrl("postgres", "postgres");
+                }
+                app = startApplication(url, user, password);
+                test.baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+
+            exitCode = test.run() ? 0 : 1;
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    private static ConfigurableApplicationContext startApplication(String url, String user, String password) {
+        System.out.println("Starting application against " + url);
+        // Command-line args, so they win over the ${...} placeholders in application.yml
+        return new SpringApplicationBuilder(AttendanceSystemApplication.class)
+            .run(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + user,
+                "--spring.datasource.password=" + password,
+                "--server.port=0",
+                "--logging.level.root=WARN");
+    }
+
+    /**
+     * Run one or more load steps, returns false if the SLA was missed on a single run
+     */
+    private boolean run() throws Exception {
+        int students = Integer.parseInt(options.getOrDefault("students", "400"));
+        double windowSeconds = Double.parseDouble(options.getOrDefault("window-seconds", "60"));
+        double slaMillis = Double.parseDouble(options.getOrDefault("sla-ms", "300"));
+        boolean ramp = options.containsKey("ramp");
+        int maxSteps = ramp ? Integer.parseInt(options.getOrDefault("max-steps", "8")) : 1;
+
+        Fixture fixture = new Fixture();
+        RunResult lastPassing = null;
+
+        for (int step = 1; step <= maxSteps; step++) {
+            List<UUID> studentIds = fixture.ensureStudents(students);
+            UUID sessionId = fixture.createActiveSession();
+            String qrToken = get("/api/v1/sessions/" + sessionId + "/qr-data").get("qrToken").asText();
+
+            System.out.printf("%nStep %d: %d students, %.0fs window, curve=%s%n",
+                step, students, windowSeconds, options.getOrDefault("curve", "burst"));
+            RunResult result = runStorm(sessionId, qrToken, studentIds, windowSeconds);
+            result.print(slaMillis);
+
+            if (result.p99() > slaMillis) {
+                if (!ramp) {
+                    return false;
+                }
+                break;
+            }
+            lastPassing = result;
+            students *= 2;
+        }
+
+        if (ramp) {
+            if (lastPassing == null) {
+                System.out.println("\nSLA missed on the first step, lower --students");
+                return false;
+            }
+            System.out.printf("%nHighest sustained rate within p99 <= %.0f ms: %.1f scans/s (%d students)%n",
+                slaMillis, lastPassing.throughput(), lastPassing.students);
+        }
+        return true;
+    }
+
+    /**
+     * Replay one scan window against a session
+     */
+    private RunResult runStorm(UUID sessionId, String qrToken, List<UUID> studentIds, double windowSeconds)
+            throws Exception {
+        ArrivalCurve curve = ArrivalCurve.valueOf(options.getOrDefault("curve", "burst").toUpperCase());
+        double retryFraction = Double.parseDouble(options.getOrDefault("retry-fraction", "0.05"));
+        Random random = new Random(42);
+
+        // Build the schedule: one scan per student plus some retries
+        List<long[]> schedule = new ArrayList<>(); // {offsetNanos, studentIndex}
+        long windowNanos = (long) (windowSeconds * 1_000_000_000L);
+        for (int i = 0; i < studentIds.size(); i++) {
+            long offset = (long) (curve.sample(random) * windowNanos);
+            schedule.add(new long[] {offset, i});
+            if (random.nextDouble() < retryFraction) {
+                long retryDelay = 200_000_000L + (long) (random.nextDouble() * 1_800_000_000L);
+                schedule.add(new long[] {offset + retryDelay, i});
+            }
+        }
+        schedule.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        RunResult result = new RunResult(studentIds.size(), schedule.size());
+        long start = System.nanoTime();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long[] entry : schedule) {
+                long scheduledAt = start + entry[0];
+                long sleepNanos = scheduledAt - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+                UUID studentId = studentIds.get((int) entry[1]);
+                workers.submit(() -> result.record(scheduledAt, scan(qrToken, studentId)));
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+
+        // Duplicates that slipped through concurrently show up as extra rows
+        JsonNode roster = get("/api/v1/attendance/session/" + sessionId);
+        Set<String> distinct = new HashSet<>();
+        for (JsonNode record : roster) {
+            distinct.add(record.get("student").get("id").asText());
+        }
+        result.rosterRows = roster.size();
+        result.rosterStudents = distinct.size();
+        return result;
+    }
+
+    private HttpResponse<String> scan(String qrToken, UUID studentId) {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("qrToken", qrToken);
+        body.put("studentId", studentId.toString());
+        body.put("deviceInfo", "loadtest/" + studentId);
+        try {
+            return http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/attendance/scan"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private JsonNode get(String path) throws Exception {
+        HttpResponse<String> response = http.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("GET " + path + " -> " + response.statusCode() + " " + response.body());
+        }
+        return MAPPER.readTree(response.body());
+    }
+
+    private JsonNode post(String path, Object body) throws Exception {
+        HttpResponse<String> response = http.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body == null ? "" : MAPPER.writeValueAsString(body)))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("POST " + path + " -> " + response.statusCode() + " " + response.body());
+        }
+        return response.body().isEmpty() ? null : MAPPER.readTree(response.body());
+    }
+
+    private JsonNode put(String path) throws Exception {
+        HttpResponse<String> response = http.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + path)).PUT(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("PUT " + path + " -> " + response.statusCode() + " " + response.body());
+        }
+        return MAPPER.readTree(response.body());
+    }
+
+    /**
+     * Teacher, module and students shared by all steps of one run
+     */
+    private class Fixture {
+
+        private final String runId = UUID.randomUUID().toString().substring(0, 8);
+        private final List<UUID> students = new ArrayList<>();
+        private UUID teacherId;
+        private UUID moduleId;
+
+        List<UUID> ensureStudents(int count) throws Exception {
+            if (teacherId == null) {
+                teacherId = createUser("TEACHER", "teacher");
+                Map<String, Object> module = new HashMap<>();
+                module.put("moduleCode", "LOAD-" + runId);
+                module.put("moduleName", "Load test " + runId);
+                module.put("teacherId", teacherId);
+                moduleId = UUID.fromString(post("/api/v1/modules", module).get("id").asText());
+            }
+
+            int missing = count - students.size();
+            if (missing > 0) {
+                System.out.printf("Creating %d students...%n", missing);
+                int offset = students.size();
+                UUID[] created = new UUID[missing];
+                try (ExecutorService workers = Executors.newFixedThreadPool(16)) {
+                    for (int i = 0; i < missing; i++) {
+                        int index = i;
+                        workers.submit(() -> {
+                            created[index] = createUser("STUDENT", "student" + (offset + index));
+                            return null;
+                        });
+                    }
+                }
+                for (UUID id : created) {
+                    if (id == null) {
+                        throw new IllegalStateException("Failed to create students");
+                    }
+                    students.add(id);
+                }
+            }
+            return students.subList(0, count);
+        }
+
+        UUID createActiveSession() throws Exception {
+            LocalTime now = LocalTime.now().withNano(0);
+            Map<String, Object> session = new HashMap<>();
+            session.put("moduleId", moduleId);
+            session.put("sessionDate", LocalDate.now().toString());
+            session.put("startTime", now.toString());
+            session.put("endTime", now.plusHours(1).toString());
+            session.put("classroom", "LOAD-1");
+            session.put("qrValidityMinutes", 15);
+            session.put("locationRequired", false);
+            JsonNode created = post("/api/v1/sessions?teacherId=" + teacherId, session);
+            UUID sessionId = UUID.fromString(created.get("id").asText());
+            put("/api/v1/sessions/" + sessionId + "/start");
+            return sessionId;
+        }
+
+        private UUID createUser(String role, String name) throws Exception {
+            Map<String, Object> user = new HashMap<>();
+            user.put("email", name + "." + runId + "@loadtest.local");
+            user.put("firstName", name);
+            user.put("lastName", runId);
+            user.put("role", role);
+            return UUID.fromString(post("/api/v1/users", user).get("id").asText());
+        }
+    }
+}
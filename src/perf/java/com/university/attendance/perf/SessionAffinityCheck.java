@@ -0,0 +1,265 @@
+package com.university.attendance.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Three-instance check of session-affinity routing (SessionAffinityRouter).
+ *
+ * Starts instances A, B and C on one database, each listing all three as cluster.peers,
+ * then checks:
+ *   - all instances agree on the owner of a session, and --probe-sessions random ids
+ *     spread evenly enough over the three (no instance owns more than --max-share),
+ *   - scans of one session sent round-robin to every instance all succeed, and exactly
+ *     those landing on a non-owner are forwarded,
+ *   - device sharing is detected although the shared device scanned through all three
+ *     instances (the detector only sees the whole window on the owner),
+ *   - after the owner is killed the survivors drop it, ownership moves only for the
+ *     sessions it owned, and scans of its session keep succeeding.
+ *
+ * Usage:
+ *   mvn package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.SessionAffinityCheck
+ *
+ * Options:
+ *   --jar PATH              packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --students N            students scanning the session (default 30)
+ *   --probe-sessions N      random session ids used for the balance check (default 3000)
+ *   --max-share F           largest share of sessions one of three instances may own (default 0.45)
+ *   --db-url URL            use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class SessionAffinityCheck {
+
+    private static final String[] NAMES = { "a", "b", "c" };
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final PerfDatabase database;
+    private final Path jar;
+    private final int studentCount;
+    private final int probeSessions;
+    private final double maxShare;
+    private final Path workDir = Paths.get("target", "session-affinity-check");
+    private final List<String> failures = new ArrayList<>();
+
+    public SessionAffinityCheck(PerfDatabase database, Path jar, int studentCount, int probeSessions, double maxShare) {
+        this.database = database;
+        this.jar = jar;
+        this.studentCount = studentCount;
+        this.probeSessions = probeSessions;
+        this.maxShare = maxShare;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        Path jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar")).toAbsolutePath();
+        int students = Integer.parseInt(options.getOrDefault("students", "30"));
+        int probeSessions = Integer.parseInt(options.getOrDefault("probe-sessions", "3000"));
+        double maxShare = Double.parseDouble(options.getOrDefault("max-share", "0.45"));
+        boolean passed;
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            passed = new SessionAffinityCheck(database, jar, students, probeSessions, maxShare).run();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        int[] ports = { AppProcess.freePort(), AppProcess.freePort(), AppProcess.freePort() };
+        List<String> urls = new ArrayList<>();
+        for (int port : ports) {
+            urls.add("http://localhost:" + port);
+        }
+        List<AppProcess> nodes = new ArrayList<>();
+        try {
+            for (int i = 0; i < NAMES.length; i++) {
+                nodes.add(AppProcess.start(command(urls.get(i), urls, NAMES[i]), database,
+                    workDir.resolve(NAMES[i] + ".log"), ports[i]));
+            }
+            Map<String, ApiClient> apis = new HashMap<>();
+            for (AppProcess node : nodes) {
+                node.awaitHealthy(http, Duration.ofMinutes(3));
+                apis.put(node.baseUrl, new ApiClient(http, node.baseUrl));
+            }
+            for (ApiClient api : apis.values()) {
+                awaitLivePeers(api, 3);
+            }
+            checkScenario(nodes, apis, urls);
+        } finally {
+            for (AppProcess node : nodes) {
+                node.close();
+            }
+        }
+
+        System.out.println(failures.isEmpty() ? "\nPASS" : "\nFAIL " + failures);
+        return failures.isEmpty();
+    }
+
+    private void checkScenario(List<AppProcess> nodes, Map<String, ApiClient> apis, List<String> urls) throws Exception {
+        ApiClient first = apis.get(urls.get(0));
+        UUID teacherId = first.createUser("TEACHER", "teacher", "affinity.local");
+        UUID moduleId = first.createModule(teacherId, "AFF-1");
+        List<UUID> students = new ArrayList<>();
+        for (int i = 0; i < studentCount; i++) {
+            students.add(first.createUser("STUDENT", "student" + i, "affinity.local"));
+        }
+        UUID sessionId = first.createActiveSession(teacherId, moduleId, "AFF-R1", 30);
+        String qrToken = first.qrToken(sessionId);
+
+        String owner = null;
+        boolean agreed = true;
+        for (ApiClient api : apis.values()) {
+            String seen = ownerOf(api, sessionId);
+            agreed &= owner == null || owner.equals(seen);
+            owner = seen;
+        }
+        expect("all instances agree on the session owner", agreed, "");
+        System.out.println("  owner of the session: " + owner);
+
+        List<UUID> probes = new ArrayList<>();
+        for (int i = 0; i < probeSessions; i++) {
+            probes.add(UUID.randomUUID());
+        }
+        Map<UUID, String> before = owners(first, probes);
+        Map<String, Integer> shares = new HashMap<>();
+        before.values().forEach(peer -> shares.merge(peer, 1, Integer::sum));
+        System.out.println("  ownership of " + probeSessions + " sessions: " + shares);
+        int largest = shares.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        expect("sessions spread over all three instances",
+            shares.size() == 3 && largest <= maxShare * probeSessions, shares);
+
+        // Half the students scan on one shared device, through every instance in turn
+        int expectedForwards = 0;
+        int accepted = 0;
+        int flagged = 0;
+        int half = studentCount / 2;
+        for (int i = 0; i < half; i++) {
+            String via = urls.get(i % urls.size());
+            expectedForwards += via.equals(owner) ? 0 : 1;
+            HttpResponse<String> response = scan(apis.get(via), qrToken, students.get(i), "shared-phone");
+            if (response.statusCode() == 201 || response.statusCode() == 202) {
+                accepted++;
+                if (ApiClient.MAPPER.readTree(response.body()).get("deviceSharingSuspected").asBoolean()) {
+                    flagged++;
+                }
+            }
+        }
+        expect("every scan through every instance accepted", accepted == half, accepted + "/" + half);
+        double forwarded = 0;
+        for (ApiClient api : apis.values()) {
+            forwarded += metric(api, "attendance.scan.routed?tag=result:forwarded");
+        }
+        expect("scans landing on a non-owner were forwarded", forwarded == expectedForwards,
+            forwarded + " forwarded, expected " + expectedForwards);
+        // scan.device-sharing.max-students-per-device defaults to 3
+        expect("device sharing detected across instances", flagged == half - 3, flagged + " flagged, expected " + (half - 3));
+
+        String dead = owner;
+        nodes.stream().filter(node -> node.baseUrl.equals(dead)).findFirst().orElseThrow().kill();
+        List<ApiClient> survivors = new ArrayList<>();
+        for (String url : urls) {
+            if (!url.equals(owner)) {
+                survivors.add(apis.get(url));
+            }
+        }
+        for (ApiClient api : survivors) {
+            awaitLivePeers(api, 2);
+        }
+        Map<UUID, String> after = owners(survivors.get(0), probes);
+        int moved = 0;
+        int wronglyMoved = 0;
+        for (UUID probe : probes) {
+            if (!before.get(probe).equals(after.get(probe))) {
+                moved++;
+                if (!before.get(probe).equals(owner)) {
+                    wronglyMoved++;
+                }
+            }
+        }
+        System.out.println("  ownership moved for " + moved + " of " + probeSessions + " sessions");
+        expect("only the dead owner's sessions moved", wronglyMoved == 0 && moved == shares.get(owner),
+            wronglyMoved + " moved from a live instance");
+        String newOwner = ownerOf(survivors.get(0), sessionId);
+        expect("survivors agree on the new owner",
+            !newOwner.equals(owner) && newOwner.equals(ownerOf(survivors.get(1), sessionId)), newOwner);
+
+        int acceptedAfter = 0;
+        for (int i = half; i < studentCount; i++) {
+            HttpResponse<String> response = scan(survivors.get(i % survivors.size()), qrToken, students.get(i), null);
+            if (response.statusCode() == 201 || response.statusCode() == 202) {
+                acceptedAfter++;
+            }
+        }
+        expect("scans keep succeeding after the owner died", acceptedAfter == studentCount - half,
+            acceptedAfter + "/" + (studentCount - half));
+    }
+
+    private List<String> command(String self, List<String> peers, String name) {
+        Path data = workDir.resolve(name).toAbsolutePath();
+        return List.of(AppProcess.java(),
+            "-Dcluster.self-url=" + self,
+            "-Dcluster.peers=" + String.join(",", peers),
+            "-Dcluster.probe-interval=500ms",
+            "-Dreport.jobs.dir=" + data.resolve("report-jobs"),
+            "-Dexport.cache.dir=" + data.resolve("export-cache"),
+            "-Dscan.journal.dir=" + data.resolve("scan-journal"),
+            "-jar", jar.toString());
+    }
+
+    private HttpResponse<String> scan(ApiClient api, String qrToken, UUID studentId, String device) throws Exception {
+        Map<String, Object> scan = new HashMap<>();
+        scan.put("qrToken", qrToken);
+        scan.put("studentId", studentId.toString());
+        scan.put("deviceInfo", device != null ? device : "phone/" + studentId);
+        return http.send(api.request("POST", "/api/v1/attendance/scan", scan), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String ownerOf(ApiClient api, UUID sessionId) throws Exception {
+        return api.get("/api/v1/sessions/" + sessionId + "/owner").get("owner").asText();
+    }
+
+    private static Map<UUID, String> owners(ApiClient api, List<UUID> sessionIds) throws Exception {
+        Map<UUID, String> owners = new HashMap<>();
+        for (UUID sessionId : sessionIds) {
+            owners.put(sessionId, ownerOf(api, sessionId));
+        }
+        return owners;
+    }
+
+    private static void awaitLivePeers(ApiClient api, int expected) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (true) {
+            JsonNode owner = api.get("/api/v1/sessions/" + UUID.randomUUID() + "/owner");
+            if (owner.get("livePeers").size() == expected) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(api.baseUrl + " never saw " + expected + " live peers: " + owner);
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static double metric(ApiClient api, String name) {
+        try {
+            return api.get("/actuator/metrics/" + name).get("measurements").get(0).get("value").asDouble();
+        } catch (Exception e) {
+            return 0;  // not registered yet
+        }
+    }
+
+    private void expect(String step, boolean ok, Object detail) {
+        System.out.printf("  %-4s %-52s %s%n", ok ? "ok" : "FAIL", step, ok ? "" : detail);
+        if (!ok) {
+            failures.add(step);
+        }
+    }
+}
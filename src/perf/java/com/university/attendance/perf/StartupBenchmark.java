@@ -0,0 +1,286 @@
+package com.university.attendance.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Startup benchmark: time from process launch to the first successful /scan.
+ *
+ * Builds a CDS-friendly layout of the packaged app, trains a CDS archive, then
+ * launches the app repeatedly in each mode and reports the median
+ * time-to-first-successful-scan and resident memory at that point:
+ *
+ *   jar        java -jar attendance-system.jar                     (baseline)
+ *   extracted  java -jar fast-startup/application.jar              (unpacked, plain classpath)
+ *   aot        extracted + -Dspring.aot.enabled=true
+ *   aot-cds    aot + -XX:SharedArchiveFile=fast-startup/application.jsa
+ *   native     GraalVM native executable (only with --native PATH, see the native profile)
+ *
+ * The fast-startup/ directory it leaves (application.jar, lib/, application.jsa) is the
+ * layout a container image would ship; start it with
+ *   java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar application.jar
+ * The fast-startup Maven profile only adds the AOT code, the archive is trained here
+ * (against the benchmark's database) and must be retrained whenever the jar or the
+ * JDK changes.
+ *
+ * Usage:
+ *   mvn -Pfast-startup package -DskipTests
+ *   mvn -Pperf compile exec:java -Dperf.mainClass=com.university.attendance.perf.StartupBenchmark -Dexec.args="--runs 5"
+ *
+ * Options:
+ *   --jar PATH        packaged jar (default target/attendance-system-1.0.0.jar)
+ *   --runs N          measured launches per mode (default 3)
+ *   --modes LIST      comma separated subset of the modes above
+ *   --native PATH     native executable to include as an extra mode
+ *   --db-url URL      use this Postgres instead of an embedded one (with --db-user, --db-password)
+ */
+public class StartupBenchmark {
+
+    private final Map<String, String> options;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(500)).build();
+    private final Path jar;
+    private final Path workDir;
+    private final Path logDir;
+    private final PerfDatabase database;
+
+    // Seeded once, one student consumed per launch
+    private final Deque<UUID> students = new ArrayDeque<>();
+    private String qrToken;
+
+    public StartupBenchmark(Map<String, String> options, PerfDatabase database) {
+        this.options = options;
+        this.database = database;
+        this.jar = Paths.get(options.getOrDefault("jar", "target/attendance-system-1.0.0.jar"));
+        this.workDir = jar.toAbsolutePath().getParent().resolve("fast-startup");
+        this.logDir = workDir.resolve("logs");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PerfArgs.parse(args);
+        try (PerfDatabase database = PerfDatabase.open(options)) {
+            new StartupBenchmark(options, database).run();
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException(jar + " not found, run: mvn -Pfast-startup package -DskipTests");
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        List<String> modes = new ArrayList<>(Arrays.asList(
+            options.getOrDefault("modes", "jar,extracted,aot,aot-cds").split(",")));
+        if (options.containsKey("native") && !modes.contains("native")) {
+            modes.add("native");
+        }
+
+        Files.createDirectories(logDir);
+        Path applicationJar = extract();
+        Path archive = workDir.resolve("application.jsa");
+        if (modes.contains("aot-cds")) {
+            trainArchive(applicationJar, archive);
+        }
+
+        seed(modes.size() * (runs + 1));
+
+        Map<String, long[]> millis = new HashMap<>();
+        Map<String, long[]> rssKb = new HashMap<>();
+        for (String mode : modes) {
+            List<String> command = command(mode, applicationJar, archive);
+            System.out.printf("%n%s: %s%n", mode, String.join(" ", command));
+            millis.put(mode, new long[runs]);
+            rssKb.put(mode, new long[runs]);
+
+            // One discarded launch to warm the OS page cache
+            launchUntilFirstScan(mode + "-warmup", command);
+            for (int i = 0; i < runs; i++) {
+                long[] sample = launchUntilFirstScan(mode + "-" + i, command);
+                millis.get(mode)[i] = sample[0];
+                rssKb.get(mode)[i] = sample[1];
+                System.out.printf("  run %d: %d ms, RSS %d MB%n", i + 1, sample[0], sample[1] / 1024);
+            }
+        }
+
+        System.out.printf("%n%-10s %22s %14s%n", "mode", "first scan (median ms)", "RSS (median MB)");
+        long baseline = median(millis.get(modes.get(0)));
+        for (String mode : modes) {
+            long ms = median(millis.get(mode));
+            System.out.printf("%-10s %22d %14d   %5.2fx%n", mode, ms, median(rssKb.get(mode)) / 1024,
+                (double) baseline / Math.max(ms, 1));
+        }
+    }
+
+    private List<String> command(String mode, Path applicationJar, Path archive) {
+        String java = AppProcess.java();
+        switch (mode) {
+            case "jar":
+                return List.of(java, "-jar", jar.toAbsolutePath().toString());
+            case "extracted":
+                return List.of(java, "-jar", applicationJar.toString());
+            case "aot":
+                return List.of(java, "-Dspring.aot.enabled=true", "-jar", applicationJar.toString());
+            case "aot-cds":
+                return List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off", "-Xlog:cds+dynamic=off",
+                    "-Dspring.aot.enabled=true", "-jar", applicationJar.toString());
+            case "native":
+                return List.of(Paths.get(options.get("native")).toAbsolutePath().toString());
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * Unpack the Boot jar into application.jar (own classes, manifest Class-Path) + lib/*.jar.
+     * CDS only archives classes loaded from plain jars on the class path, not nested jars.
+     */
+    private Path extract() throws IOException {
+        Path libDir = workDir.resolve("lib");
+        Path applicationJar = workDir.resolve("application.jar");
+        if (Files.exists(applicationJar)
+                && Files.getLastModifiedTime(applicationJar).compareTo(Files.getLastModifiedTime(jar)) > 0) {
+            return applicationJar;
+        }
+        System.out.println("Extracting " + jar + " -> " + workDir);
+        Files.createDirectories(libDir);
+
+        try (JarFile bootJar = new JarFile(jar.toFile())) {
+            Manifest bootManifest = bootJar.getManifest();
+            String startClass = bootManifest.getMainAttributes().getValue("Start-Class");
+
+            // Library order as recorded by the Boot plugin
+            List<String> classPath = new ArrayList<>();
+            JarEntry index = bootJar.getJarEntry("BOOT-INF/classpath.idx");
+            String idx = new String(bootJar.getInputStream(index).readAllBytes(), StandardCharsets.UTF_8);
+            for (String line : idx.split("\n")) {
+                String entry = line.trim().replace("- ", "").replace("\"", "");
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                String fileName = entry.substring(entry.lastIndexOf('/') + 1);
+                try (InputStream in = bootJar.getInputStream(bootJar.getJarEntry(entry))) {
+                    Files.copy(in, libDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+                }
+                classPath.add("lib/" + fileName);
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, startClass);
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, String.join(" ", classPath));
+
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(applicationJar), manifest)) {
+                var entries = bootJar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    // Keep directory entries, component scanning needs them to find packages
+                    if (!entry.getName().startsWith("BOOT-INF/classes/") || entry.getName().equals("BOOT-INF/classes/")) {
+                        continue;
+                    }
+                    out.putNextEntry(new JarEntry(entry.getName().substring("BOOT-INF/classes/".length())));
+                    if (!entry.isDirectory()) {
+                        try (InputStream in = bootJar.getInputStream(entry)) {
+                            in.transferTo(out);
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+        }
+        return applicationJar;
+    }
+
+    /**
+     * Training run: start the context in AOT mode, exit right after refresh and dump
+     * every loaded class into a dynamic CDS archive.
+     */
+    private void trainArchive(Path applicationJar, Path archive) throws Exception {
+        System.out.println("Training CDS archive " + archive);
+        try (AppProcess training = AppProcess.start(List.of(AppProcess.java(),
+                "-XX:ArchiveClassesAtExit=" + archive,
+                "-Dspring.aot.enabled=true",
+                "-Dspring.context.exit=onRefresh",
+                "-jar", applicationJar.toString()), database, logDir.resolve("cds-training.log"))) {
+            if (!training.waitFor(5, TimeUnit.MINUTES) || !Files.exists(archive)) {
+                throw new IllegalStateException("CDS training failed, see " + training.log);
+            }
+        }
+    }
+
+    /**
+     * Start the baseline app once to create the schema and the fixture:
+     * a module, an ACTIVE session whose QR is valid for the whole benchmark, and students
+     */
+    private void seed(int studentCount) throws Exception {
+        System.out.printf("Seeding %d students...%n", studentCount);
+        try (AppProcess app = AppProcess.start(List.of(AppProcess.java(), "-jar", jar.toAbsolutePath().toString()),
+                database, logDir.resolve("seed.log"))) {
+            app.awaitHealthy(http, Duration.ofMinutes(3));
+            ApiClient api = new ApiClient(http, app.baseUrl);
+
+            String runId = UUID.randomUUID().toString().substring(0, 8);
+            String domain = "startup-" + runId + ".local";
+            UUID teacherId = api.createUser("TEACHER", "teacher", domain);
+            UUID moduleId = api.createModule(teacherId, "BOOT-" + runId);
+            UUID sessionId = api.createActiveSession(teacherId, moduleId, "BOOT-1", 120);
+            qrToken = api.qrToken(sessionId);
+
+            for (int i = 0; i < studentCount; i++) {
+                students.add(api.createUser("STUDENT", "student" + i, domain));
+            }
+        }
+    }
+
+    /**
+     * Launch the app and hammer /scan until the first 201.
+     * Returns {milliseconds since launch, RSS in kB at that moment}.
+     */
+    private long[] launchUntilFirstScan(String label, List<String> command) throws Exception {
+        try (AppProcess app = AppProcess.start(command, database, logDir.resolve(label + ".log"))) {
+            HttpRequest scan = new ApiClient(http, app.baseUrl).scanRequest(qrToken, students.pop());
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(3);
+            while (true) {
+                if (System.nanoTime() > deadline || !app.isAlive()) {
+                    throw new IllegalStateException(label + " never served a scan, see " + app.log);
+                }
+                try {
+                    HttpResponse<String> response = http.send(scan, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 201) {
+                        return new long[] {app.millisSinceStart(), app.residentKb()};
+                    }
+                    throw new IllegalStateException(label + " scan failed: " + response.statusCode() + " " + response.body());
+                } catch (IOException notListeningYet) {
+                    Thread.sleep(5);
+                }
+            }
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}